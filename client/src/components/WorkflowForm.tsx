@@ -152,6 +152,9 @@ const WorkflowForm: React.FC<WorkflowFormProps> = ({
     { value: 'database', label: 'Database' },
     { value: 'file', label: 'File Operation' },
     { value: 'transform', label: 'Data Transform' },
+    { value: 'script', label: 'Script (SpEL)' },
+    { value: 'map', label: 'Map (per item)' },
+    { value: 'workflow', label: 'Sub-workflow' },
     { value: 'condition', label: 'Condition' }
   ];
 
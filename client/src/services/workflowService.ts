@@ -2,6 +2,17 @@ import { Workflow, WorkflowExecutionInput } from '../types/workflow';
 
 const API_BASE = process.env.REACT_APP_API_URL || 'http://localhost:8080/api';
 
+// Save-time graph validation answers 400 with the problems found; show them instead of a generic message
+const validationError = async (response: Response, fallback: string): Promise<string> => {
+  if (response.status === 400) {
+    const body = await response.json().catch(() => null);
+    if (body?.error) {
+      return body.error;
+    }
+  }
+  return fallback;
+};
+
 export const workflowService = {
   // Get all workflows
   getWorkflows: async (): Promise<Workflow[]> => {
@@ -29,7 +40,7 @@ export const workflowService = {
       body: JSON.stringify(workflow)
     });
     if (!response.ok) {
-      throw new Error('Failed to create workflow');
+      throw new Error(await validationError(response, 'Failed to create workflow'));
     }
     return response.json();
   },
@@ -42,7 +53,7 @@ export const workflowService = {
       body: JSON.stringify(workflow)
     });
     if (!response.ok) {
-      throw new Error('Failed to update workflow');
+      throw new Error(await validationError(response, 'Failed to update workflow'));
     }
     return response.json();
   },
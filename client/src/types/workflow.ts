@@ -31,6 +31,29 @@ export interface Workflow {
   createdBy: string;
   tasks: Task[];
   metadata: Record<string, any> | null;
+  revision?: string | null;
+  graph?: WorkflowGraph | null;
+  schedules?: WorkflowSchedule[] | null;
+}
+
+// Exactly one of cron (six fields, seconds first) and intervalSeconds is set
+export interface WorkflowSchedule {
+  cron?: string | null;
+  intervalSeconds?: number | null;
+  zone?: string | null;
+  input?: Record<string, any> | null;
+  enabled: boolean;
+}
+
+// Derived by the server when a workflow is saved
+export interface WorkflowGraph {
+  topologicalOrder: string[];
+  roots: string[];
+  sinks: string[];
+  levels: string[][];
+  depth: number;
+  maxWidth: number;
+  edgeCount: number;
 }
 
 export interface WorkflowExecutionInput {
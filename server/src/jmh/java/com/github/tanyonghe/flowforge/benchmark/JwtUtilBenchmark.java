@@ -0,0 +1,48 @@
+package com.github.tanyonghe.flowforge.benchmark;
+
+import com.github.tanyonghe.flowforge.security.JwtUtil;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtUtilBenchmark {
+
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "benchmarkSecretKeyThatIsLongEnoughForHS256Algorithm");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 86400000L);
+        ReflectionTestUtils.setField(jwtUtil, "refreshExpiration", 604800000L);
+        token = jwtUtil.generateToken("benchmark-user", "USER");
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtil.generateToken("benchmark-user", "USER");
+    }
+
+    @Benchmark
+    public String generateRefreshToken() {
+        return jwtUtil.generateRefreshToken("benchmark-user", "benchmark@example.com", "USER");
+    }
+
+    @Benchmark
+    public String extractUsername() {
+        return jwtUtil.extractUsername(token);
+    }
+
+    @Benchmark
+    public Boolean validateToken() {
+        return jwtUtil.validateToken(token, "benchmark-user");
+    }
+}
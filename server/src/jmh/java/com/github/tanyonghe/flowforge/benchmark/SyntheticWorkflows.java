@@ -0,0 +1,84 @@
+package com.github.tanyonghe.flowforge.benchmark;
+
+import com.github.tanyonghe.flowforge.model.Workflow;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Generators for the DAG shapes used by the execution benchmarks. All tasks share one handler type.
+public final class SyntheticWorkflows {
+
+    private SyntheticWorkflows() {
+    }
+
+    public enum Shape {
+        LINEAR, FAN_OUT, DIAMOND
+    }
+
+    static Workflow build(Shape shape, int size, String taskType) {
+        List<Workflow.Task> tasks = switch (shape) {
+            case LINEAR -> linear(size, taskType);
+            case FAN_OUT -> fanOutFanIn(size, taskType);
+            case DIAMOND -> diamondLattice(size, taskType);
+        };
+        Workflow workflow = new Workflow();
+        workflow.setId("synthetic-" + shape + "-" + size);
+        workflow.setName(workflow.getId());
+        workflow.setTasks(tasks);
+        return workflow;
+    }
+
+    // t0 -> t1 -> ... -> tN-1
+    private static List<Workflow.Task> linear(int size, String taskType) {
+        List<Workflow.Task> tasks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tasks.add(task("t" + i, taskType, i + 1 < size ? List.of("t" + (i + 1)) : List.of()));
+        }
+        return tasks;
+    }
+
+    // source -> (size - 2 parallel tasks) -> sink
+    private static List<Workflow.Task> fanOutFanIn(int size, String taskType) {
+        int width = Math.max(1, size - 2);
+        List<String> middle = new ArrayList<>(width);
+        List<Workflow.Task> tasks = new ArrayList<>(width + 2);
+        for (int i = 0; i < width; i++) {
+            middle.add("m" + i);
+            tasks.add(task("m" + i, taskType, List.of("sink")));
+        }
+        tasks.add(task("source", taskType, middle));
+        tasks.add(task("sink", taskType, List.of()));
+        return tasks;
+    }
+
+    // Square grid where (r, c) feeds (r + 1, c) and (r + 1, c + 1): every inner node has two parents and two children
+    private static List<Workflow.Task> diamondLattice(int size, String taskType) {
+        int side = Math.max(1, (int) Math.round(Math.sqrt(size)));
+        List<Workflow.Task> tasks = new ArrayList<>(side * side);
+        for (int row = 0; row < side; row++) {
+            for (int col = 0; col < side; col++) {
+                List<String> next = new ArrayList<>(2);
+                if (row + 1 < side) {
+                    next.add(name(row + 1, col));
+                    if (col + 1 < side) {
+                        next.add(name(row + 1, col + 1));
+                    }
+                }
+                tasks.add(task(name(row, col), taskType, next));
+            }
+        }
+        return tasks;
+    }
+
+    private static String name(int row, int col) {
+        return "n" + row + "_" + col;
+    }
+
+    private static Workflow.Task task(String name, String type, List<String> nextTasks) {
+        Workflow.Task task = new Workflow.Task();
+        task.setName(name);
+        task.setType(type);
+        task.setNextTasks(nextTasks);
+        return task;
+    }
+}
@@ -0,0 +1,33 @@
+package com.github.tanyonghe.flowforge.benchmark;
+
+import com.github.tanyonghe.flowforge.dto.UserProfileResponse;
+import com.github.tanyonghe.flowforge.model.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserProfileMappingBenchmark {
+
+    private User user;
+
+    @Setup
+    public void setUp() {
+        user = new User("benchmark-user", "benchmark@example.com", "hashed", "USER");
+        user.setId("benchmark-id");
+        user.setFirstName("Bench");
+        user.setLastName("Mark");
+        user.setLastLoginAt(LocalDateTime.now());
+    }
+
+    @Benchmark
+    public UserProfileResponse toProfileResponse() {
+        return UserProfileResponse.from(user);
+    }
+}
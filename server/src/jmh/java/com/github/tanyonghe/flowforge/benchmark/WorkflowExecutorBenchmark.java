@@ -0,0 +1,115 @@
+package com.github.tanyonghe.flowforge.benchmark;
+
+import com.github.tanyonghe.flowforge.engine.ExecutionMetrics;
+import com.github.tanyonghe.flowforge.engine.ExecutionPlan;
+import com.github.tanyonghe.flowforge.engine.MemoryBudget;
+import com.github.tanyonghe.flowforge.engine.OutputSpiller;
+import com.github.tanyonghe.flowforge.engine.TaskContext;
+import com.github.tanyonghe.flowforge.engine.TaskHandler;
+import com.github.tanyonghe.flowforge.engine.TaskHandlerRegistry;
+import com.github.tanyonghe.flowforge.engine.TaskGuards;
+import com.github.tanyonghe.flowforge.engine.TaskResultCache;
+import com.github.tanyonghe.flowforge.engine.WorkflowExecutor;
+import com.github.tanyonghe.flowforge.model.WorkflowRun;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// One op = one full run of a synthetic DAG. The "tasks" counter reports executed tasks/s, so per-task
+// scheduling overhead is 1 / tasks score with the noop handler; divide gc.alloc.rate.norm by the
+// task count for bytes allocated per task.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WorkflowExecutorBenchmark {
+
+    @Param({"LINEAR", "FAN_OUT", "DIAMOND"})
+    private SyntheticWorkflows.Shape shape;
+
+    @Param({"10", "100", "1000", "10000"})
+    private int size;
+
+    @Param({"bench-noop", "bench-cpu"})
+    private String handler;
+
+    @Param({"1", "2", "4", "8"})
+    private int threads;
+
+    private ForkJoinPool pool;
+    private WorkflowExecutor workflowExecutor;
+    private ExecutionPlan plan;
+
+    @Setup
+    public void setUp() {
+        pool = new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        TaskHandlerRegistry registry = new TaskHandlerRegistry(List.of(new NoopHandler(), new CpuHandler()));
+        workflowExecutor = new WorkflowExecutor(registry, pool, new ExecutionMetrics(new SimpleMeterRegistry()),
+                OutputSpiller.disabled(), MemoryBudget.unbounded(),
+                TaskResultCache.disabled(), TaskGuards.disabled());
+        plan = ExecutionPlan.compile(SyntheticWorkflows.build(shape, size, handler), id -> Optional.empty());
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    public WorkflowRun execute(TaskCounter counter) {
+        WorkflowRun run = workflowExecutor.execute(plan, Map.of()).join();
+        counter.tasks += plan.size();
+        return run;
+    }
+
+    @Benchmark
+    public ExecutionPlan compile() {
+        return ExecutionPlan.compile(SyntheticWorkflows.build(shape, size, handler), id -> Optional.empty());
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class TaskCounter {
+        public long tasks;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            tasks = 0;
+        }
+    }
+
+    static class NoopHandler implements TaskHandler {
+        @Override
+        public Set<String> getTypes() {
+            return Set.of("bench-noop");
+        }
+
+        @Override
+        public Object execute(TaskContext context) {
+            return null;
+        }
+    }
+
+    // Roughly a few microseconds of pure computation per task
+    static class CpuHandler implements TaskHandler {
+        @Override
+        public Set<String> getTypes() {
+            return Set.of("bench-cpu");
+        }
+
+        @Override
+        public Object execute(TaskContext context) {
+            Blackhole.consumeCPU(2_000);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.tanyonghe.flowforge.config;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+@Configuration
+public class ExecutionConfig {
+
+    // Async (FIFO) mode suits event-style tasks that are forked and never joined
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool workflowExecutorPool(@Value("${flowforge.execution.threads:0}") int threads) {
+        int parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("workflow-executor-" + thread.getPoolIndex());
+            return thread;
+        }, null, true);
+    }
+
+    // Pool size, active/running threads, queued tasks and steals for the execution pool
+    @Bean
+    public MeterBinder workflowExecutorPoolMetrics(ForkJoinPool workflowExecutorPool) {
+        return new ExecutorServiceMetrics(workflowExecutorPool, "workflow.executor", Tags.empty());
+    }
+}
@@ -1,13 +1,18 @@
 package com.github.tanyonghe.flowforge.config;
 
+import com.github.tanyonghe.flowforge.security.JwtAuthenticationFilter;
+import com.github.tanyonghe.flowforge.security.JwtUtil;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -19,18 +24,24 @@ import java.util.Arrays;
 public class SecurityConfig {
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, JwtUtil jwtUtil) throws Exception {
         http
             .cors().and()
             .csrf().disable()
             .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
             .and()
+            .addFilterBefore(new JwtAuthenticationFilter(jwtUtil), UsernamePasswordAuthenticationFilter.class)
+            .exceptionHandling(ex -> ex.authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)))
             .authorizeHttpRequests(authz -> authz
                 // Public endpoints
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/api/workflows/**").permitAll()
                 .requestMatchers("/api/task-templates/**").permitAll()
+                // Bulk provisioning creates accounts and burns a BCrypt hash per row, so only admins may call it
+                .requestMatchers("/api/users/bulk").hasRole("ADMIN")
                 .requestMatchers("/api/users/**").permitAll()
+                // JFR recordings expose process internals, so only admins may take them
+                .requestMatchers("/api/diagnostics/**").hasRole("ADMIN")
                 // Protected endpoints (add these when you want to secure them)
                 // .requestMatchers("/api/workflows/**").authenticated()
                 // .requestMatchers("/api/task-templates/**").authenticated()
@@ -4,9 +4,11 @@ import com.github.tanyonghe.flowforge.dto.AuthRequest;
 import com.github.tanyonghe.flowforge.dto.AuthResponse;
 import com.github.tanyonghe.flowforge.model.User;
 import com.github.tanyonghe.flowforge.service.AuthService;
+import com.github.tanyonghe.flowforge.service.RegistrationRejectedException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -27,7 +29,7 @@ public class AuthController {
     }
     
     @PostMapping("/register")
-    public ResponseEntity<AuthResponse> register(
+    public ResponseEntity<?> register(
             @RequestBody AuthRequest request,
             @RequestParam String email,
             @RequestParam(required = false) String firstName,
@@ -35,8 +37,11 @@ public class AuthController {
         try {
             AuthResponse response = authService.register(request, email, firstName, lastName);
             return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().build();
+        } catch (RegistrationRejectedException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            // Not the caller's fault, and the message may describe our database
+            return ResponseEntity.internalServerError().body(Map.of("error", "Registration failed"));
         }
     }
     
@@ -50,6 +55,16 @@ public class AuthController {
         }
     }
     
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestParam String refreshToken) {
+        try {
+            authService.logout(refreshToken);
+            return ResponseEntity.ok().build();
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
     @GetMapping("/me")
     public ResponseEntity<User> getCurrentUser(@RequestHeader(value = "Authorization", required = false) String authHeader) {
         try {
@@ -0,0 +1,75 @@
+package com.github.tanyonghe.flowforge.controller;
+
+import com.github.tanyonghe.flowforge.service.FlightRecorderService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/diagnostics")
+@RequiredArgsConstructor
+public class DiagnosticsController {
+
+    private final FlightRecorderService flightRecorderService;
+
+    @PostMapping("/recordings")
+    public ResponseEntity<?> startRecording(@RequestParam(required = false) Duration duration)
+            throws IOException, ParseException {
+        try {
+            return ResponseEntity.ok(flightRecorderService.startRecording(duration));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/recordings/{id}")
+    public ResponseEntity<Map<String, Object>> getRecording(@PathVariable long id) {
+        try {
+            return ResponseEntity.ok(flightRecorderService.getRecording(id));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @PostMapping("/recordings/{id}/stop")
+    public ResponseEntity<Map<String, Object>> stopRecording(@PathVariable long id) {
+        try {
+            return ResponseEntity.ok(flightRecorderService.stopRecording(id));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    // Streams a .jfr file for JDK Mission Control; the temporary dump is removed afterwards
+    @GetMapping("/recordings/{id}/dump")
+    public ResponseEntity<StreamingResponseBody> dumpRecording(@PathVariable long id) throws IOException {
+        Path file;
+        try {
+            file = flightRecorderService.dumpRecording(id);
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+        StreamingResponseBody body = out -> {
+            try {
+                Files.copy(file, out);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(Files.size(file))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"recording-" + id + ".jfr\"")
+                .body(body);
+    }
+}
@@ -0,0 +1,181 @@
+package com.github.tanyonghe.flowforge.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+// Serialized bodies for read-mostly definition endpoints, keyed by resource and wire format
+// (JSON, or CBOR when the client prefers it) and tagged with a strong ETag (SHA-256 of the bytes). A matching If-None-Match is answered with 304 straight
+// from the cache; controllers evict on writes and the TTL bounds staleness across instances.
+// Bodies above the compression threshold are also gzipped once at fill time and served to clients
+// that accept gzip, instead of being recompressed by the container on every request.
+@Component
+public class SerializedResponseCache {
+
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper cborMapper;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final long gzipMinBytes;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public SerializedResponseCache(ObjectMapper objectMapper,
+                                   MappingJackson2CborHttpMessageConverter cborConverter,
+                                   @Value("${flowforge.web.response-cache.ttl:60s}") Duration ttl,
+                                   @Value("${flowforge.web.response-cache.max-entries:1000}") int maxEntries,
+                                   @Value("${server.compression.min-response-size:2KB}") DataSize gzipMinSize) {
+        this.objectMapper = objectMapper;
+        this.cborMapper = cborConverter.getObjectMapper();
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+        this.gzipMinBytes = gzipMinSize.toBytes();
+    }
+
+    // Returns null when the loader finds nothing, so the caller can answer 404
+    public ResponseEntity<byte[]> respond(String key, WebRequest request, Supplier<?> loader) {
+        MediaType format = prefersCbor(request.getHeader(HttpHeaders.ACCEPT))
+                ? MediaType.APPLICATION_CBOR
+                : MediaType.APPLICATION_JSON;
+        Entry entry = lookup(key + "|" + format.getSubtype(), format, loader);
+        if (entry == null) {
+            return null;
+        }
+        // Each encoding is a distinct representation, so it gets its own strong ETag
+        boolean gzip = entry.gzipBody != null && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        String etag = gzip ? entry.gzipEtag : entry.etag;
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                .contentType(format);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(gzip ? entry.gzipBody : entry.body);
+    }
+
+    public void evict(String key) {
+        evictByPrefix(key + "|");
+    }
+
+    public void evictByPrefix(String prefix) {
+        entries.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    private Entry lookup(String key, MediaType format, Supplier<?> loader) {
+        long now = System.nanoTime();
+        Entry entry = entries.get(key);
+        if (entry != null && now - entry.createdNanos < ttlNanos) {
+            return entry;
+        }
+        Object value = loader.get();
+        if (value == null) {
+            entries.remove(key);
+            return null;
+        }
+        entry = serialize(MediaType.APPLICATION_CBOR.equals(format) ? cborMapper : objectMapper, value, now);
+        if (ttlNanos > 0) {
+            if (entries.size() >= maxEntries) {
+                entries.values().removeIf(e -> now - e.createdNanos >= ttlNanos);
+            }
+            if (entries.size() < maxEntries) {
+                entries.put(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    private Entry serialize(ObjectMapper mapper, Object value, long now) {
+        try {
+            byte[] body = mapper.writeValueAsBytes(value);
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            String hash = Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+            byte[] gzipBody = body.length >= gzipMinBytes ? gzip(body) : null;
+            return new Entry(body, gzipBody, "\"" + hash + "\"", "\"" + hash + "-gzip\"", now);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize response", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    // JSON stays the default; CBOR only when the client ranks it strictly higher
+    static boolean prefersCbor(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return false;
+        }
+        double cbor = 0;
+        double json = 0;
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        for (MediaType mediaType : mediaTypes) {
+            double quality = mediaType.getQualityValue();
+            if (MediaType.APPLICATION_CBOR.equalsTypeAndSubtype(mediaType)) {
+                cbor = Math.max(cbor, quality);
+            }
+            if (mediaType.includes(MediaType.APPLICATION_JSON)) {
+                json = Math.max(json, quality);
+            }
+        }
+        return cbor > json;
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private record Entry(byte[] body, byte[] gzipBody, String etag, String gzipEtag, long createdNanos) {
+    }
+}
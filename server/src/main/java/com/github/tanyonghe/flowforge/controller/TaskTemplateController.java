@@ -5,6 +5,7 @@ import com.github.tanyonghe.flowforge.service.TaskTemplateService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,12 +14,17 @@ import java.util.Optional;
 @CrossOrigin(origins = "*")
 public class TaskTemplateController {
     
+    private static final String CACHE_PREFIX = "task-templates:";
+    
     @Autowired
     private TaskTemplateService taskTemplateService;
     
+    @Autowired
+    private SerializedResponseCache responseCache;
+    
     @GetMapping
-    public ResponseEntity<List<TaskTemplate>> getAllTaskTemplates() {
-        return ResponseEntity.ok(taskTemplateService.getAllTaskTemplates());
+    public ResponseEntity<byte[]> getAllTaskTemplates(WebRequest request) {
+        return responseCache.respond(CACHE_PREFIX + "all", request, taskTemplateService::getAllTaskTemplates);
     }
     
     @GetMapping("/{id}")
@@ -39,19 +45,23 @@ public class TaskTemplateController {
     }
     
     @GetMapping("/active")
-    public ResponseEntity<List<TaskTemplate>> getActiveTaskTemplates() {
-        return ResponseEntity.ok(taskTemplateService.getActiveTaskTemplates());
+    public ResponseEntity<byte[]> getActiveTaskTemplates(WebRequest request) {
+        return responseCache.respond(CACHE_PREFIX + "active", request, taskTemplateService::getActiveTaskTemplates);
     }
     
     @PostMapping
     public ResponseEntity<TaskTemplate> createTaskTemplate(@RequestBody TaskTemplate taskTemplate) {
-        return ResponseEntity.ok(taskTemplateService.createTaskTemplate(taskTemplate));
+        TaskTemplate created = taskTemplateService.createTaskTemplate(taskTemplate);
+        responseCache.evictByPrefix(CACHE_PREFIX);
+        return ResponseEntity.ok(created);
     }
     
     @PutMapping("/{id}")
     public ResponseEntity<TaskTemplate> updateTaskTemplate(@PathVariable String id, @RequestBody TaskTemplate taskTemplate) {
         try {
-            return ResponseEntity.ok(taskTemplateService.updateTaskTemplate(id, taskTemplate));
+            TaskTemplate updated = taskTemplateService.updateTaskTemplate(id, taskTemplate);
+            responseCache.evictByPrefix(CACHE_PREFIX);
+            return ResponseEntity.ok(updated);
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
@@ -60,6 +70,7 @@ public class TaskTemplateController {
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteTaskTemplate(@PathVariable String id) {
         taskTemplateService.deleteTaskTemplate(id);
+        responseCache.evictByPrefix(CACHE_PREFIX);
         return ResponseEntity.ok().build();
     }
 } 
\ No newline at end of file
@@ -1,20 +1,27 @@
 package com.github.tanyonghe.flowforge.controller;
 
+import com.github.tanyonghe.flowforge.dto.BulkUserProvisionResponse;
 import com.github.tanyonghe.flowforge.dto.UserProfileRequest;
 import com.github.tanyonghe.flowforge.dto.UserProfileResponse;
 import com.github.tanyonghe.flowforge.model.User;
+import com.github.tanyonghe.flowforge.service.UserProvisioningService;
 import com.github.tanyonghe.flowforge.service.UserService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 @RestController
 @RequestMapping("/api/users")
 @RequiredArgsConstructor
 public class UserController {
     
     private final UserService userService;
+    private final UserProvisioningService userProvisioningService;
     
     @GetMapping("/profile")
     public ResponseEntity<UserProfileResponse> getCurrentUserProfile(Authentication authentication) {
@@ -26,18 +33,7 @@ public class UserController {
         User user = userService.getUserByUsername(username)
             .orElseThrow(() -> new RuntimeException("User not found"));
         
-        UserProfileResponse response = new UserProfileResponse();
-        response.setId(user.getId());
-        response.setUsername(user.getUsername());
-        response.setEmail(user.getEmail());
-        response.setFirstName(user.getFirstName());
-        response.setLastName(user.getLastName());
-        response.setRole(user.getRole());
-        response.setEnabled(user.isEnabled());
-        response.setCreatedAt(user.getCreatedAt());
-        response.setLastLoginAt(user.getLastLoginAt());
-        
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(UserProfileResponse.from(user));
     }
     
     @PutMapping("/profile")
@@ -61,18 +57,13 @@ public class UserController {
         
         User savedUser = userService.updateUserProfile(currentUser.getId(), updatedUser);
         
-        UserProfileResponse response = new UserProfileResponse();
-        response.setId(savedUser.getId());
-        response.setUsername(savedUser.getUsername());
-        response.setEmail(savedUser.getEmail());
-        response.setFirstName(savedUser.getFirstName());
-        response.setLastName(savedUser.getLastName());
-        response.setRole(savedUser.getRole());
-        response.setEnabled(savedUser.isEnabled());
-        response.setCreatedAt(savedUser.getCreatedAt());
-        response.setLastLoginAt(savedUser.getLastLoginAt());
-        
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(UserProfileResponse.from(savedUser));
+    }
+    
+    // NDJSON body, one {"username", "password", "email", "firstName", "lastName"} object per line
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<BulkUserProvisionResponse> provisionUsers(InputStream body) throws IOException {
+        return ResponseEntity.ok(userProvisioningService.provisionUsers(body));
     }
     
     @GetMapping("/{id}")
@@ -80,18 +71,7 @@ public class UserController {
         User user = userService.getUserById(id)
             .orElseThrow(() -> new RuntimeException("User not found"));
         
-        UserProfileResponse response = new UserProfileResponse();
-        response.setId(user.getId());
-        response.setUsername(user.getUsername());
-        response.setEmail(user.getEmail());
-        response.setFirstName(user.getFirstName());
-        response.setLastName(user.getLastName());
-        response.setRole(user.getRole());
-        response.setEnabled(user.isEnabled());
-        response.setCreatedAt(user.getCreatedAt());
-        response.setLastLoginAt(user.getLastLoginAt());
-        
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(UserProfileResponse.from(user));
     }
     
     // For testing purposes - get first available user
@@ -107,17 +87,6 @@ public class UserController {
                 return userService.createUser(testUser);
             });
         
-        UserProfileResponse response = new UserProfileResponse();
-        response.setId(user.getId());
-        response.setUsername(user.getUsername());
-        response.setEmail(user.getEmail());
-        response.setFirstName(user.getFirstName());
-        response.setLastName(user.getLastName());
-        response.setRole(user.getRole());
-        response.setEnabled(user.isEnabled());
-        response.setCreatedAt(user.getCreatedAt());
-        response.setLastLoginAt(user.getLastLoginAt());
-        
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(UserProfileResponse.from(user));
     }
 } 
\ No newline at end of file
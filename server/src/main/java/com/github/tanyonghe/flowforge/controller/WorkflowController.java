@@ -1,65 +1,238 @@
 package com.github.tanyonghe.flowforge.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tanyonghe.flowforge.engine.ExecutionCapacityException;
+import com.github.tanyonghe.flowforge.engine.WorkflowValidationException;
 import com.github.tanyonghe.flowforge.model.Workflow;
+import com.github.tanyonghe.flowforge.model.WorkflowRun;
+import com.github.tanyonghe.flowforge.model.WorkflowRunTrace;
+import com.github.tanyonghe.flowforge.service.IdempotencyConflictException;
+import com.github.tanyonghe.flowforge.service.IdempotencyService;
 import com.github.tanyonghe.flowforge.service.WorkflowService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/workflows")
 @RequiredArgsConstructor
 public class WorkflowController {
+    private static final String CACHE_PREFIX = "workflow:";
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
     private final WorkflowService workflowService;
+    private final SerializedResponseCache responseCache;
+    private final IdempotencyService idempotencyService;
+    private final ObjectMapper objectMapper;
+    private final MappingJackson2CborHttpMessageConverter cborConverter;
 
     @PostMapping
-    public ResponseEntity<Workflow> createWorkflow(@RequestBody Workflow workflow) {
-        return ResponseEntity.ok(workflowService.createWorkflow(workflow));
+    public ResponseEntity<?> createWorkflow(@RequestBody Workflow workflow) {
+        try {
+            return ResponseEntity.ok(workflowService.createWorkflow(workflow));
+        } catch (WorkflowValidationException e) {
+            return invalid(e);
+        }
     }
 
     @GetMapping
-    public ResponseEntity<List<Workflow>> getAllWorkflows() {
-        return ResponseEntity.ok(workflowService.getAllWorkflows());
+    public ResponseEntity<StreamingResponseBody> getAllWorkflows(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return streamArray(workflowService::getAllWorkflows, accept);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Workflow> getWorkflowById(@PathVariable String id) {
-        return workflowService.getWorkflowById(id)
-            .map(ResponseEntity::ok)
-            .orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<byte[]> getWorkflowById(@PathVariable String id, WebRequest request) {
+        ResponseEntity<byte[]> response = responseCache.respond(CACHE_PREFIX + id, request,
+            () -> workflowService.getWorkflowById(id).orElse(null));
+        return response != null ? response : ResponseEntity.notFound().build();
     }
 
     @GetMapping("/status/{status}")
-    public ResponseEntity<List<Workflow>> getWorkflowsByStatus(@PathVariable String status) {
-        return ResponseEntity.ok(workflowService.getWorkflowsByStatus(status));
+    public ResponseEntity<StreamingResponseBody> getWorkflowsByStatus(
+            @PathVariable String status,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return streamArray(() -> workflowService.getWorkflowsByStatus(status), accept);
     }
 
     @GetMapping("/creator/{creator}")
-    public ResponseEntity<List<Workflow>> getWorkflowsByCreator(@PathVariable String creator) {
-        return ResponseEntity.ok(workflowService.getWorkflowsByCreator(creator));
+    public ResponseEntity<StreamingResponseBody> getWorkflowsByCreator(
+            @PathVariable String creator,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return streamArray(() -> workflowService.getWorkflowsByCreator(creator), accept);
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<Workflow> updateWorkflow(@PathVariable String id, @RequestBody Workflow workflow) {
-        return ResponseEntity.ok(workflowService.updateWorkflow(id, workflow));
+    public ResponseEntity<?> updateWorkflow(@PathVariable String id, @RequestBody Workflow workflow) {
+        Workflow updated;
+        try {
+            updated = workflowService.updateWorkflow(id, workflow);
+        } catch (WorkflowValidationException e) {
+            return invalid(e);
+        }
+        responseCache.evict(CACHE_PREFIX + id);
+        return ResponseEntity.ok(updated);
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteWorkflow(@PathVariable String id) {
         workflowService.deleteWorkflow(id);
+        responseCache.evict(CACHE_PREFIX + id);
         return ResponseEntity.ok().build();
     }
 
+    // With an Idempotency-Key, retries get the first request's result instead of starting another run
     @PostMapping("/{id}/execute")
     public ResponseEntity<Map<String, Object>> executeWorkflow(
             @PathVariable String id,
-            @RequestBody Map<String, Object> input) {
+            @RequestBody Map<String, Object> input,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            Authentication authentication) {
+        if (idempotencyKey != null && (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", IDEMPOTENCY_KEY + " must be 1-" + MAX_IDEMPOTENCY_KEY_LENGTH + " characters"));
+        }
+        // Keys are per caller, so one user can't read another's result by guessing a key. Anonymous callers
+        // have no scope of their own to put them in.
+        boolean anonymous = authentication == null || authentication instanceof AnonymousAuthenticationToken;
+        if (idempotencyKey != null && anonymous) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(Map.of("error", IDEMPOTENCY_KEY + " requires an authenticated caller"));
+        }
         try {
-            return ResponseEntity.ok(workflowService.executeWorkflow(id, input));
+            if (idempotencyKey == null) {
+                return ResponseEntity.ok(workflowService.executeWorkflow(id, input));
+            }
+            String scope = authentication.getName() + "/" + id;
+            return ResponseEntity.ok(idempotencyService.execute(scope, idempotencyKey, input,
+                () -> workflowService.executeWorkflow(id, input)));
+        } catch (IdempotencyConflictException e) {
+            if (e.getReason() == IdempotencyConflictException.Reason.IN_PROGRESS) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("error", e.getMessage()));
+            }
+            return ResponseEntity.unprocessableEntity().body(Map.of("error", e.getMessage()));
+        } catch (ExecutionCapacityException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .body(Map.of("error", e.getMessage()));
         } catch (RuntimeException e) {
             return ResponseEntity.internalServerError().build();
         }
     }
-} 
\ No newline at end of file
+
+    @GetMapping("/{id}/runs")
+    public ResponseEntity<List<WorkflowRun>> getRunsByWorkflow(@PathVariable String id) {
+        return ResponseEntity.ok(workflowService.getRunsByWorkflow(id));
+    }
+
+    @PostMapping("/runs/{runId}/rerun")
+    public ResponseEntity<Map<String, Object>> rerunWorkflow(
+            @PathVariable String runId,
+            @RequestParam(required = false) String from) {
+        try {
+            return workflowService.rerunWorkflow(runId, from)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (ExecutionCapacityException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/runs/{runId}")
+    public ResponseEntity<WorkflowRun> getRunById(@PathVariable String runId) {
+        return workflowService.getRunById(runId)
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/runs/{runId}/outputs/{taskName}")
+    public ResponseEntity<?> getTaskOutput(@PathVariable String runId, @PathVariable String taskName)
+            throws IOException {
+        Optional<Object> output;
+        try {
+            output = workflowService.getTaskOutput(runId, taskName);
+        } catch (FileNotFoundException e) {
+            // Spilled outputs are kept for flowforge.execution.output-spill.retention, the run for longer
+            return ResponseEntity.status(HttpStatus.GONE)
+                .body(Map.of("error", "Output of task '" + taskName + "' has expired"));
+        }
+        if (output.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (output.get() instanceof InputStream spilled) {
+            return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(new InputStreamResource(spilled));
+        }
+        return ResponseEntity.ok(output.get());
+    }
+
+    @GetMapping("/runs/{runId}/trace")
+    public ResponseEntity<WorkflowRunTrace> getRunTrace(@PathVariable String runId) {
+        return workflowService.getRunTrace(runId)
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/runs/{runId}/critical-path")
+    public ResponseEntity<Map<String, Object>> getCriticalPath(@PathVariable String runId) {
+        return workflowService.getCriticalPath(runId)
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Writes each workflow from the Mongo cursor straight into the response, as JSON or as CBOR when the
+    // client prefers it. The cursor is opened and closed around the write, so it is released even if the
+    // client goes away halfway through.
+    private ResponseEntity<StreamingResponseBody> streamArray(Supplier<Stream<Workflow>> query, String accept) {
+        boolean cbor = SerializedResponseCache.prefersCbor(accept);
+        ObjectMapper mapper = cbor ? cborConverter.getObjectMapper() : objectMapper;
+        StreamingResponseBody body = out -> {
+            try (Stream<Workflow> workflows = query.get();
+                 JsonGenerator generator = mapper.getFactory().createGenerator(out)
+                         .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                generator.writeStartArray();
+                for (Iterator<Workflow> it = workflows.iterator(); it.hasNext(); ) {
+                    generator.writeObject(it.next());
+                }
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(cbor ? MediaType.APPLICATION_CBOR : MediaType.APPLICATION_JSON)
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(body);
+    }
+
+    private ResponseEntity<Map<String, Object>> invalid(WorkflowValidationException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage(), "errors", e.getErrors()));
+    }
+}
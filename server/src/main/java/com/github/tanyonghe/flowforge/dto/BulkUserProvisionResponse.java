@@ -0,0 +1,25 @@
+package com.github.tanyonghe.flowforge.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class BulkUserProvisionResponse {
+    private int received;
+    private int created;
+    private int failed;
+    private boolean truncated; // true when rows past the per-request limit were not read
+    private List<RowFailure> failures = new ArrayList<>();
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class RowFailure {
+        private int line; // 1-based line number in the NDJSON body
+        private String username;
+        private String error;
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.tanyonghe.flowforge.dto;
 
+import com.github.tanyonghe.flowforge.model.User;
 import lombok.Data;
 import java.time.LocalDateTime;
 
@@ -14,4 +15,18 @@ public class UserProfileResponse {
     private boolean enabled;
     private LocalDateTime createdAt;
     private LocalDateTime lastLoginAt;
-} 
\ No newline at end of file
+    
+    public static UserProfileResponse from(User user) {
+        UserProfileResponse response = new UserProfileResponse();
+        response.setId(user.getId());
+        response.setUsername(user.getUsername());
+        response.setEmail(user.getEmail());
+        response.setFirstName(user.getFirstName());
+        response.setLastName(user.getLastName());
+        response.setRole(user.getRole());
+        response.setEnabled(user.isEnabled());
+        response.setCreatedAt(user.getCreatedAt());
+        response.setLastLoginAt(user.getLastLoginAt());
+        return response;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,12 @@
+package com.github.tanyonghe.flowforge.dto;
+
+import lombok.Data;
+
+@Data
+public class UserProvisionRequest {
+    private String username;
+    private String password;
+    private String email;
+    private String firstName;
+    private String lastName;
+}
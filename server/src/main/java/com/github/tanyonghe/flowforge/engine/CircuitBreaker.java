@@ -0,0 +1,103 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import java.util.function.LongSupplier;
+
+// Count-based circuit breaker. While CLOSED it keeps the outcomes of the last windowSize calls and
+// opens once at least minimumCalls of them are recorded and the failure rate reaches the threshold.
+// OPEN rejects every call until openDuration has passed, then HALF_OPEN lets halfOpenCalls probes
+// through: all of them succeeding closes the breaker, any failure opens it again.
+final class CircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureRateThreshold;
+    private final int minimumCalls;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final LongSupplier nanoClock;
+    private final boolean[] failures;
+
+    private State state = State.CLOSED;
+    private int next;
+    private int recorded;
+    private int failed;
+    private long openedAt;
+    private int probesIssued;
+    private int probesSucceeded;
+
+    CircuitBreaker(int failureRateThreshold, int windowSize, int minimumCalls, long openNanos, int halfOpenCalls,
+                   LongSupplier nanoClock) {
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.openNanos = openNanos;
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        this.nanoClock = nanoClock;
+        this.failures = new boolean[windowSize];
+    }
+
+    synchronized boolean tryAcquire() {
+        if (state == State.OPEN && nanoClock.getAsLong() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+            probesIssued = 0;
+            probesSucceeded = 0;
+        }
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (probesIssued < halfOpenCalls) {
+                    probesIssued++;
+                    yield true;
+                }
+                yield false;
+            }
+        };
+    }
+
+    // For a permit that was acquired but never used, e.g. because the bulkhead was full
+    synchronized void cancel() {
+        if (state == State.HALF_OPEN && probesIssued > 0) {
+            probesIssued--;
+        }
+    }
+
+    synchronized void record(boolean success) {
+        switch (state) {
+            case CLOSED -> {
+                if (recorded == failures.length) {
+                    failed -= failures[next] ? 1 : 0;
+                } else {
+                    recorded++;
+                }
+                failures[next] = !success;
+                failed += success ? 0 : 1;
+                next = (next + 1) % failures.length;
+                if (recorded >= minimumCalls && failed * 100 >= failureRateThreshold * recorded) {
+                    open();
+                }
+            }
+            case HALF_OPEN -> {
+                if (!success) {
+                    open();
+                } else if (++probesSucceeded >= halfOpenCalls) {
+                    state = State.CLOSED;
+                    next = 0;
+                    recorded = 0;
+                    failed = 0;
+                }
+            }
+            // Calls that started before the breaker opened say nothing about the dependency now
+            case OPEN -> {
+            }
+        }
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = nanoClock.getAsLong();
+    }
+}
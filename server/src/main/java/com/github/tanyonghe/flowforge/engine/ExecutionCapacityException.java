@@ -0,0 +1,9 @@
+package com.github.tanyonghe.flowforge.engine;
+
+// A run was refused because executing it would exceed the configured memory budgets
+public class ExecutionCapacityException extends RuntimeException {
+
+    public ExecutionCapacityException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,142 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import com.github.tanyonghe.flowforge.model.WorkflowRun;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+// Meters for the execution hot path. Per-type meters are resolved once and cached,
+// so recording a task is a map lookup rather than a registry lookup with tag allocation.
+// Task types come from user workflows, so types without a handler share the "unknown" tag.
+@Component
+public class ExecutionMetrics {
+
+    static final String UNKNOWN_TYPE = "unknown";
+
+    static final String TASK_EXECUTION = "flowforge.task.execution";
+    static final String TASK_RETRIES = "flowforge.task.retries";
+    static final String WORKFLOW_RUN = "flowforge.workflow.run";
+    static final String TASK_MEMO = "flowforge.task.memo";
+    static final String OUTPUT_SPILLS = "flowforge.execution.outputs.spilled";
+    static final String MEMO_PERSIST_FAILURES = "flowforge.task.memo.persist.failures";
+
+    private final MeterRegistry registry;
+    private final Predicate<String> knownType;
+    private final Map<String, TypeMeters> typeMeters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> runTimers = new ConcurrentHashMap<>();
+    private final AtomicInteger activeRuns;
+    private final AtomicInteger activeTasks;
+    private final Map<String, Counter> spills;
+    private final Counter memoPersistFailures;
+
+    // The registry holds handlers that record metrics, so it is looked up lazily rather than injected
+    @Autowired
+    public ExecutionMetrics(MeterRegistry registry, ObjectProvider<TaskHandlerRegistry> handlerRegistry) {
+        this(registry, type -> handlerRegistry.getObject().isRegistered(type));
+    }
+
+    // Tags every type as given, for tests and benchmarks that only run their own handlers
+    public ExecutionMetrics(MeterRegistry registry) {
+        this(registry, type -> true);
+    }
+
+    ExecutionMetrics(MeterRegistry registry, Predicate<String> knownType) {
+        this.registry = registry;
+        this.knownType = knownType;
+        this.activeRuns = registry.gauge("flowforge.workflow.runs.active", new AtomicInteger());
+        this.activeTasks = registry.gauge("flowforge.tasks.active", new AtomicInteger());
+        this.spills = Map.of(
+                "size", spillCounter("size"),
+                "document", spillCounter("document"),
+                "budget", spillCounter("budget"));
+        this.memoPersistFailures = Counter.builder(MEMO_PERSIST_FAILURES).register(registry);
+    }
+
+    void runStarted() {
+        activeRuns.incrementAndGet();
+    }
+
+    void runFinished(String status, long durationNanos) {
+        activeRuns.decrementAndGet();
+        runTimers.computeIfAbsent(status, s -> Timer.builder(WORKFLOW_RUN)
+                        .tag("status", s)
+                        .register(registry))
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void taskStarted() {
+        activeTasks.incrementAndGet();
+    }
+
+    void taskFinished(String type, long durationNanos, boolean succeeded, int retries) {
+        activeTasks.decrementAndGet();
+        TypeMeters meters = meters(type);
+        (succeeded ? meters.success : meters.failure).record(durationNanos, TimeUnit.NANOSECONDS);
+        if (retries > 0) {
+            meters.retries.increment(retries);
+        }
+    }
+
+    void memoLookup(String type, boolean hit) {
+        TypeMeters meters = meters(type);
+        (hit ? meters.memoHits : meters.memoMisses).increment();
+    }
+
+    // The result stayed in the memory tier; the task itself succeeded
+    void memoPersistFailed() {
+        memoPersistFailures.increment();
+    }
+
+    // Reason is "size" (over the threshold), "document" (the run document is full) or "budget" (the memory
+    // budget is exhausted, which means it is too tight)
+    void outputSpilled(String reason) {
+        spills.get(reason).increment();
+    }
+
+    private TypeMeters meters(String type) {
+        String tag = type != null && knownType.test(type) ? type : UNKNOWN_TYPE;
+        TypeMeters meters = typeMeters.get(tag);
+        return meters != null ? meters : typeMeters.computeIfAbsent(tag, this::createTypeMeters);
+    }
+
+    private TypeMeters createTypeMeters(String type) {
+        return new TypeMeters(
+                taskTimer(type, "success"),
+                taskTimer(type, "failure"),
+                Counter.builder(TASK_RETRIES).tag("type", type).register(registry),
+                memoCounter(type, "hit"),
+                memoCounter(type, "miss"));
+    }
+
+    private Counter memoCounter(String type, String result) {
+        return Counter.builder(TASK_MEMO)
+                .tag("type", type)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private Counter spillCounter(String reason) {
+        return Counter.builder(OUTPUT_SPILLS)
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    private Timer taskTimer(String type, String outcome) {
+        return Timer.builder(TASK_EXECUTION)
+                .tag("type", type)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private record TypeMeters(Timer success, Timer failure, Counter retries, Counter memoHits, Counter memoMisses) {
+    }
+}
@@ -0,0 +1,237 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import com.github.tanyonghe.flowforge.model.TaskTemplate;
+import com.github.tanyonghe.flowforge.model.Workflow;
+import lombok.Getter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+// Immutable, index-based form of a workflow's task graph. Compiled once per execution and shared by all task threads.
+public class ExecutionPlan {
+
+    @Getter
+    private final String workflowId;
+    private final List<Node> nodes;
+    private final Map<String, Node> nodesByName;
+    private final int[] roots;
+
+    private ExecutionPlan(String workflowId, List<Node> nodes, int[] roots) {
+        this.workflowId = workflowId;
+        this.nodes = nodes;
+        this.roots = roots;
+        this.nodesByName = new HashMap<>();
+        for (Node node : nodes) {
+            nodesByName.put(node.getName(), node);
+        }
+    }
+
+    public static ExecutionPlan compile(Workflow workflow, Function<String, Optional<TaskTemplate>> templateLookup) {
+        List<Workflow.Task> tasks = workflow.getTasks() != null ? workflow.getTasks() : Collections.emptyList();
+        int size = tasks.size();
+
+        Map<String, Integer> indexByName = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            String name = tasks.get(i).getName();
+            if (name == null || name.isBlank()) {
+                throw new RuntimeException("Task at position " + i + " has no name");
+            }
+            if (indexByName.putIfAbsent(name, i) != null) {
+                throw new RuntimeException("Duplicate task name: " + name);
+            }
+        }
+
+        int[][] successors = new int[size][];
+        int[] inDegree = new int[size];
+        for (int i = 0; i < size; i++) {
+            Workflow.Task task = tasks.get(i);
+            List<String> next = task.getNextTasks() != null ? task.getNextTasks() : Collections.emptyList();
+            successors[i] = new int[next.size()];
+            for (int j = 0; j < next.size(); j++) {
+                Integer target = indexByName.get(next.get(j));
+                if (target == null) {
+                    throw new RuntimeException("Task '" + task.getName() + "' references unknown task '" + next.get(j) + "'");
+                }
+                successors[i][j] = target;
+                inDegree[target]++;
+            }
+        }
+
+        int[][] predecessors = new int[size][];
+        int[] filled = new int[size];
+        for (int i = 0; i < size; i++) {
+            predecessors[i] = new int[inDegree[i]];
+        }
+        for (int i = 0; i < size; i++) {
+            for (int target : successors[i]) {
+                predecessors[target][filled[target]++] = i;
+            }
+        }
+
+        List<Integer> rootList = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (inDegree[i] == 0) {
+                rootList.add(i);
+            }
+        }
+        // Saved workflows were checked for cycles by WorkflowGraphAnalyzer; only unanalysed ones need it here
+        if (workflow.getGraph() == null && !isAcyclic(successors, inDegree, rootList)) {
+            throw new RuntimeException("Workflow contains a cycle");
+        }
+
+        List<Node> nodes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Workflow.Task task = tasks.get(i);
+            TaskTemplate template = task.getTemplateId() != null
+                    ? resolveTemplate(workflow, task, templateLookup)
+                    : null;
+            Map<String, Object> config = resolveConfig(task, template);
+            nodes.add(new Node(i, task.getName(), resolveType(task, template), task.getTemplateId(), config,
+                    successors[i], predecessors[i], isDeterministic(config, template)));
+        }
+        return new ExecutionPlan(workflow.getId(), Collections.unmodifiableList(nodes),
+                rootList.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    // Kahn's algorithm; anything left unvisited sits on a cycle
+    private static boolean isAcyclic(int[][] successors, int[] inDegree, List<Integer> roots) {
+        int[] remaining = inDegree.clone();
+        Deque<Integer> ready = new ArrayDeque<>(roots);
+        int visited = 0;
+        while (!ready.isEmpty()) {
+            int current = ready.poll();
+            visited++;
+            for (int target : successors[current]) {
+                if (--remaining[target] == 0) {
+                    ready.add(target);
+                }
+            }
+        }
+        return visited == successors.length;
+    }
+
+    private static TaskTemplate resolveTemplate(Workflow workflow, Workflow.Task task,
+                                                Function<String, Optional<TaskTemplate>> templateLookup) {
+        TemplateResolvedEvent event = new TemplateResolvedEvent();
+        event.begin();
+        TaskTemplate template = templateLookup.apply(task.getTemplateId()).orElse(null);
+        event.end();
+        if (event.shouldCommit()) {
+            event.workflowId = workflow.getId();
+            event.taskName = task.getName();
+            event.templateId = task.getTemplateId();
+            event.found = template != null;
+            event.commit();
+        }
+        return template;
+    }
+
+    private static String resolveType(Workflow.Task task, TaskTemplate template) {
+        if (task.getType() != null) {
+            return task.getType();
+        }
+        if (template != null && template.getType() != null) {
+            return template.getType();
+        }
+        return "task";
+    }
+
+    // Opted in through the resolved config, else for every use of a template through its metadata
+    private static boolean isDeterministic(Map<String, Object> config, TaskTemplate template) {
+        if (config.containsKey("deterministic")) {
+            return Boolean.TRUE.equals(config.get("deterministic"));
+        }
+        if (template != null && template.getMetadata() != null) {
+            return Boolean.TRUE.equals(template.getMetadata().get("deterministic"));
+        }
+        return false;
+    }
+
+    // Template defaults, then the task's own config, then explicit overrides
+    private static Map<String, Object> resolveConfig(Workflow.Task task, TaskTemplate template) {
+        Map<String, Object> config = new LinkedHashMap<>();
+        if (template != null && template.getDefaultConfig() != null) {
+            config.putAll(template.getDefaultConfig());
+        }
+        if (task.getConfig() != null) {
+            config.putAll(task.getConfig());
+        }
+        if (task.getConfigOverrides() != null) {
+            config.putAll(task.getConfigOverrides());
+        }
+        return Collections.unmodifiableMap(config);
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public Node getNode(int index) {
+        return nodes.get(index);
+    }
+
+    public Node getNode(String name) {
+        return nodesByName.get(name);
+    }
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    public int[] getRoots() {
+        return roots.clone();
+    }
+
+    @Getter
+    public static final class Node {
+        private final int index;
+        private final String name;
+        private final String type;
+        private final String templateId;
+        private final Map<String, Object> config;
+        private final int[] successors;
+        private final int[] predecessors;
+        private final int maxRetries;
+        private final boolean deterministic;
+        // Run input fields the task reads, from config "inputKeys"; null if it sees the whole input
+        private final List<String> inputKeys;
+
+        private Node(int index, String name, String type, String templateId, Map<String, Object> config,
+                     int[] successors, int[] predecessors, boolean deterministic) {
+            this.index = index;
+            this.name = name;
+            this.type = type;
+            this.templateId = templateId;
+            this.config = config;
+            this.successors = successors;
+            this.predecessors = predecessors;
+            this.maxRetries = config.get("retries") instanceof Number retries ? Math.max(0, retries.intValue()) : 0;
+            this.deterministic = deterministic;
+            this.inputKeys = config.get("inputKeys") instanceof List<?> keys
+                    ? keys.stream().map(String::valueOf).toList()
+                    : null;
+        }
+
+        // The part of the run input this task sees
+        Map<String, Object> sliceInput(Map<String, Object> input) {
+            if (inputKeys == null) {
+                return input;
+            }
+            Map<String, Object> slice = new LinkedHashMap<>();
+            for (String key : inputKeys) {
+                if (input.containsKey(key)) {
+                    slice.put(key, input.get(key));
+                }
+            }
+            return Collections.unmodifiableMap(slice);
+        }
+    }
+}
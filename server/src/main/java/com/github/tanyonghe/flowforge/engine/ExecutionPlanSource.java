@@ -0,0 +1,9 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import java.util.Optional;
+
+// Compiled plans of saved workflows by id, for tasks that run another workflow
+public interface ExecutionPlanSource {
+
+    Optional<ExecutionPlan> getPlan(String workflowId);
+}
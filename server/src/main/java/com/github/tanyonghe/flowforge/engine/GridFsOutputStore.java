@@ -0,0 +1,132 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tanyonghe.flowforge.model.OutputReference;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsOperations;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+// Stores outputs as gzip-compressed JSON files in GridFS. Loaded values are plain JSON structures
+// (maps, lists, strings, numbers), whatever type the handler originally returned. Files carry an
+// expiry and are deleted by a periodic sweep, as GridFS chunks can't be removed by a TTL index.
+@Component
+public class GridFsOutputStore implements OutputStore {
+
+    private final GridFsOperations gridFsOperations;
+    private final ObjectMapper objectMapper;
+    private final Duration retention;
+    private final Duration cleanupInterval;
+    private ScheduledExecutorService cleaner;
+
+    public GridFsOutputStore(GridFsOperations gridFsOperations, ObjectMapper objectMapper,
+                             @Value("${flowforge.execution.output-spill.retention:7d}") Duration retention,
+                             @Value("${flowforge.execution.output-spill.cleanup-interval:1h}")
+                             Duration cleanupInterval) {
+        this.gridFsOperations = gridFsOperations;
+        this.objectMapper = objectMapper;
+        this.retention = retention;
+        this.cleanupInterval = cleanupInterval;
+    }
+
+    @PostConstruct
+    void start() {
+        cleaner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "spilled-output-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cleaner.scheduleWithFixedDelay(() -> {
+            try {
+                deleteExpired();
+            } catch (RuntimeException e) {
+                // Retried on the next sweep; an exception would cancel the schedule for good
+            }
+        }, cleanupInterval.toMillis(), cleanupInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (cleaner != null) {
+            cleaner.shutdownNow();
+        }
+    }
+
+    @Override
+    public OutputReference store(String runId, String taskName, Object output, long sizeBytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        MessageDigest digest = sha256();
+        try (DigestOutputStream json = new DigestOutputStream(new GZIPOutputStream(compressed), digest)) {
+            objectMapper.writeValue(json, output);
+        }
+        Document metadata = new Document("runId", runId)
+                .append("taskName", taskName)
+                .append("contentEncoding", "gzip")
+                .append("expiresAt", new Date(System.currentTimeMillis() + retention.toMillis()));
+        String fileId = gridFsOperations.store(new ByteArrayInputStream(compressed.toByteArray()),
+                runId + "/" + taskName, MimeTypeUtils.APPLICATION_JSON_VALUE, metadata).toHexString();
+        return new OutputReference(fileId, sizeBytes, compressed.size(), HexFormat.of().formatHex(digest.digest()));
+    }
+
+    @Override
+    public Object load(OutputReference reference) throws IOException {
+        try (InputStream in = open(reference)) {
+            return objectMapper.readValue(in, Object.class);
+        }
+    }
+
+    @Override
+    public boolean exists(OutputReference reference) {
+        return gridFsOperations.findOne(Query.query(where("_id").is(reference.getFileId()))) != null;
+    }
+
+    @Override
+    public void deleteRun(String runId) {
+        gridFsOperations.delete(Query.query(where("metadata.runId").is(runId)));
+    }
+
+    void deleteExpired() {
+        gridFsOperations.delete(Query.query(where("metadata.expiresAt").lt(new Date())));
+    }
+
+    @Override
+    public InputStream open(OutputReference reference) throws IOException {
+        GridFSFile file = gridFsOperations.findOne(Query.query(where("_id").is(reference.getFileId())));
+        if (file == null) {
+            throw new FileNotFoundException("Spilled output not found: " + reference.getFileId());
+        }
+        return new GZIPInputStream(gridFsOperations.getResource(file).getInputStream());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Which hosts "http" tasks may call. Entries are host names, "*.example.com" suffixes, IP addresses or
+// CIDR ranges. Denied entries always win; a non-empty allowed list admits only matching hosts. Loopback,
+// private, link-local and other internal addresses are refused unless allowPrivateNetworks is set or an
+// allowed IP/CIDR entry covers the address - allowing a name does not vouch for where it resolves.
+// Every redirect hop is checked again.
+@Data
+@Component
+@ConfigurationProperties(prefix = "flowforge.http.hosts")
+public class HttpHostPolicy {
+
+    private List<String> allowed = new ArrayList<>();
+    private List<String> denied = new ArrayList<>();
+    private boolean allowPrivateNetworks;
+
+    void check(URI uri) {
+        if (uri.getHost() == null) {
+            throw new IllegalArgumentException("URL has no host: " + uri);
+        }
+        // IPv6 literals come back in brackets
+        String host = uri.getHost().toLowerCase(Locale.ROOT).replaceAll("^\\[|]$", "");
+        InetAddress[] addresses;
+        try {
+            addresses = InetAddress.getAllByName(host);
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Unknown host " + host);
+        }
+        for (String entry : denied) {
+            if (matchesName(entry, host) || matchesAddress(entry, addresses)) {
+                throw new IllegalArgumentException("Host " + host + " is not allowed");
+            }
+        }
+        if (!allowed.isEmpty() && allowed.stream()
+                .noneMatch(entry -> matchesName(entry, host) || matchesAddress(entry, addresses))) {
+            throw new IllegalArgumentException("Host " + host + " is not allowed");
+        }
+        if (allowPrivateNetworks) {
+            return;
+        }
+        for (InetAddress address : addresses) {
+            if (isInternal(address) && allowed.stream().noneMatch(entry -> matchesAddress(entry, address))) {
+                throw new IllegalArgumentException("Host " + host + " resolves to internal address "
+                        + address.getHostAddress());
+            }
+        }
+    }
+
+    private static boolean matchesName(String entry, String host) {
+        String pattern = entry.trim().toLowerCase(Locale.ROOT);
+        if (pattern.startsWith("*.")) {
+            return host.endsWith(pattern.substring(1));
+        }
+        return pattern.equals(host);
+    }
+
+    private static boolean matchesAddress(String entry, InetAddress... addresses) {
+        String pattern = entry.trim();
+        int slash = pattern.indexOf('/');
+        String network = slash < 0 ? pattern : pattern.substring(0, slash);
+        // Only IP literals and CIDR ranges match addresses; looking up a name here would hit DNS
+        if (!network.contains(":") && !network.chars().allMatch(c -> c == '.' || Character.isDigit(c))) {
+            return false;
+        }
+        byte[] prefix;
+        try {
+            prefix = InetAddress.getByName(network).getAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+        int bits = slash < 0 ? prefix.length * 8 : Integer.parseInt(pattern.substring(slash + 1));
+        for (InetAddress address : addresses) {
+            if (inRange(address.getAddress(), prefix, bits)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean inRange(byte[] address, byte[] prefix, int bits) {
+        if (address.length != prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < bits; i++) {
+            int mask = 0x80 >> (i % 8);
+            if ((address[i / 8] & mask) != (prefix[i / 8] & mask)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isInternal(InetAddress address) {
+        if (address.isAnyLocalAddress() || address.isLoopbackAddress() || address.isLinkLocalAddress()
+                || address.isSiteLocalAddress() || address.isMulticastAddress()) {
+            return true;
+        }
+        byte[] bytes = address.getAddress();
+        if (address instanceof Inet6Address) {
+            // fc00::/7 unique local
+            return (bytes[0] & 0xfe) == 0xfc;
+        }
+        // 100.64.0.0/10 carrier-grade NAT and 0.0.0.0/8
+        return (bytes[0] == 100 && (bytes[1] & 0xc0) == 64) || bytes[0] == 0;
+    }
+}
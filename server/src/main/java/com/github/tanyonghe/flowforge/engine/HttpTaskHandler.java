@@ -0,0 +1,397 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+// Calls an HTTP endpoint on one shared, pooled JDK HttpClient without holding a pool thread while it
+// waits. Config: "url", "method" (GET), "headers", "body" (strings are sent as is, anything else as
+// JSON), "timeoutMillis", "failOnStatus" (true: 4xx/5xx fail the task). The output is {status, headers,
+// body}, with JSON bodies parsed. Requests to one host beyond the per-host limit queue in memory rather
+// than opening more connections. With "hedge" set on an idempotent request, a second identical request
+// goes out if the first hasn't answered within that host's recent latency percentile ("hedge": true for
+// the default percentile, or e.g. 0.99), or after "hedgeAfterMillis"; the first response wins and the
+// other request is cancelled, freeing its host slot. Only hosts admitted by HttpHostPolicy are called,
+// redirects included, and bodies over the response size limit fail the task.
+@Component
+public class HttpTaskHandler implements TaskHandler {
+
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "OPTIONS", "PUT", "DELETE");
+    private static final Set<Integer> REDIRECT_STATUSES = Set.of(301, 302, 303, 307, 308);
+    private static final int MAX_REDIRECTS = 5;
+    private static final int LATENCY_SAMPLES = 256;
+
+    private final HttpClient client;
+    private final ObjectMapper objectMapper;
+    private final HttpHostPolicy hostPolicy;
+    private final HttpResponse.BodyHandler<String> bodyHandler;
+    private final int maxRequestsPerHost;
+    private final Duration requestTimeout;
+    private final double hedgePercentile;
+    private final int hedgeMinSamples;
+    private final Counter hedges;
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+
+    @Autowired
+    public HttpTaskHandler(ObjectMapper objectMapper, MeterRegistry meterRegistry, HttpHostPolicy hostPolicy,
+                           @Value("${flowforge.http.connect-timeout:5s}") Duration connectTimeout,
+                           @Value("${flowforge.http.request-timeout:30s}") Duration requestTimeout,
+                           @Value("${flowforge.http.max-requests-per-host:32}") int maxRequestsPerHost,
+                           @Value("${flowforge.http.hedge.percentile:0.95}") double hedgePercentile,
+                           @Value("${flowforge.http.hedge.min-samples:20}") int hedgeMinSamples,
+                           @Value("${flowforge.http.max-response-size:10MB}") DataSize maxResponseSize) {
+        // Redirects are followed by followRedirects so that every hop passes the host policy
+        this(HttpClient.newBuilder()
+                        .connectTimeout(connectTimeout)
+                        .followRedirects(HttpClient.Redirect.NEVER)
+                        .build(),
+                objectMapper, meterRegistry, hostPolicy, requestTimeout, maxRequestsPerHost, hedgePercentile,
+                hedgeMinSamples, maxResponseSize.toBytes());
+    }
+
+    HttpTaskHandler(HttpClient client, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                    HttpHostPolicy hostPolicy, Duration requestTimeout, int maxRequestsPerHost,
+                    double hedgePercentile, int hedgeMinSamples, long maxResponseBytes) {
+        this.client = client;
+        this.objectMapper = objectMapper;
+        this.hostPolicy = hostPolicy;
+        this.bodyHandler = new LimitedBodyHandler(maxResponseBytes);
+        this.requestTimeout = requestTimeout;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.hedgePercentile = hedgePercentile;
+        this.hedgeMinSamples = hedgeMinSamples;
+        this.hedges = Counter.builder("flowforge.http.hedges").register(meterRegistry);
+    }
+
+    @Override
+    public Set<String> getTypes() {
+        return Set.of("http");
+    }
+
+    // Blocking form for callers that can't take a future; the executor and "map" tasks use executeAsync
+    @Override
+    public Object execute(TaskContext context) throws Exception {
+        try {
+            return executeAsync(context).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Object> executeAsync(TaskContext context) {
+        Map<String, Object> config = context.getConfig();
+        HttpRequest request;
+        try {
+            request = buildRequest(context.getTaskName(), config);
+            hostPolicy.check(request.uri());
+        } catch (RuntimeException | JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        Host host = host(request.uri());
+        long hedgeAfter = hedgeAfterMillis(config, host, request.method());
+        CompletableFuture<HttpResponse<String>> response = hedgeAfter >= 0
+                ? sendHedged(host, request, hedgeAfter)
+                : send(host, request);
+        boolean failOnStatus = !Boolean.FALSE.equals(config.get("failOnStatus"));
+        return response
+                .thenCompose(r -> followRedirects(r, MAX_REDIRECTS))
+                .thenApply(r -> toOutput(r, failOnStatus));
+    }
+
+    private Host host(URI uri) {
+        return hosts.computeIfAbsent(uri.getScheme() + "://" + uri.getAuthority(), key -> new Host());
+    }
+
+    private HttpRequest buildRequest(String taskName, Map<String, Object> config) throws JsonProcessingException {
+        if (!(config.get("url") instanceof String url)) {
+            throw new IllegalArgumentException("HTTP task '" + taskName + "' needs a url");
+        }
+        String method = config.get("method") instanceof String m ? m.toUpperCase(Locale.ROOT) : "GET";
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(config.get("timeoutMillis") instanceof Number timeout
+                        ? Duration.ofMillis(timeout.longValue())
+                        : requestTimeout);
+        boolean hasContentType = false;
+        if (config.get("headers") instanceof Map<?, ?> headers) {
+            for (Map.Entry<?, ?> header : headers.entrySet()) {
+                builder.header(String.valueOf(header.getKey()), String.valueOf(header.getValue()));
+                hasContentType |= "content-type".equalsIgnoreCase(String.valueOf(header.getKey()));
+            }
+        }
+        Object body = config.get("body");
+        if (body == null) {
+            return builder.method(method, HttpRequest.BodyPublishers.noBody()).build();
+        }
+        if (body instanceof String text) {
+            return builder.method(method, HttpRequest.BodyPublishers.ofString(text)).build();
+        }
+        if (!hasContentType) {
+            builder.header("Content-Type", "application/json");
+        }
+        return builder.method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+    }
+
+    // Follows redirects the way HttpClient.Redirect.NORMAL does (never from https to http), checking each
+    // target against the host policy first. Every hop takes a slot of its own host.
+    private CompletableFuture<HttpResponse<String>> followRedirects(HttpResponse<String> response,
+                                                                    int redirectsLeft) {
+        Optional<String> location = response.headers().firstValue("Location");
+        if (!REDIRECT_STATUSES.contains(response.statusCode()) || location.isEmpty()) {
+            return CompletableFuture.completedFuture(response);
+        }
+        HttpRequest request = response.request();
+        HttpRequest next;
+        try {
+            URI target = request.uri().resolve(location.get());
+            if ("https".equalsIgnoreCase(request.uri().getScheme()) && !"https".equalsIgnoreCase(target.getScheme())) {
+                return CompletableFuture.completedFuture(response);
+            }
+            if (redirectsLeft == 0) {
+                throw new IllegalStateException("Too many redirects from " + request.method() + " " + request.uri());
+            }
+            hostPolicy.check(target);
+            next = redirect(request, target, response.statusCode());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return send(host(next.uri()), next).thenCompose(r -> followRedirects(r, redirectsLeft - 1));
+    }
+
+    // 303, and 301/302 after a POST, turn into a GET without a body; 307/308 repeat the request as is.
+    // Credentials are not forwarded to another host.
+    private static HttpRequest redirect(HttpRequest request, URI target, int status) {
+        boolean toGet = (status == 303 && !"HEAD".equals(request.method()))
+                || ((status == 301 || status == 302) && "POST".equals(request.method()));
+        boolean sameHost = target.getScheme().equalsIgnoreCase(request.uri().getScheme())
+                && target.getAuthority() != null
+                && target.getAuthority().equalsIgnoreCase(request.uri().getAuthority());
+        HttpRequest.Builder builder = HttpRequest.newBuilder(request, (name, value) -> {
+            String header = name.toLowerCase(Locale.ROOT);
+            if (!sameHost && (header.equals("authorization") || header.equals("cookie"))) {
+                return false;
+            }
+            return !toGet || !header.equals("content-type");
+        }).uri(target);
+        if (toGet) {
+            builder.method("GET", HttpRequest.BodyPublishers.noBody());
+        }
+        return builder.build();
+    }
+
+    // Delay before hedging, or -1 not to hedge
+    private long hedgeAfterMillis(Map<String, Object> config, Host host, String method) {
+        Object hedge = config.get("hedge");
+        if (hedge == null || Boolean.FALSE.equals(hedge) || !IDEMPOTENT_METHODS.contains(method)) {
+            return -1;
+        }
+        if (config.get("hedgeAfterMillis") instanceof Number after) {
+            return after.longValue();
+        }
+        double percentile = hedge instanceof Number p ? p.doubleValue() : hedgePercentile;
+        return host.latencyPercentileMillis(percentile, hedgeMinSamples);
+    }
+
+    // Cancelling the returned future aborts the exchange and frees its host slot right away; if it is
+    // still queued, it gives up its turn
+    private CompletableFuture<HttpResponse<String>> send(Host host, HttpRequest request) {
+        CompletableFuture<HttpResponse<String>> result = new CompletableFuture<>();
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                host.release();
+            }
+        };
+        host.submit(() -> {
+            // Giving up the turn hands the slot to the next waiting request
+            if (result.isDone()) {
+                released.set(true);
+                return false;
+            }
+            long start = System.nanoTime();
+            try {
+                CompletableFuture<HttpResponse<String>> exchange = client.sendAsync(request, bodyHandler);
+                result.whenComplete((response, error) -> {
+                    if (result.isCancelled()) {
+                        exchange.cancel(true);
+                        release.run();
+                    }
+                });
+                exchange.whenComplete((response, error) -> {
+                    release.run();
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        host.recordLatency(System.nanoTime() - start);
+                        result.complete(response);
+                    }
+                });
+            } catch (RuntimeException e) {
+                released.set(true);
+                result.completeExceptionally(e);
+                return false;
+            }
+            return true;
+        });
+        return result;
+    }
+
+    // The first response wins and the other request is cancelled; the task only fails if every request
+    // sent failed
+    private CompletableFuture<HttpResponse<String>> sendHedged(Host host, HttpRequest request, long hedgeAfterMillis) {
+        CompletableFuture<HttpResponse<String>> result = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        List<CompletableFuture<HttpResponse<String>>> sent = new CopyOnWriteArrayList<>();
+        BiConsumer<HttpResponse<String>, Throwable> settle = (response, error) -> {
+            if (error == null) {
+                result.complete(response);
+            } else if (outstanding.decrementAndGet() == 0) {
+                result.completeExceptionally(error);
+            }
+        };
+        result.whenComplete((response, error) -> sent.forEach(call -> call.cancel(true)));
+        CompletableFuture<HttpResponse<String>> first = send(host, request);
+        sent.add(first);
+        first.whenComplete(settle);
+        CompletableFuture.delayedExecutor(hedgeAfterMillis, TimeUnit.MILLISECONDS).execute(() -> {
+            // A saturated host gains nothing from more requests
+            if (result.isDone() || host.isSaturated()) {
+                return;
+            }
+            outstanding.incrementAndGet();
+            hedges.increment();
+            CompletableFuture<HttpResponse<String>> hedge = send(host, request);
+            sent.add(hedge);
+            hedge.whenComplete(settle);
+            // The first may have won while this one was being sent
+            if (result.isDone()) {
+                hedge.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private Object toOutput(HttpResponse<String> response, boolean failOnStatus) {
+        if (failOnStatus && response.statusCode() >= 400) {
+            throw new IllegalStateException("HTTP " + response.statusCode() + " from " + response.request().method()
+                    + " " + response.request().uri());
+        }
+        Object body = response.body();
+        boolean json = response.headers().firstValue("Content-Type")
+                .map(type -> type.toLowerCase(Locale.ROOT).contains("json"))
+                .orElse(false);
+        if (json && !response.body().isEmpty()) {
+            try {
+                body = objectMapper.readValue(response.body(), Object.class);
+            } catch (JsonProcessingException e) {
+                // Mislabelled body; hand it over as text
+            }
+        }
+        Map<String, Object> headers = new LinkedHashMap<>();
+        response.headers().map().forEach((name, values) ->
+                headers.put(name, values.size() == 1 ? values.get(0) : values));
+        Map<String, Object> output = new LinkedHashMap<>();
+        output.put("status", response.statusCode());
+        output.put("headers", headers);
+        output.put("body", body);
+        return output;
+    }
+
+    // In-flight limit and recent latencies of one scheme://host:port. Waiting requests are started by
+    // whichever response frees a slot, so nothing blocks. A start returns false when it gave up its turn.
+    private final class Host {
+        private final Queue<BooleanSupplier> waiting = new ArrayDeque<>();
+        private final long[] latencies = new long[LATENCY_SAMPLES];
+        private int active;
+        private int samples;
+        private int nextSample;
+
+        void submit(BooleanSupplier start) {
+            synchronized (this) {
+                if (active >= maxRequestsPerHost) {
+                    waiting.add(start);
+                    return;
+                }
+                active++;
+            }
+            if (!start.getAsBoolean()) {
+                release();
+            }
+        }
+
+        // The slot passes straight to the next waiting request; ones that give up their turn are skipped
+        // in this loop rather than each releasing again, so a long run of them doesn't nest calls
+        void release() {
+            while (true) {
+                BooleanSupplier next;
+                synchronized (this) {
+                    next = waiting.poll();
+                    if (next == null) {
+                        active--;
+                        return;
+                    }
+                }
+                if (next.getAsBoolean()) {
+                    return;
+                }
+            }
+        }
+
+        synchronized boolean isSaturated() {
+            return active >= maxRequestsPerHost;
+        }
+
+        synchronized void recordLatency(long nanos) {
+            latencies[nextSample] = nanos;
+            nextSample = (nextSample + 1) % LATENCY_SAMPLES;
+            samples = Math.min(samples + 1, LATENCY_SAMPLES);
+        }
+
+        // -1 until there are enough samples to trust the percentile
+        long latencyPercentileMillis(double percentile, int minSamples) {
+            long[] sorted;
+            synchronized (this) {
+                if (samples < Math.max(1, minSamples)) {
+                    return -1;
+                }
+                sorted = Arrays.copyOf(latencies, samples);
+            }
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile * sorted.length) - 1;
+            return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, Math.min(rank, sorted.length - 1))]);
+        }
+    }
+}
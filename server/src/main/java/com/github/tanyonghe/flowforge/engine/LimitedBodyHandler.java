@@ -0,0 +1,121 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+// BodyHandlers.ofString() that gives up once the body passes maxBytes: the exchange fails and the
+// connection is dropped instead of buffering whatever the server sends
+final class LimitedBodyHandler implements HttpResponse.BodyHandler<String> {
+
+    private final long maxBytes;
+
+    LimitedBodyHandler(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<String> apply(HttpResponse.ResponseInfo responseInfo) {
+        Charset charset = charset(responseInfo.headers());
+        long declared = responseInfo.headers().firstValueAsLong("Content-Length").orElse(-1);
+        return HttpResponse.BodySubscribers.mapping(new LimitedSubscriber(maxBytes, declared),
+                bytes -> new String(bytes, charset));
+    }
+
+    private static Charset charset(HttpHeaders headers) {
+        String type = headers.firstValue("Content-Type").orElse("");
+        for (String parameter : type.split(";")) {
+            String[] pair = parameter.trim().split("=", 2);
+            if (pair.length == 2 && pair[0].trim().toLowerCase(Locale.ROOT).equals("charset")) {
+                try {
+                    return Charset.forName(pair[1].trim().replace("\"", ""));
+                } catch (IllegalArgumentException e) {
+                    // Unknown charset; fall back like ofString() does
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static final class LimitedSubscriber implements HttpResponse.BodySubscriber<byte[]> {
+
+        private final CompletableFuture<byte[]> body = new CompletableFuture<>();
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+        private final long maxBytes;
+        private final long declaredBytes;
+        private Flow.Subscription subscription;
+        private long receivedBytes;
+
+        LimitedSubscriber(long maxBytes, long declaredBytes) {
+            this.maxBytes = maxBytes;
+            this.declaredBytes = declaredBytes;
+        }
+
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            // A declared length over the limit fails before anything is read
+            if (declaredBytes > maxBytes) {
+                tooLarge();
+                return;
+            }
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (body.isDone()) {
+                return;
+            }
+            for (ByteBuffer item : items) {
+                receivedBytes += item.remaining();
+                buffers.add(item);
+            }
+            if (receivedBytes > maxBytes) {
+                tooLarge();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            buffers.clear();
+            body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (body.isDone()) {
+                return;
+            }
+            byte[] bytes = new byte[(int) receivedBytes];
+            int offset = 0;
+            for (ByteBuffer buffer : buffers) {
+                int length = buffer.remaining();
+                buffer.get(bytes, offset, length);
+                offset += length;
+            }
+            buffers.clear();
+            body.complete(bytes);
+        }
+
+        private void tooLarge() {
+            subscription.cancel();
+            buffers.clear();
+            body.completeExceptionally(new IOException("Response body exceeds " + maxBytes + " bytes"));
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+// Applies one task (config "task": {"type", "config"}) to every element of a collection and returns the
+// results in element order. The collection is "items" if given, else the value at "from" ("input.path"
+// or "taskName.path"), else the single upstream output. Each element runs with the run input plus
+// "item" and "index". Elements are taken in chunks by at most "parallelism" lanes on the execution
+// pool, so thousands of records cost one task node rather than thousands.
+@Component
+public class MapTaskHandler implements TaskHandler {
+
+    private final ForkJoinPool pool;
+    private final int maxParallelism;
+    private final Function<String, TaskHandler> handlerLookup;
+    private final TaskGuards taskGuards;
+    private final ExecutionMetrics metrics;
+
+    // The registry holds this handler, so it is looked up lazily rather than injected
+    @Autowired
+    public MapTaskHandler(ForkJoinPool workflowExecutorPool,
+                          @Value("${flowforge.execution.map.max-parallelism:0}") int maxParallelism,
+                          ObjectProvider<TaskHandlerRegistry> handlerRegistry, TaskGuards taskGuards,
+                          ExecutionMetrics metrics) {
+        this(workflowExecutorPool, maxParallelism, type -> handlerRegistry.getObject().getHandler(type),
+                taskGuards, metrics);
+    }
+
+    MapTaskHandler(ForkJoinPool pool, int maxParallelism, Function<String, TaskHandler> handlerLookup,
+                   TaskGuards taskGuards, ExecutionMetrics metrics) {
+        this.pool = pool;
+        this.maxParallelism = maxParallelism > 0 ? maxParallelism : pool.getParallelism();
+        this.handlerLookup = handlerLookup;
+        this.taskGuards = taskGuards;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Set<String> getTypes() {
+        return Set.of("map");
+    }
+
+    @Override
+    public Object execute(TaskContext context) throws Exception {
+        try {
+            return executeAsync(context).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Object> executeAsync(TaskContext context) {
+        Map<String, Object> config = context.getConfig();
+        if (!(config.get("task") instanceof Map<?, ?> task) || !(task.get("type") instanceof String type)) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                    "Map task '" + context.getTaskName() + "' needs a task.type to apply"));
+        }
+        TaskHandler handler = handlerLookup.apply(type);
+        if (handler == null) {
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException("No handler registered for task type: " + type));
+        }
+        Map<String, Object> itemConfig = task.get("config") instanceof Map<?, ?> nested
+                ? Collections.unmodifiableMap(stringKeys(nested))
+                : Map.of();
+        List<?> items;
+        try {
+            items = items(context);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (items.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+
+        int parallelism = Math.min(maxParallelism, intConfig(config, "parallelism", maxParallelism));
+        // A few chunks per lane keeps them balanced when elements vary in cost
+        int chunkSize = intConfig(config, "chunkSize", Math.max(1, items.size() / (parallelism * 4)));
+        Batch batch = new Batch(context, type, handler, itemConfig, items, chunkSize,
+                Math.min(parallelism, (items.size() + chunkSize - 1) / chunkSize));
+        for (int i = 1; i < batch.lanes; i++) {
+            pool.execute(batch::runLane);
+        }
+        batch.runLane();
+        return batch.result;
+    }
+
+    private List<?> items(TaskContext context) {
+        Map<String, Object> config = context.getConfig();
+        Object source;
+        if (config.containsKey("items")) {
+            source = config.get("items");
+        } else if (config.get("from") instanceof String from) {
+            source = resolve(context, from);
+        } else {
+            Map<String, Object> upstream = context.getUpstreamOutputs();
+            if (upstream.size() != 1) {
+                throw new IllegalArgumentException("Map task '" + context.getTaskName()
+                        + "' needs 'items' or 'from' unless it has exactly one upstream task");
+            }
+            source = upstream.values().iterator().next();
+        }
+        if (source instanceof List<?> list) {
+            return list;
+        }
+        if (source instanceof Collection<?> collection) {
+            return new ArrayList<>(collection);
+        }
+        if (source instanceof Object[] array) {
+            return Arrays.asList(array);
+        }
+        throw new IllegalArgumentException("Map task '" + context.getTaskName() + "' expected a collection but got "
+                + (source == null ? "null" : source.getClass().getSimpleName()));
+    }
+
+    // "input.a.b" walks the run input; "task.a.b" walks that task's output
+    private Object resolve(TaskContext context, String path) {
+        String[] segments = path.split("\\.");
+        Object current = "input".equals(segments[0]) ? context.getInput() : context.getOutput(segments[0]);
+        for (int i = 1; i < segments.length && current != null; i++) {
+            current = current instanceof Map<?, ?> map ? map.get(segments[i]) : null;
+        }
+        return current;
+    }
+
+    private Map<String, Object> itemInput(TaskContext context, Object item, int index) {
+        Map<String, Object> input = new HashMap<>(context.getInput());
+        input.put("item", item);
+        input.put("index", index);
+        return input;
+    }
+
+    private int intConfig(Map<String, Object> config, String key, int defaultValue) {
+        return config.get(key) instanceof Number number ? Math.max(1, number.intValue()) : defaultValue;
+    }
+
+    private Map<String, Object> stringKeys(Map<?, ?> map) {
+        Map<String, Object> result = new HashMap<>();
+        map.forEach((key, value) -> result.put(String.valueOf(key), value));
+        return result;
+    }
+
+    // One map task's items. Each lane claims chunks and calls items one after another; an item whose
+    // future isn't done yet frees the lane's thread, and the lane resumes on the pool when it completes.
+    // Items go through the guard, retries and metrics of their task type like any other task.
+    private final class Batch {
+        final TaskContext context;
+        final String type;
+        final TaskHandler handler;
+        final Map<String, Object> itemConfig;
+        final List<?> items;
+        final int chunkSize;
+        final int chunks;
+        final int lanes;
+        final int maxRetries;
+        final TaskGuards.Guard guard;
+        final Object[] results;
+        final AtomicInteger nextChunk = new AtomicInteger();
+        final AtomicInteger activeLanes;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        Batch(TaskContext context, String type, TaskHandler handler, Map<String, Object> itemConfig,
+              List<?> items, int chunkSize, int lanes) {
+            this.context = context;
+            this.type = type;
+            this.handler = handler;
+            this.itemConfig = itemConfig;
+            this.items = items;
+            this.chunkSize = chunkSize;
+            this.chunks = (items.size() + chunkSize - 1) / chunkSize;
+            this.lanes = lanes;
+            this.activeLanes = new AtomicInteger(lanes);
+            this.maxRetries = itemConfig.get("retries") instanceof Number retries ? Math.max(0, retries.intValue()) : 0;
+            this.guard = taskGuards.forType(type);
+            this.results = new Object[items.size()];
+        }
+
+        void runLane() {
+            runLane(-1, -1);
+        }
+
+        // next and end delimit what is left of the chunk the lane holds
+        private void runLane(int next, int end) {
+            try {
+                while (failure.get() == null) {
+                    if (next >= end) {
+                        int chunk = nextChunk.getAndIncrement();
+                        if (chunk >= chunks) {
+                            break;
+                        }
+                        next = chunk * chunkSize;
+                        end = Math.min(items.size(), next + chunkSize);
+                    }
+                    int index = next++;
+                    CompletableFuture<Object> call = callItem(index, 1, System.nanoTime());
+                    if (!call.isDone()) {
+                        int resumeAt = next;
+                        int resumeEnd = end;
+                        call.whenComplete((output, error) -> pool.execute(() -> {
+                            record(index, output, error);
+                            runLane(resumeAt, resumeEnd);
+                        }));
+                        return;
+                    }
+                    call.whenComplete((output, error) -> record(index, output, error));
+                }
+            } catch (Throwable t) {
+                record(-1, null, t);
+            }
+            if (activeLanes.decrementAndGet() == 0) {
+                if (failure.get() != null) {
+                    result.completeExceptionally(failure.get());
+                } else {
+                    result.complete(Arrays.asList(results));
+                }
+            }
+        }
+
+        private CompletableFuture<Object> callItem(int index, int attempt, long startNanos) {
+            if (attempt == 1) {
+                metrics.taskStarted();
+            }
+            try {
+                guard.acquire();
+            } catch (TaskRejectedException e) {
+                metrics.taskFinished(type, System.nanoTime() - startNanos, false, attempt - 1);
+                return CompletableFuture.failedFuture(e);
+            }
+            long callStart = System.nanoTime();
+            CompletableFuture<Object> call;
+            try {
+                call = handler.executeAsync(context.derive(itemConfig, itemInput(context, items.get(index), index)));
+            } catch (Throwable t) {
+                call = CompletableFuture.failedFuture(t);
+            }
+            return call.handle((output, error) -> {
+                guard.release(error == null, System.nanoTime() - callStart);
+                if (error != null && attempt <= maxRetries && failure.get() == null) {
+                    return callItem(index, attempt + 1, startNanos);
+                }
+                metrics.taskFinished(type, System.nanoTime() - startNanos, error == null, attempt - 1);
+                return error == null
+                        ? CompletableFuture.completedFuture(output)
+                        : CompletableFuture.<Object>failedFuture(error);
+            }).thenCompose(Function.identity());
+        }
+
+        private void record(int index, Object output, Throwable error) {
+            if (error == null) {
+                results[index] = output;
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause()
+                    : error;
+            failure.compareAndSet(null, index < 0 ? cause
+                    : new IllegalStateException("Item " + index + " failed: " + cause.getMessage(), cause));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Accounts the estimated retained size of run inputs and in-memory task outputs against a per-run
+// and a node-wide budget. New runs wait for headroom (up to the admission timeout) and are then
+// rejected; outputs that don't fit are spilled by the executor instead of being kept on the heap.
+@Component
+public class MemoryBudget {
+
+    private final long globalBytes;
+    private final long runBytes;
+    private final long admissionTimeoutNanos;
+    private final AtomicLong used = new AtomicLong();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    public MemoryBudget(long globalBytes, long runBytes, Duration admissionTimeout) {
+        this.globalBytes = globalBytes;
+        this.runBytes = runBytes;
+        this.admissionTimeoutNanos = admissionTimeout.toNanos();
+    }
+
+    @Autowired
+    public MemoryBudget(@Value("${flowforge.execution.memory.global-budget:256MB}") DataSize globalBudget,
+                        @Value("${flowforge.execution.memory.run-budget:32MB}") DataSize runBudget,
+                        @Value("${flowforge.execution.memory.admission-timeout:5s}") Duration admissionTimeout,
+                        MeterRegistry meterRegistry) {
+        this(globalBudget.toBytes(), runBudget.toBytes(), admissionTimeout);
+        Gauge.builder("flowforge.execution.memory.used", used, AtomicLong::get)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public static MemoryBudget unbounded() {
+        return new MemoryBudget(Long.MAX_VALUE, Long.MAX_VALUE, Duration.ZERO);
+    }
+
+    // Reserves room for a new run's input, waiting for running runs to release memory if needed
+    void admit(long inputBytes) {
+        if (tryAdmit(inputBytes)) {
+            return;
+        }
+        lock.lock();
+        try {
+            long remaining = admissionTimeoutNanos;
+            while (!tryReserve(inputBytes)) {
+                if (remaining <= 0) {
+                    throw new ExecutionCapacityException("Execution memory budget exhausted, try again later");
+                }
+                remaining = released.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExecutionCapacityException("Interrupted while waiting for execution memory");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Like admit, but never waits: nested runs are admitted from inside a task that already holds memory
+    boolean tryAdmit(long inputBytes) {
+        if (inputBytes > runBytes) {
+            throw new ExecutionCapacityException("Run input of ~" + inputBytes
+                    + " bytes exceeds the per-run memory budget of " + runBytes + " bytes");
+        }
+        return tryReserve(inputBytes);
+    }
+
+    // Charges an output to its run and the node; false (and nothing charged) if either budget would overflow
+    boolean tryCharge(AtomicLong runRetained, long bytes) {
+        long current;
+        do {
+            current = runRetained.get();
+            if (current + bytes > runBytes) {
+                return false;
+            }
+        } while (!runRetained.compareAndSet(current, current + bytes));
+        if (!tryReserve(bytes)) {
+            runRetained.addAndGet(-bytes);
+            return false;
+        }
+        return true;
+    }
+
+    void release(long bytes) {
+        if (bytes == 0) {
+            return;
+        }
+        used.addAndGet(-bytes);
+        lock.lock();
+        try {
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getUsedBytes() {
+        return used.get();
+    }
+
+    private boolean tryReserve(long bytes) {
+        long current;
+        do {
+            current = used.get();
+            if (current + bytes > globalBytes) {
+                return false;
+            }
+        } while (!used.compareAndSet(current, current + bytes));
+        return true;
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import org.springframework.stereotype.Component;
+import java.util.Set;
+
+// Structural task types that do no work; a static "output" in the config is passed through
+@Component
+public class NoopTaskHandler implements TaskHandler {
+
+    @Override
+    public Set<String> getTypes() {
+        return Set.of("start", "end", "task", "noop");
+    }
+
+    @Override
+    public Object execute(TaskContext context) {
+        return context.getConfig().get("output");
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Map;
+
+// Rough retained-heap estimate for task outputs (maps, lists, strings and boxed values as
+// produced by Jackson or handlers). Assumes compressed oops; unknown types count as a small object.
+public final class ObjectSizeEstimator {
+
+    private static final int MAX_DEPTH = 32;
+    private static final long OBJECT_HEADER = 16;
+    private static final long REFERENCE = 4;
+    private static final long ARRAY_HEADER = 16;
+    private static final long MAP_ENTRY = 32;
+
+    private ObjectSizeEstimator() {
+    }
+
+    public static long estimate(Object value) {
+        return estimate(value, 0);
+    }
+
+    private static long estimate(Object value, int depth) {
+        if (value == null) {
+            return 0;
+        }
+        if (depth > MAX_DEPTH) {
+            return OBJECT_HEADER;
+        }
+        if (value instanceof String s) {
+            // String object plus its byte[]; Latin-1 strings use one byte per char
+            return 24 + ARRAY_HEADER + s.length();
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return value instanceof BigDecimal || value instanceof BigInteger ? 64 : OBJECT_HEADER + 8;
+        }
+        if (value instanceof Map<?, ?> map) {
+            long size = 48 + ARRAY_HEADER + (long) map.size() * (REFERENCE + MAP_ENTRY);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += estimate(entry.getKey(), depth + 1) + estimate(entry.getValue(), depth + 1);
+            }
+            return size;
+        }
+        if (value instanceof Collection<?> collection) {
+            long size = 24 + ARRAY_HEADER + (long) collection.size() * REFERENCE;
+            for (Object element : collection) {
+                size += estimate(element, depth + 1);
+            }
+            return size;
+        }
+        if (value instanceof byte[] bytes) {
+            return ARRAY_HEADER + bytes.length;
+        }
+        if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            if (value.getClass().getComponentType().isPrimitive()) {
+                return ARRAY_HEADER + length * 8L;
+            }
+            long size = ARRAY_HEADER + length * REFERENCE;
+            for (int i = 0; i < length; i++) {
+                size += estimate(Array.get(value, i), depth + 1);
+            }
+            return size;
+        }
+        return OBJECT_HEADER + 16;
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import com.github.tanyonghe.flowforge.model.OutputReference;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Decides which outputs stay in memory and moves the rest to the OutputStore. A spilled output is
+// held in the run as an OutputReference and only loaded when a downstream task reads it.
+@Component
+public class OutputSpiller {
+
+    private final OutputStore outputStore;
+    private final long thresholdBytes;
+    private final long runDocumentCapBytes;
+
+    @Autowired
+    public OutputSpiller(OutputStore outputStore,
+                         @Value("${flowforge.execution.output-spill.threshold:1MB}") DataSize threshold,
+                         @Value("${flowforge.execution.output-spill.run-document-cap:8MB}") DataSize runDocumentCap) {
+        this.outputStore = outputStore;
+        this.thresholdBytes = threshold.toBytes();
+        this.runDocumentCapBytes = runDocumentCap.toBytes();
+    }
+
+    OutputSpiller(OutputStore outputStore, DataSize threshold) {
+        this(outputStore, threshold, DataSize.ofBytes(Long.MAX_VALUE));
+    }
+
+    private OutputSpiller() {
+        this.outputStore = null;
+        this.thresholdBytes = Long.MAX_VALUE;
+        this.runDocumentCapBytes = Long.MAX_VALUE;
+    }
+
+    // Keeps every output in memory, for tests and benchmarks without Mongo
+    public static OutputSpiller disabled() {
+        return new OutputSpiller();
+    }
+
+    boolean isEnabled() {
+        return outputStore != null;
+    }
+
+    boolean shouldSpill(long sizeBytes) {
+        return sizeBytes >= thresholdBytes;
+    }
+
+    // Reserves room in the saved run document for an inline output. The run's input and inline outputs
+    // are all stored in one document, and Mongo rejects documents over 16MB however small each output is.
+    boolean tryKeepInline(AtomicLong inlineBytes, long sizeBytes) {
+        long current;
+        do {
+            current = inlineBytes.get();
+            if (current + sizeBytes > runDocumentCapBytes) {
+                return false;
+            }
+        } while (!inlineBytes.compareAndSet(current, current + sizeBytes));
+        return true;
+    }
+
+    OutputReference spill(String runId, String taskName, Object output, long sizeBytes) throws IOException {
+        return outputStore.store(runId, taskName, output, sizeBytes);
+    }
+
+    // For runs that aren't persisted, whose spilled outputs nothing can read once they finish
+    void discard(String runId) {
+        if (outputStore != null) {
+            outputStore.deleteRun(runId);
+        }
+    }
+
+    Object resolve(Object stored) {
+        if (!(stored instanceof OutputReference reference)) {
+            return stored;
+        }
+        try {
+            return outputStore.load(reference);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load spilled output " + reference.getFileId(), e);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import com.github.tanyonghe.flowforge.model.OutputReference;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// External storage for task outputs that are too large to keep in the run
+public interface OutputStore {
+
+    OutputReference store(String runId, String taskName, Object output, long sizeBytes) throws IOException;
+
+    Object load(OutputReference reference) throws IOException;
+
+    // False once the output has expired or been deleted
+    boolean exists(OutputReference reference);
+
+    // Removes every output stored for the run
+    void deleteRun(String runId);
+
+    // The stored output as uncompressed JSON
+    InputStream open(OutputReference reference) throws IOException;
+}
@@ -0,0 +1,253 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import com.github.tanyonghe.flowforge.model.OutputReference;
+import com.github.tanyonghe.flowforge.model.WorkflowRun;
+import com.github.tanyonghe.flowforge.model.WorkflowRunTrace;
+import org.bson.types.ObjectId;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Mutable state of one in-progress run. Per-task slots are written by the thread that ran the task
+// and published to others through the atomic counters.
+class RunState {
+
+    static final byte PENDING = 0;
+    static final byte COMPLETED = 1;
+    static final byte FAILED = 2;
+    static final byte SKIPPED = 3;
+
+    final String runId = new ObjectId().toHexString();
+    final ExecutionPlan plan;
+    final Map<String, Object> input;
+    // Ids of the workflows whose "workflow" tasks led to this run, outermost first; empty for top-level runs
+    final List<String> callStack;
+    private final OutputSpiller outputSpiller;
+    private final MemoryBudget memoryBudget;
+    // Spilled outputs loaded back, kept while the run's budget allows so that several readers load them once
+    private final Map<Integer, Object> loadedOutputs = new ConcurrentHashMap<>();
+    final CompletableFuture<WorkflowRun> completion = new CompletableFuture<>();
+
+    final AtomicIntegerArray pendingPredecessors;
+    final AtomicInteger inFlight = new AtomicInteger();
+    // Estimated bytes of input and in-memory outputs charged to the MemoryBudget
+    final AtomicLong retainedBytes = new AtomicLong();
+    // Estimated bytes of input and inline outputs that go into the saved run document
+    final AtomicLong inlineBytes = new AtomicLong();
+    volatile boolean failed;
+
+    final byte[] status;
+    final Object[] outputs;
+    final String[] errors;
+    final int[] attempts;
+    final boolean[] memoized;
+    // Completed in an earlier run whose output this rerun took over
+    final boolean[] reused;
+    volatile String rerunOf;
+    final long[] readyNanos;
+    final long[] startNanos;
+    final long[] endNanos;
+
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private final long startNanoTime = System.nanoTime();
+
+    RunState(ExecutionPlan plan, Map<String, Object> input, OutputSpiller outputSpiller) {
+        this(plan, input, outputSpiller, MemoryBudget.unbounded(), List.of());
+    }
+
+    RunState(ExecutionPlan plan, Map<String, Object> input, OutputSpiller outputSpiller, MemoryBudget memoryBudget,
+             List<String> callStack) {
+        this.plan = plan;
+        this.input = input != null ? input : Map.of();
+        this.callStack = callStack;
+        this.outputSpiller = outputSpiller;
+        this.memoryBudget = memoryBudget;
+        int size = plan.size();
+        this.pendingPredecessors = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++) {
+            pendingPredecessors.set(i, plan.getNode(i).getPredecessors().length);
+        }
+        this.status = new byte[size];
+        this.outputs = new Object[size];
+        this.errors = new String[size];
+        this.attempts = new int[size];
+        this.memoized = new boolean[size];
+        this.reused = new boolean[size];
+        this.readyNanos = new long[size];
+        this.startNanos = new long[size];
+        this.endNanos = new long[size];
+    }
+
+    // A spilled output is loaded on first read and kept only if the budget can take it, charged like any
+    // in-memory output; otherwise every read loads it again
+    Object getOutput(int index) {
+        if (status[index] != COMPLETED) {
+            return null;
+        }
+        if (!(outputs[index] instanceof OutputReference reference)) {
+            return outputs[index];
+        }
+        Object loaded = loadedOutputs.get(index);
+        if (loaded != null) {
+            return loaded;
+        }
+        loaded = outputSpiller.resolve(reference);
+        // Once the run is done its charges have been released, so later reads don't keep anything
+        if (loaded != null && !completion.isDone()
+                && memoryBudget.tryCharge(retainedBytes, reference.getSizeBytes())) {
+            Object raced = loadedOutputs.putIfAbsent(index, loaded);
+            if (raced != null) {
+                retainedBytes.addAndGet(-reference.getSizeBytes());
+                memoryBudget.release(reference.getSizeBytes());
+                return raced;
+            }
+        }
+        return loaded;
+    }
+
+    // Identifies an output for memo keys. A spilled output is named by its content hash, or by its file
+    // when it was stored without one, which is correct but never matches another run.
+    Object getOutputIdentity(int index) {
+        if (status[index] != COMPLETED) {
+            return null;
+        }
+        if (outputs[index] instanceof OutputReference reference) {
+            return reference.getContentHash() != null
+                    ? Map.of("spilledSha256", reference.getContentHash())
+                    : Map.of("spilledFileId", reference.getFileId());
+        }
+        return outputs[index];
+    }
+
+    // Before the run starts: marks a task as completed with an output carried over from an earlier run
+    void seed(int index, Object output) {
+        status[index] = COMPLETED;
+        outputs[index] = output;
+        reused[index] = true;
+        for (int successor : plan.getNode(index).getSuccessors()) {
+            pendingPredecessors.decrementAndGet(successor);
+        }
+    }
+
+    // Outputs of all completed tasks by name, in plan order
+    Map<String, Object> completedOutputs() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (int i = 0; i < plan.size(); i++) {
+            if (status[i] == COMPLETED) {
+                result.put(plan.getNode(i).getName(), getOutput(i));
+            }
+        }
+        return result;
+    }
+
+    // Called once nothing is in flight. After a failure, tasks downstream of it never became ready and
+    // are still PENDING; they are reported as SKIPPED so a finished run holds only terminal states.
+    void finish() {
+        if (failed) {
+            for (int i = 0; i < status.length; i++) {
+                if (status[i] == PENDING) {
+                    status[i] = SKIPPED;
+                }
+            }
+        }
+        WorkflowRun run = toWorkflowRun();
+        run.setTrace(toTrace());
+        completion.complete(run);
+    }
+
+    private WorkflowRun toWorkflowRun() {
+        WorkflowRun run = new WorkflowRun();
+        run.setId(runId);
+        run.setWorkflowId(plan.getWorkflowId());
+        run.setInput(input);
+        run.setRerunOf(rerunOf);
+        run.setStartedAt(startedAt);
+        long elapsedNanos = System.nanoTime() - startNanoTime;
+        run.setFinishedAt(startedAt.plusNanos(elapsedNanos));
+        run.setDurationMillis(elapsedNanos / 1_000_000);
+
+        List<WorkflowRun.TaskRun> tasks = new ArrayList<>(plan.size());
+        String firstError = null;
+        for (int i = 0; i < plan.size(); i++) {
+            ExecutionPlan.Node node = plan.getNode(i);
+            WorkflowRun.TaskRun task = new WorkflowRun.TaskRun();
+            task.setName(node.getName());
+            task.setType(node.getType());
+            task.setStatus(statusName(status[i]));
+            task.setAttempts(attempts[i]);
+            task.setMemoized(memoized[i]);
+            if (outputs[i] instanceof OutputReference reference) {
+                task.setOutputRef(reference);
+            } else {
+                task.setOutput(outputs[i]);
+            }
+            task.setError(errors[i]);
+            if (reused[i]) {
+                task.setReusedFrom(rerunOf);
+            } else if (status[i] == COMPLETED || status[i] == FAILED) {
+                task.setStartedAt(startedAt.plus((startNanos[i] - startNanoTime) / 1_000, ChronoUnit.MICROS));
+                task.setDurationMicros((endNanos[i] - startNanos[i]) / 1_000);
+            }
+            if (status[i] == FAILED && firstError == null) {
+                firstError = "Task '" + node.getName() + "' failed: " + errors[i];
+            }
+            tasks.add(task);
+        }
+        run.setTasks(tasks);
+        run.setStatus(failed ? WorkflowRun.STATUS_FAILED : WorkflowRun.STATUS_COMPLETED);
+        run.setError(firstError);
+        return run;
+    }
+
+    private WorkflowRunTrace toTrace() {
+        WorkflowRunTrace trace = new WorkflowRunTrace();
+        trace.setId(runId);
+        trace.setWorkflowId(plan.getWorkflowId());
+        trace.setTotalMicros((System.nanoTime() - startNanoTime) / 1_000);
+        List<WorkflowRunTrace.TaskTrace> tasks = new ArrayList<>(plan.size());
+        for (int i = 0; i < plan.size(); i++) {
+            ExecutionPlan.Node node = plan.getNode(i);
+            WorkflowRunTrace.TaskTrace task = new WorkflowRunTrace.TaskTrace();
+            task.setName(node.getName());
+            task.setType(node.getType());
+            task.setStatus(statusName(status[i]));
+            List<String> dependsOn = new ArrayList<>(node.getPredecessors().length);
+            for (int predecessor : node.getPredecessors()) {
+                dependsOn.add(plan.getNode(predecessor).getName());
+            }
+            task.setDependsOn(dependsOn);
+            if (!reused[i] && (status[i] == COMPLETED || status[i] == FAILED)) {
+                task.setReadyAtMicros(offsetMicros(readyNanos[i]));
+                task.setStartedAtMicros(offsetMicros(startNanos[i]));
+                task.setFinishedAtMicros(offsetMicros(endNanos[i]));
+                task.setQueueWaitMicros((startNanos[i] - readyNanos[i]) / 1_000);
+                task.setExecutionMicros((endNanos[i] - startNanos[i]) / 1_000);
+            }
+            tasks.add(task);
+        }
+        trace.setTasks(tasks);
+        return trace;
+    }
+
+    private long offsetMicros(long nanos) {
+        return (nanos - startNanoTime) / 1_000;
+    }
+
+    private static String statusName(byte status) {
+        return switch (status) {
+            case COMPLETED -> WorkflowRun.TaskRun.STATUS_COMPLETED;
+            case FAILED -> WorkflowRun.TaskRun.STATUS_FAILED;
+            case SKIPPED -> WorkflowRun.TaskRun.STATUS_SKIPPED;
+            default -> WorkflowRun.TaskRun.STATUS_PENDING;
+        };
+    }
+}
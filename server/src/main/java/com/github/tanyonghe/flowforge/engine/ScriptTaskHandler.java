@@ -0,0 +1,298 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.expression.MapAccessor;
+import org.springframework.core.convert.TypeDescriptor;
+import org.springframework.expression.AccessException;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.MethodExecutor;
+import org.springframework.expression.PropertyAccessor;
+import org.springframework.expression.TypedValue;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.ast.Projection;
+import org.springframework.expression.spel.ast.Selection;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.DataBindingPropertyAccessor;
+import org.springframework.expression.spel.support.ReflectiveMethodResolver;
+import org.springframework.expression.spel.support.SimpleEvaluationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Evaluates a SpEL expression (config "script") against {input, upstream, config} and returns its value,
+// e.g. "upstream['fetch'].body.items.?[price > 10].![name]". The evaluation context only reads properties and map
+// entries and calls an allowlist of instance methods that can't amplify memory (no repeat, replace, ...): no type
+// references, constructors, static methods or bean access. Selections and projections nest at most two deep.
+// Scripts are limited in length and parsed ones are cached by text. CPU time and allocation are checked on every
+// property read and method call while the script runs, and the task fails once they exceed "maxCpuMillis" /
+// "maxAllocatedBytes" (capped by the configured limits). Scripts stay interpreted, as compiled bytecode would
+// bypass the checks.
+@Component
+public class ScriptTaskHandler implements TaskHandler {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS =
+            THREADS instanceof com.sun.management.ThreadMXBean allocations
+                    && allocations.isThreadAllocatedMemorySupported() ? allocations : null;
+    static final int MAX_NESTED_COLLECTION_OPERATIONS = 2;
+    // CPU time costs more to read than allocation, so it is checked on every 16th access
+    private static final int CPU_CHECK_INTERVAL = 16;
+    private static final ThreadLocal<Meter> METER = new ThreadLocal<>();
+
+    private final ExpressionParser parser;
+    // Holds no variables, so one instance is safely shared by concurrent evaluations
+    private final EvaluationContext evaluationContext = SimpleEvaluationContext
+            .forPropertyAccessors(new MeteredAccessor(new MapAccessor()),
+                    new MeteredAccessor(DataBindingPropertyAccessor.forReadOnlyAccess()))
+            .withMethodResolvers(new AllowlistMethodResolver())
+            .build();
+    private final long maxCpuNanos;
+    private final long maxAllocatedBytes;
+    private final int maxCachedScripts;
+    private final LinkedHashMap<String, Expression> scripts = new LinkedHashMap<>(16, 0.75f, true);
+    private int parsed;
+
+    @Autowired
+    public ScriptTaskHandler(@Value("${flowforge.execution.script.max-cpu-time:100ms}") Duration maxCpuTime,
+                             @Value("${flowforge.execution.script.max-allocated:16MB}") DataSize maxAllocated,
+                             @Value("${flowforge.execution.script.max-length:1000}") int maxLength,
+                             @Value("${flowforge.execution.script.cache.max-entries:1000}") int maxCachedScripts) {
+        this(maxCpuTime.toNanos(), maxAllocated.toBytes(), maxLength, maxCachedScripts);
+    }
+
+    ScriptTaskHandler(long maxCpuNanos, long maxAllocatedBytes, int maxLength, int maxCachedScripts) {
+        // Besides parsing cost, the length bounds the literal lists a script can loop over without reading data
+        this.parser = new SpelExpressionParser(new SpelParserConfiguration(SpelCompilerMode.OFF,
+                ScriptTaskHandler.class.getClassLoader(), false, false, 0, maxLength));
+        this.maxCpuNanos = maxCpuNanos;
+        this.maxAllocatedBytes = maxAllocatedBytes;
+        this.maxCachedScripts = maxCachedScripts;
+    }
+
+    @Override
+    public Set<String> getTypes() {
+        return Set.of("script");
+    }
+
+    @Override
+    public Object execute(TaskContext context) {
+        Map<String, Object> config = context.getConfig();
+        if (!(config.get("script") instanceof String script) || script.isBlank()) {
+            throw new IllegalArgumentException("Script task '" + context.getTaskName() + "' needs a script");
+        }
+        Expression expression = expression(script);
+        long cpuLimit = limit(config.get("maxCpuMillis"), 1_000_000, maxCpuNanos);
+        long allocationLimit = limit(config.get("maxAllocatedBytes"), 1, maxAllocatedBytes);
+
+        // Not a map, so that even #root['input'] goes through the metered property accessors
+        ScriptRoot root = new ScriptRoot(context.getInput(), context.getUpstreamOutputs(), config);
+        Meter meter = new Meter(cpuLimit, allocationLimit);
+        METER.set(meter);
+        Object result;
+        try {
+            result = expression.getValue(evaluationContext, root);
+        } catch (RuntimeException e) {
+            // SpEL may wrap what the meter threw; report the limit rather than the wrapper
+            throw meter.violation != null ? meter.violation : e;
+        } finally {
+            METER.remove();
+        }
+        meter.check(true);
+        return result;
+    }
+
+    int parsedCount() {
+        synchronized (scripts) {
+            return parsed;
+        }
+    }
+
+    private Expression expression(String script) {
+        synchronized (scripts) {
+            Expression cached = scripts.get(script);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        // Parsed outside the lock; two threads racing on a new script both parse it, which is harmless
+        Expression expression = parser.parseExpression(script);
+        if (expression instanceof SpelExpression spel
+                && nestedCollectionOperations(spel.getAST()) > MAX_NESTED_COLLECTION_OPERATIONS) {
+            throw new IllegalArgumentException("Script nests selections and projections more than "
+                    + MAX_NESTED_COLLECTION_OPERATIONS + " deep");
+        }
+        synchronized (scripts) {
+            parsed++;
+            scripts.putIfAbsent(script, expression);
+            if (scripts.size() > maxCachedScripts) {
+                scripts.remove(scripts.keySet().iterator().next());
+            }
+            return scripts.getOrDefault(script, expression);
+        }
+    }
+
+    // Work grows with the product of the collection sizes at each level, so deep nesting is refused up front
+    private static int nestedCollectionOperations(SpelNode node) {
+        int deepest = 0;
+        for (int i = 0; i < node.getChildCount(); i++) {
+            deepest = Math.max(deepest, nestedCollectionOperations(node.getChild(i)));
+        }
+        return node instanceof Projection || node instanceof Selection ? deepest + 1 : deepest;
+    }
+
+    private static long limit(Object configured, long unit, long max) {
+        return configured instanceof Number value ? Math.min(value.longValue() * unit, max) : max;
+    }
+
+    private static void meter() {
+        Meter meter = METER.get();
+        if (meter != null) {
+            meter.check(false);
+        }
+    }
+
+    public static final class ScriptRoot {
+        private final Map<String, Object> input;
+        private final Map<String, Object> upstream;
+        private final Map<String, Object> config;
+
+        ScriptRoot(Map<String, Object> input, Map<String, Object> upstream, Map<String, Object> config) {
+            this.input = input;
+            this.upstream = upstream;
+            this.config = config;
+        }
+
+        public Map<String, Object> getInput() {
+            return input;
+        }
+
+        public Map<String, Object> getUpstream() {
+            return upstream;
+        }
+
+        public Map<String, Object> getConfig() {
+            return config;
+        }
+    }
+
+    // The limits of one evaluation, checked whenever the script touches data
+    private static final class Meter {
+        private final long cpuLimit;
+        private final long allocationLimit;
+        private final long cpuBefore = THREADS.getCurrentThreadCpuTime();
+        private final long allocatedBefore = ALLOCATIONS != null ? ALLOCATIONS.getCurrentThreadAllocatedBytes() : 0;
+        private int checks;
+        private IllegalStateException violation;
+
+        Meter(long cpuLimit, long allocationLimit) {
+            this.cpuLimit = cpuLimit;
+            this.allocationLimit = allocationLimit;
+        }
+
+        void check(boolean always) {
+            if (ALLOCATIONS != null) {
+                long allocated = ALLOCATIONS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+                if (allocated > allocationLimit) {
+                    fail("Script allocated " + allocated + " bytes, limit is " + allocationLimit + " bytes");
+                }
+            }
+            if (cpuBefore >= 0 && (always || ++checks % CPU_CHECK_INTERVAL == 0)) {
+                long cpu = THREADS.getCurrentThreadCpuTime() - cpuBefore;
+                if (cpu > cpuLimit) {
+                    fail("Script used " + cpu / 1_000_000 + " ms of CPU, limit is " + cpuLimit / 1_000_000 + " ms");
+                }
+            }
+        }
+
+        private void fail(String message) {
+            violation = new IllegalStateException(message);
+            throw violation;
+        }
+    }
+
+    private record MeteredAccessor(PropertyAccessor delegate) implements PropertyAccessor {
+        @Override
+        public Class<?>[] getSpecificTargetClasses() {
+            return delegate.getSpecificTargetClasses();
+        }
+
+        @Override
+        public boolean canRead(EvaluationContext context, Object target, String name) throws AccessException {
+            return delegate.canRead(context, target, name);
+        }
+
+        @Override
+        public TypedValue read(EvaluationContext context, Object target, String name) throws AccessException {
+            meter();
+            return delegate.read(context, target, name);
+        }
+
+        @Override
+        public boolean canWrite(EvaluationContext context, Object target, String name) {
+            return false;
+        }
+
+        @Override
+        public void write(EvaluationContext context, Object target, String name, Object newValue)
+                throws AccessException {
+            throw new AccessException("Scripts can't write properties");
+        }
+    }
+
+    // Instance methods that read or derive at most as much data as their target holds
+    private static final class AllowlistMethodResolver extends ReflectiveMethodResolver {
+        private static final Map<Class<?>, Set<String>> ALLOWED = Map.of(
+                String.class, Set.of("charAt", "compareTo", "contains", "endsWith", "equalsIgnoreCase", "indexOf",
+                        "isBlank", "isEmpty", "lastIndexOf", "length", "startsWith", "strip", "substring",
+                        "toLowerCase", "toUpperCase", "trim"),
+                Map.class, Set.of("containsKey", "containsValue", "get", "getOrDefault", "isEmpty", "keySet",
+                        "size", "values"),
+                Collection.class, Set.of("contains", "isEmpty", "size"),
+                List.class, Set.of("get", "indexOf", "subList"),
+                Number.class, Set.of("doubleValue", "intValue", "longValue"),
+                Object.class, Set.of("equals", "toString"));
+
+        @Override
+        public MethodExecutor resolve(EvaluationContext context, Object target, String name,
+                                      List<TypeDescriptor> argumentTypes) throws AccessException {
+            if (target instanceof Class<?> || !isAllowed(target, name)) {
+                return null;
+            }
+            MethodExecutor executor = super.resolve(context, target, name, argumentTypes);
+            return executor == null ? null : (evaluationContext, object, arguments) -> {
+                meter();
+                return executor.execute(evaluationContext, object, arguments);
+            };
+        }
+
+        @Override
+        protected boolean isCandidateForInvocation(Method method, Class<?> targetClass) {
+            return !Modifier.isStatic(method.getModifiers());
+        }
+
+        private static boolean isAllowed(Object target, String name) {
+            for (Map.Entry<Class<?>, Set<String>> allowed : ALLOWED.entrySet()) {
+                if (allowed.getKey().isInstance(target) && allowed.getValue().contains(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+// Runs another saved workflow (config "workflowId") as one step, inline on the execution pool and with
+// its cached plan. The callee gets config "input" if present, else the caller's run input, and the
+// task's output is the callee's completed outputs by task name. Calls that would recurse into a
+// workflow already on the call stack, or nest deeper than the configured limit, fail the task.
+@Component
+public class SubWorkflowTaskHandler implements TaskHandler {
+
+    private final ExecutionPlanSource planSource;
+    private final Supplier<WorkflowExecutor> executor;
+    private final int maxDepth;
+
+    // The executor is built from the handler registry that holds this handler, so it is looked up lazily
+    @Autowired
+    public SubWorkflowTaskHandler(ExecutionPlanSource planSource,
+                                  ObjectProvider<WorkflowExecutor> workflowExecutor,
+                                  @Value("${flowforge.execution.sub-workflow.max-depth:8}") int maxDepth) {
+        this(planSource, workflowExecutor::getObject, maxDepth);
+    }
+
+    SubWorkflowTaskHandler(ExecutionPlanSource planSource, Supplier<WorkflowExecutor> executor, int maxDepth) {
+        this.planSource = planSource;
+        this.executor = executor;
+        this.maxDepth = maxDepth;
+    }
+
+    @Override
+    public Set<String> getTypes() {
+        return Set.of("workflow");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object execute(TaskContext context) {
+        if (!(context.getConfig().get("workflowId") instanceof String workflowId) || workflowId.isBlank()) {
+            throw new IllegalArgumentException("Workflow task '" + context.getTaskName() + "' needs a workflowId");
+        }
+        List<String> callStack = context.getCallStack();
+        if (callStack.contains(workflowId)) {
+            throw new IllegalStateException("Recursive sub-workflow call: "
+                    + String.join(" -> ", callStack) + " -> " + workflowId);
+        }
+        // The call stack includes the top-level workflow, so its size is the callee's nesting depth
+        if (callStack.size() > maxDepth) {
+            throw new IllegalStateException("Sub-workflow nesting exceeds the maximum depth of " + maxDepth);
+        }
+        ExecutionPlan plan = planSource.getPlan(workflowId)
+                .orElseThrow(() -> new IllegalArgumentException("Sub-workflow not found: " + workflowId));
+        Map<String, Object> input = context.getConfig().get("input") instanceof Map<?, ?> configured
+                ? (Map<String, Object>) configured
+                : context.getInput();
+        return executor.get().executeInline(plan, input, callStack);
+    }
+}
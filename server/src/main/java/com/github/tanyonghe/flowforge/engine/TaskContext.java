@@ -0,0 +1,86 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// What a handler can see while executing one task: its resolved config, the run input and upstream outputs
+public class TaskContext {
+
+    private final RunState run;
+    private final ExecutionPlan.Node node;
+    private final Map<String, Object> config;
+    private final Map<String, Object> input;
+
+    TaskContext(RunState run, ExecutionPlan.Node node) {
+        this(run, node, node.getConfig(), node.sliceInput(run.input));
+    }
+
+    private TaskContext(RunState run, ExecutionPlan.Node node, Map<String, Object> config, Map<String, Object> input) {
+        this.run = run;
+        this.node = node;
+        this.config = config;
+        this.input = input;
+    }
+
+    // Same task and run, but with its own config and input; used to run a handler once per element
+    TaskContext derive(Map<String, Object> config, Map<String, Object> input) {
+        return new TaskContext(run, node, config, input);
+    }
+
+    public String getRunId() {
+        return run.runId;
+    }
+
+    public String getWorkflowId() {
+        return run.plan.getWorkflowId();
+    }
+
+    public String getTaskName() {
+        return node.getName();
+    }
+
+    public String getTaskType() {
+        return node.getType();
+    }
+
+    public Map<String, Object> getConfig() {
+        return config;
+    }
+
+    public Map<String, Object> getInput() {
+        return input;
+    }
+
+    // Output of any completed task in the same run, or null if it hasn't completed
+    public Object getOutput(String taskName) {
+        ExecutionPlan.Node other = run.plan.getNode(taskName);
+        return other != null ? run.getOutput(other.getIndex()) : null;
+    }
+
+    // Workflow ids from the outermost run down to this one; a sub-workflow call extends it
+    List<String> getCallStack() {
+        List<String> stack = new ArrayList<>(run.callStack);
+        stack.add(run.plan.getWorkflowId());
+        return stack;
+    }
+
+    // Outputs of the direct predecessors, keyed by task name
+    public Map<String, Object> getUpstreamOutputs() {
+        Map<String, Object> upstream = new LinkedHashMap<>();
+        for (int predecessor : node.getPredecessors()) {
+            upstream.put(run.plan.getNode(predecessor).getName(), run.getOutput(predecessor));
+        }
+        return upstream;
+    }
+
+    // Like getUpstreamOutputs, but spilled outputs stand in by their identity instead of being loaded
+    Map<String, Object> getUpstreamIdentities() {
+        Map<String, Object> upstream = new LinkedHashMap<>();
+        for (int predecessor : node.getPredecessors()) {
+            upstream.put(run.plan.getNode(predecessor).getName(), run.getOutputIdentity(predecessor));
+        }
+        return upstream;
+    }
+}
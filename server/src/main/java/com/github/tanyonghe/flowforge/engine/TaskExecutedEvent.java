@@ -0,0 +1,39 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// The event duration spans every attempt of the handler
+@Name(TaskExecutedEvent.NAME)
+@Label("Task Executed")
+@Category({"FlowForge", "Execution"})
+@StackTrace(false)
+class TaskExecutedEvent extends jdk.jfr.Event {
+
+    static final String NAME = "flowforge.TaskExecuted";
+
+    @Label("Workflow Id")
+    String workflowId;
+
+    @Label("Run Id")
+    String runId;
+
+    @Label("Task Name")
+    String taskName;
+
+    @Label("Task Type")
+    String taskType;
+
+    @Label("Succeeded")
+    boolean succeeded;
+
+    @Label("Attempts")
+    int attempts;
+
+    @Label("Output Size")
+    @DataAmount
+    long outputBytes;
+}
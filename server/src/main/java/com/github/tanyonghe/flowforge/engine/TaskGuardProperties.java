@@ -0,0 +1,59 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+// Bulkhead and circuit breaker settings: defaults apply to every task type, overrides are keyed by
+// task type or template id and only need the settings they change
+@Data
+@Component
+@ConfigurationProperties(prefix = "flowforge.execution.guards")
+public class TaskGuardProperties {
+
+    private Limits defaults = new Limits();
+    private Map<String, Limits> overrides = new HashMap<>();
+
+    Limits resolve(String key) {
+        Limits override = overrides.get(key);
+        return override != null ? override.orElse(defaults) : defaults;
+    }
+
+    @Data
+    public static class Limits {
+        // 0 = unbounded
+        private Integer maxConcurrent;
+        // Percentage of failed calls in the window that opens the breaker; 0 disables it
+        private Integer failureRateThreshold;
+        private Integer slidingWindow;
+        private Integer minimumCalls;
+        // Calls slower than this count as failures; unset = never
+        private Duration slowCallDuration;
+        private Duration openDuration;
+        private Integer halfOpenCalls;
+
+        Limits orElse(Limits fallback) {
+            Limits merged = new Limits();
+            merged.maxConcurrent = maxConcurrent != null ? maxConcurrent : fallback.maxConcurrent;
+            merged.failureRateThreshold = failureRateThreshold != null ? failureRateThreshold : fallback.failureRateThreshold;
+            merged.slidingWindow = slidingWindow != null ? slidingWindow : fallback.slidingWindow;
+            merged.minimumCalls = minimumCalls != null ? minimumCalls : fallback.minimumCalls;
+            merged.slowCallDuration = slowCallDuration != null ? slowCallDuration : fallback.slowCallDuration;
+            merged.openDuration = openDuration != null ? openDuration : fallback.openDuration;
+            merged.halfOpenCalls = halfOpenCalls != null ? halfOpenCalls : fallback.halfOpenCalls;
+            return merged;
+        }
+
+        int maxConcurrentOrUnbounded() {
+            return maxConcurrent != null ? maxConcurrent : 0;
+        }
+
+        int failureRateThresholdOrDisabled() {
+            return failureRateThreshold != null ? failureRateThreshold : 0;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+// Per task type (or template id, when it has its own overrides) bulkhead and circuit breaker around
+// handler calls. Both fail fast instead of queueing: a task that can't get a permit fails at once,
+// so a slow or broken dependency can't tie up the shared execution pool. Guards are only kept for
+// registered task types and templates with overrides, so workflows can't grow the set without bound.
+@Component
+public class TaskGuards {
+
+    static final String CIRCUIT_STATE = "flowforge.task.circuit.state";
+    static final String BULKHEAD_ACTIVE = "flowforge.task.bulkhead.active";
+    static final String REJECTIONS = "flowforge.task.rejections";
+
+    private static final Guard UNGUARDED = new Guard(null, null, null, Long.MAX_VALUE, null, null);
+
+    private final TaskGuardProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final LongSupplier nanoClock;
+    private final Predicate<String> knownType;
+    private final Map<String, Guard> guards = new ConcurrentHashMap<>();
+
+    // The registry holds handlers that use guards, so it is looked up lazily rather than injected
+    @Autowired
+    public TaskGuards(TaskGuardProperties properties, MeterRegistry meterRegistry,
+                      ObjectProvider<TaskHandlerRegistry> handlerRegistry) {
+        this(properties, meterRegistry, System::nanoTime, type -> handlerRegistry.getObject().isRegistered(type));
+    }
+
+    // Guards every type as given, for tests that only run their own handlers
+    public TaskGuards(TaskGuardProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::nanoTime, type -> true);
+    }
+
+    TaskGuards(TaskGuardProperties properties, MeterRegistry meterRegistry, LongSupplier nanoClock,
+               Predicate<String> knownType) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.nanoClock = nanoClock;
+        this.knownType = knownType;
+    }
+
+    public static TaskGuards disabled() {
+        return new TaskGuards(new TaskGuardProperties(), null, System::nanoTime, type -> false);
+    }
+
+    Guard forNode(ExecutionPlan.Node node) {
+        if (node.getTemplateId() != null && properties.getOverrides().containsKey(node.getTemplateId())) {
+            return guard(node.getTemplateId());
+        }
+        return forType(node.getType());
+    }
+
+    // Also used for calls made on behalf of a task rather than by the executor, such as map items
+    Guard forType(String type) {
+        // A task of an unknown type fails without calling a handler, so it needs no guard
+        return knownType.test(type) ? guard(type) : UNGUARDED;
+    }
+
+    private Guard guard(String key) {
+        Guard guard = guards.get(key);
+        return guard != null ? guard : guards.computeIfAbsent(key, this::createGuard);
+    }
+
+    private Guard createGuard(String key) {
+        TaskGuardProperties.Limits limits = properties.resolve(key);
+        int maxConcurrent = limits.maxConcurrentOrUnbounded();
+        int failureRateThreshold = limits.failureRateThresholdOrDisabled();
+        if (meterRegistry == null || (maxConcurrent <= 0 && failureRateThreshold <= 0)) {
+            return UNGUARDED;
+        }
+        Semaphore bulkhead = null;
+        if (maxConcurrent > 0) {
+            Semaphore permits = new Semaphore(maxConcurrent);
+            bulkhead = permits;
+            Gauge.builder(BULKHEAD_ACTIVE, () -> maxConcurrent - permits.availablePermits())
+                    .tag("key", key)
+                    .register(meterRegistry);
+        }
+        CircuitBreaker breaker = null;
+        long slowCallNanos = Long.MAX_VALUE;
+        if (failureRateThreshold > 0) {
+            int window = limits.getSlidingWindow() != null ? limits.getSlidingWindow() : 20;
+            CircuitBreaker circuit = new CircuitBreaker(failureRateThreshold, window,
+                    limits.getMinimumCalls() != null ? limits.getMinimumCalls() : window,
+                    limits.getOpenDuration() != null ? limits.getOpenDuration().toNanos() : 30_000_000_000L,
+                    limits.getHalfOpenCalls() != null ? limits.getHalfOpenCalls() : 1,
+                    nanoClock);
+            breaker = circuit;
+            if (limits.getSlowCallDuration() != null) {
+                slowCallNanos = limits.getSlowCallDuration().toNanos();
+            }
+            // 0 = closed, 1 = open, 2 = half-open
+            Gauge.builder(CIRCUIT_STATE, () -> circuit.getState().ordinal())
+                    .tag("key", key)
+                    .register(meterRegistry);
+        }
+        return new Guard(key, bulkhead, breaker, slowCallNanos,
+                Counter.builder(REJECTIONS).tag("key", key).tag("reason", "bulkhead").register(meterRegistry),
+                Counter.builder(REJECTIONS).tag("key", key).tag("reason", "circuit_open").register(meterRegistry));
+    }
+
+    static final class Guard {
+        private final String key;
+        private final Semaphore bulkhead;
+        private final CircuitBreaker breaker;
+        private final long slowCallNanos;
+        private final Counter bulkheadRejections;
+        private final Counter circuitRejections;
+
+        private Guard(String key, Semaphore bulkhead, CircuitBreaker breaker, long slowCallNanos,
+                      Counter bulkheadRejections, Counter circuitRejections) {
+            this.key = key;
+            this.bulkhead = bulkhead;
+            this.breaker = breaker;
+            this.slowCallNanos = slowCallNanos;
+            this.bulkheadRejections = bulkheadRejections;
+            this.circuitRejections = circuitRejections;
+        }
+
+        // Every successful acquire must be followed by exactly one release
+        void acquire() {
+            if (breaker != null && !breaker.tryAcquire()) {
+                circuitRejections.increment();
+                throw new TaskRejectedException("Circuit breaker for '" + key + "' is open");
+            }
+            if (bulkhead != null && !bulkhead.tryAcquire()) {
+                if (breaker != null) {
+                    breaker.cancel();
+                }
+                bulkheadRejections.increment();
+                throw new TaskRejectedException("Too many concurrent '" + key + "' tasks");
+            }
+        }
+
+        void release(boolean succeeded, long durationNanos) {
+            if (bulkhead != null) {
+                bulkhead.release();
+            }
+            if (breaker != null) {
+                breaker.record(succeeded && durationNanos < slowCallNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+// Executes tasks of one or more Task.type values. Implementations are Spring beans and must be thread-safe.
+public interface TaskHandler {
+
+    Set<String> getTypes();
+
+    Object execute(TaskContext context) throws Exception;
+
+    // Handlers that wait on I/O override this so that no pool thread is held while they wait; the
+    // executor continues the run on the pool once the future completes. The default runs execute().
+    default CompletableFuture<Object> executeAsync(TaskContext context) {
+        try {
+            return CompletableFuture.completedFuture(execute(context));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import org.springframework.stereotype.Component;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Component
+public class TaskHandlerRegistry {
+
+    private final Map<String, TaskHandler> handlersByType = new HashMap<>();
+
+    public TaskHandlerRegistry(List<TaskHandler> handlers) {
+        for (TaskHandler handler : handlers) {
+            for (String type : handler.getTypes()) {
+                TaskHandler existing = handlersByType.putIfAbsent(type, handler);
+                if (existing != null) {
+                    throw new IllegalStateException("Task type '" + type + "' is handled by both "
+                            + existing.getClass().getSimpleName() + " and " + handler.getClass().getSimpleName());
+                }
+            }
+        }
+    }
+
+    public TaskHandler getHandler(String type) {
+        return handlersByType.get(type);
+    }
+
+    public boolean isRegistered(String type) {
+        return type != null && handlersByType.containsKey(type);
+    }
+}
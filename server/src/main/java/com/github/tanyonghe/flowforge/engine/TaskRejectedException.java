@@ -0,0 +1,9 @@
+package com.github.tanyonghe.flowforge.engine;
+
+// A task attempt was refused by its bulkhead or circuit breaker without reaching the handler
+public class TaskRejectedException extends RuntimeException {
+
+    public TaskRejectedException(String message) {
+        super(message);
+    }
+}
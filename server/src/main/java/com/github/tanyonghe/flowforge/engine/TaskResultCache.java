@@ -0,0 +1,189 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.github.tanyonghe.flowforge.model.MemoizedResult;
+import com.github.tanyonghe.flowforge.repository.MemoizedResultRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Outputs of deterministic tasks, addressed by the SHA-256 of canonical JSON of (type, effective config,
+// the run input the task sees, upstream outputs). A deterministic task must not read anything else. The memory tier is an
+// LRU bounded by entry count and estimated bytes; the optional Mongo tier outlives restarts and is
+// shared by instances, but only on a best-effort basis: if Mongo can't read or write an entry, the task
+// runs or finishes as if it weren't memoized. Outputs are copied on the way in and out, so no two runs
+// share the same maps and lists.
+@Component
+public class TaskResultCache {
+
+    private static final Logger log = LoggerFactory.getLogger(TaskResultCache.class);
+
+    // Independent of the application mapper, so changing its settings doesn't silently change every key
+    private static final ObjectMapper CANONICAL = JsonMapper.builder()
+            .findAndAddModules()
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .build();
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final MemoizedResultRepository repository;
+    private final Duration persistentTtl;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+
+    @Autowired
+    public TaskResultCache(@Value("${flowforge.execution.memo.max-entries:10000}") int maxEntries,
+                           @Value("${flowforge.execution.memo.max-size:64MB}") DataSize maxSize,
+                           @Value("${flowforge.execution.memo.max-entry-size:1MB}") DataSize maxEntrySize,
+                           @Value("${flowforge.execution.memo.persistent:false}") boolean persistent,
+                           @Value("${flowforge.execution.memo.persistent-ttl:7d}") Duration persistentTtl,
+                           MemoizedResultRepository repository) {
+        this(maxEntries, maxSize.toBytes(), maxEntrySize.toBytes(), persistent ? repository : null, persistentTtl);
+    }
+
+    TaskResultCache(int maxEntries, long maxBytes, long maxEntryBytes,
+                    MemoizedResultRepository repository, Duration persistentTtl) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        this.repository = repository;
+        this.persistentTtl = persistentTtl;
+    }
+
+    public static TaskResultCache disabled() {
+        return new TaskResultCache(0, 0, 0, null, Duration.ZERO);
+    }
+
+    // Null if the inputs can't be serialized, in which case the task simply isn't memoized
+    String key(String type, Map<String, Object> config, Map<String, Object> input, Map<String, Object> upstream) {
+        Map<String, Object> identity = new LinkedHashMap<>();
+        identity.put("type", type);
+        identity.put("config", config);
+        identity.put("input", input);
+        identity.put("upstream", upstream);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(CANONICAL.writeValueAsBytes(identity));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException e) {
+            return null;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Null on a miss; a hit may hold a null output
+    Entry get(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                return entry.copy();
+            }
+        }
+        if (repository == null) {
+            return null;
+        }
+        MemoizedResult stored;
+        try {
+            stored = repository.findById(key).orElse(null);
+        } catch (RuntimeException e) {
+            log.warn("Reading memoized result {} failed; treating it as a miss", key, e);
+            return null;
+        }
+        // The TTL monitor runs about once a minute, so expired documents can still be read
+        if (stored == null || stored.getExpiresAt().before(new Date())) {
+            return null;
+        }
+        Entry entry = new Entry(stored.getOutput(), stored.getSizeBytes());
+        remember(key, entry);
+        return entry.copy();
+    }
+
+    // False if the entry couldn't be persisted; it is still cached in memory
+    boolean put(String key, String type, Object output, long sizeBytes) {
+        if (sizeBytes > maxEntryBytes) {
+            return true;
+        }
+        Entry entry = new Entry(copy(output), sizeBytes);
+        remember(key, entry);
+        if (repository == null) {
+            return true;
+        }
+        Date now = new Date();
+        try {
+            repository.save(new MemoizedResult(key, type, entry.output(), sizeBytes, now,
+                    new Date(now.getTime() + persistentTtl.toMillis())));
+            return true;
+        } catch (RuntimeException e) {
+            // e.g. Mongo unavailable, or map keys containing '.' or starting with '$'
+            log.warn("Persisting memoized result {} of type {} failed", key, type, e);
+            return false;
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void remember(String key, Entry entry) {
+        if (entry.sizeBytes() > maxEntryBytes) {
+            return;
+        }
+        synchronized (entries) {
+            Entry previous = entries.put(key, entry);
+            usedBytes += entry.sizeBytes() - (previous != null ? previous.sizeBytes() : 0);
+            // Access order, so the head is the least recently used
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (eldest.hasNext() && (entries.size() > maxEntries || usedBytes > maxBytes)) {
+                usedBytes -= eldest.next().sizeBytes();
+                eldest.remove();
+            }
+        }
+    }
+
+    // Maps and collections are copied all the way down; everything else a handler returns is treated as
+    // immutable
+    private static Object copy(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            map.forEach((k, v) -> copy.put(k, copy(v)));
+            return copy;
+        }
+        if (value instanceof Collection<?> collection) {
+            List<Object> copy = new ArrayList<>(collection.size());
+            for (Object element : collection) {
+                copy.add(copy(element));
+            }
+            return copy;
+        }
+        return value;
+    }
+
+    record Entry(Object output, long sizeBytes) {
+        Entry copy() {
+            return new Entry(TaskResultCache.copy(output), sizeBytes);
+        }
+    }
+}
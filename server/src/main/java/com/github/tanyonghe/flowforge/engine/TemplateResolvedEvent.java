@@ -0,0 +1,28 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// The event duration is the template lookup, which may hit Mongo
+@Name(TemplateResolvedEvent.NAME)
+@Label("Template Resolved")
+@Category({"FlowForge", "Planning"})
+@StackTrace(false)
+class TemplateResolvedEvent extends jdk.jfr.Event {
+
+    static final String NAME = "flowforge.TemplateResolved";
+
+    @Label("Workflow Id")
+    String workflowId;
+
+    @Label("Task Name")
+    String taskName;
+
+    @Label("Template Id")
+    String templateId;
+
+    @Label("Found")
+    boolean found;
+}
@@ -0,0 +1,353 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import com.github.tanyonghe.flowforge.model.OutputReference;
+import com.github.tanyonghe.flowforge.model.WorkflowRun;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+// Runs an ExecutionPlan as a DAG: a task is scheduled as soon as its last predecessor completes.
+// One ready successor continues on the current thread; the rest are forked onto the pool.
+@Component
+public class WorkflowExecutor {
+
+    private final TaskHandlerRegistry handlerRegistry;
+    private final ForkJoinPool pool;
+    private final ExecutionMetrics metrics;
+    private final OutputSpiller outputSpiller;
+    private final MemoryBudget memoryBudget;
+    private final TaskResultCache resultCache;
+    private final TaskGuards taskGuards;
+
+    public WorkflowExecutor(TaskHandlerRegistry handlerRegistry, ForkJoinPool workflowExecutorPool,
+                            ExecutionMetrics metrics, OutputSpiller outputSpiller, MemoryBudget memoryBudget,
+                            TaskResultCache resultCache, TaskGuards taskGuards) {
+        this.handlerRegistry = handlerRegistry;
+        this.pool = workflowExecutorPool;
+        this.metrics = metrics;
+        this.outputSpiller = outputSpiller;
+        this.memoryBudget = memoryBudget;
+        this.resultCache = resultCache;
+        this.taskGuards = taskGuards;
+    }
+
+    public CompletableFuture<WorkflowRun> execute(ExecutionPlan plan, Map<String, Object> input) {
+        // Throws ExecutionCapacityException if the run can't be admitted within the timeout
+        long inputBytes = ObjectSizeEstimator.estimate(input);
+        memoryBudget.admit(inputBytes);
+        RunState run = new RunState(plan, input, outputSpiller, memoryBudget, List.of());
+        return start(run, inputBytes, plan.getRoots(), false);
+    }
+
+    // Re-runs part of an earlier run: tasks in reusedOutputs (by name, inline values or OutputReferences)
+    // count as completed and only the rest execute. Every predecessor of a reused task must be reused too.
+    public CompletableFuture<WorkflowRun> rerun(ExecutionPlan plan, Map<String, Object> input,
+                                                Map<String, Object> reusedOutputs, String previousRunId) {
+        RunState run = new RunState(plan, input, outputSpiller, memoryBudget, List.of());
+        run.rerunOf = previousRunId;
+        long retainedBytes = ObjectSizeEstimator.estimate(input);
+        for (Map.Entry<String, Object> reused : reusedOutputs.entrySet()) {
+            ExecutionPlan.Node node = plan.getNode(reused.getKey());
+            if (node == null) {
+                throw new IllegalArgumentException("Unknown task: " + reused.getKey());
+            }
+            run.seed(node.getIndex(), reused.getValue());
+            if (!(reused.getValue() instanceof OutputReference)) {
+                retainedBytes += ObjectSizeEstimator.estimate(reused.getValue());
+            }
+        }
+        memoryBudget.admit(retainedBytes);
+        int[] roots = plan.getNodes().stream()
+                .filter(node -> !run.reused[node.getIndex()] && run.pendingPredecessors.get(node.getIndex()) == 0)
+                .mapToInt(ExecutionPlan.Node::getIndex)
+                .toArray();
+        return start(run, retainedBytes, roots, false);
+    }
+
+    // Runs a sub-workflow for a task of another run and returns its completed outputs by task name.
+    // The first root runs on the calling thread; joining from a pool worker is a managed block, so the
+    // pool adds a compensating worker instead of losing a thread to the wait.
+    Map<String, Object> executeInline(ExecutionPlan plan, Map<String, Object> input, List<String> callStack) {
+        long inputBytes = ObjectSizeEstimator.estimate(input);
+        if (!memoryBudget.tryAdmit(inputBytes)) {
+            throw new ExecutionCapacityException("Execution memory budget exhausted, can't start sub-workflow");
+        }
+        RunState run = new RunState(plan, input, outputSpiller, memoryBudget, callStack);
+        try {
+            WorkflowRun result = start(run, inputBytes, plan.getRoots(), true).join();
+            if (WorkflowRun.STATUS_FAILED.equals(result.getStatus())) {
+                throw new IllegalStateException("Sub-workflow '" + plan.getWorkflowId() + "' failed: "
+                        + result.getError());
+            }
+            return run.completedOutputs();
+        } finally {
+            // A sub-workflow run isn't saved, so its spilled outputs are unreachable once it returns
+            outputSpiller.discard(run.runId);
+        }
+    }
+
+    private CompletableFuture<WorkflowRun> start(RunState run, long inputBytes, int[] roots, boolean inline) {
+        ExecutionPlan plan = run.plan;
+        run.retainedBytes.set(inputBytes);
+        run.inlineBytes.set(inputBytes);
+        WorkflowRunStartedEvent started = new WorkflowRunStartedEvent();
+        if (started.shouldCommit()) {
+            started.workflowId = plan.getWorkflowId();
+            started.runId = run.runId;
+            started.taskCount = plan.size();
+            started.commit();
+        }
+        long startedNanos = System.nanoTime();
+        metrics.runStarted();
+        CompletableFuture<WorkflowRun> result = run.completion.whenComplete((workflowRun, error) -> {
+            memoryBudget.release(run.retainedBytes.get());
+            metrics.runFinished(error == null ? workflowRun.getStatus() : WorkflowRun.STATUS_FAILED,
+                    System.nanoTime() - startedNanos);
+        });
+        if (roots.length == 0) {
+            run.finish();
+            return result;
+        }
+        // Count every root before starting any, so an early finisher can't see zero in-flight
+        run.inFlight.addAndGet(roots.length);
+        long ready = System.nanoTime();
+        for (int root : roots) {
+            run.readyNanos[root] = ready;
+        }
+        for (int i = inline ? 1 : 0; i < roots.length; i++) {
+            int root = roots[i];
+            pool.execute(() -> runFrom(run, root));
+        }
+        if (inline) {
+            runFrom(run, roots[0]);
+        }
+        return result;
+    }
+
+    private void runFrom(RunState run, int index) {
+        try {
+            int next = index;
+            while (next >= 0) {
+                next = executeNode(run, next);
+            }
+        } catch (Throwable t) {
+            run.failed = true;
+            run.completion.completeExceptionally(t);
+        }
+    }
+
+    // Returns the successor to continue with on this thread, or -1
+    private int executeNode(RunState run, int index) {
+        ExecutionPlan.Node node = run.plan.getNode(index);
+        if (run.failed) {
+            run.status[index] = RunState.SKIPPED;
+            return release(run);
+        }
+
+        metrics.taskStarted();
+        TaskExecutedEvent event = new TaskExecutedEvent();
+        event.begin();
+        run.startNanos[index] = System.nanoTime();
+        TaskHandler handler = handlerRegistry.getHandler(node.getType());
+        if (handler == null) {
+            return finishNode(run, node, event, null,
+                    new IllegalStateException("No handler registered for task type: " + node.getType()), 0, null, false);
+        }
+        TaskContext context = new TaskContext(run, node);
+        // Deterministic tasks seen before with the same config and inputs skip the handler entirely. Only
+        // the input the task sees is hashed, so declaring inputKeys lets runs differing elsewhere share it.
+        String memoKey = node.isDeterministic()
+                ? resultCache.key(node.getType(), node.getConfig(), context.getInput(), context.getUpstreamIdentities())
+                : null;
+        if (memoKey != null) {
+            TaskResultCache.Entry hit = resultCache.get(memoKey);
+            metrics.memoLookup(node.getType(), hit != null);
+            if (hit != null) {
+                return finishNode(run, node, event, hit.output(), null, 0, memoKey, true);
+            }
+        }
+        return attempt(new Attempt(run, node, handler, context, taskGuards.forNode(node), event, memoKey));
+    }
+
+    // Calls the handler until an attempt succeeds or retries run out. A handler whose future isn't done
+    // yet frees this thread: the task keeps its in-flight slot and resumes on the pool when it completes.
+    private int attempt(Attempt attempt) {
+        while (true) {
+            attempt.count++;
+            try {
+                attempt.guard.acquire();
+            } catch (TaskRejectedException e) {
+                // Retrying right away would only be rejected again
+                return finishNode(attempt, null, e);
+            }
+            long callStart = System.nanoTime();
+            CompletableFuture<Object> call = null;
+            try {
+                call = attempt.handler.executeAsync(attempt.context);
+            } catch (Exception e) {
+                call = CompletableFuture.failedFuture(e);
+            } finally {
+                if (call == null) {
+                    // An Error fails the whole run, but must not keep the guard permit or the active-task count
+                    long now = System.nanoTime();
+                    attempt.guard.release(false, now - callStart);
+                    metrics.taskFinished(attempt.node.getType(), now - attempt.run.startNanos[attempt.node.getIndex()],
+                            false, attempt.count - 1);
+                }
+            }
+            if (!call.isDone()) {
+                call.whenComplete((output, error) -> pool.execute(() -> resume(attempt, callStart, output, error)));
+                return -1;
+            }
+            Object output = null;
+            Throwable failure = null;
+            try {
+                output = call.join();
+            } catch (CompletionException | CancellationException e) {
+                failure = unwrap(e);
+            }
+            attempt.guard.release(failure == null, System.nanoTime() - callStart);
+            if (failure == null || attempt.count > attempt.node.getMaxRetries()) {
+                return finishNode(attempt, output, failure);
+            }
+        }
+    }
+
+    private void resume(Attempt attempt, long callStart, Object output, Throwable error) {
+        RunState run = attempt.run;
+        try {
+            Throwable failure = error != null ? unwrap(error) : null;
+            attempt.guard.release(failure == null, System.nanoTime() - callStart);
+            int next = failure == null || attempt.count > attempt.node.getMaxRetries()
+                    ? finishNode(attempt, output, failure)
+                    : attempt(attempt);
+            while (next >= 0) {
+                next = executeNode(run, next);
+            }
+        } catch (Throwable t) {
+            run.failed = true;
+            run.completion.completeExceptionally(t);
+        }
+    }
+
+    private int finishNode(Attempt attempt, Object output, Throwable failure) {
+        return finishNode(attempt.run, attempt.node, attempt.event, output, failure, attempt.count,
+                attempt.memoKey, false);
+    }
+
+    // Records the outcome of a task and schedules its ready successors; returns one to continue with, or -1
+    private int finishNode(RunState run, ExecutionPlan.Node node, TaskExecutedEvent event, Object output,
+                           Throwable failure, int attempts, String memoKey, boolean memoized) {
+        int index = node.getIndex();
+        long outputBytes = failure == null ? ObjectSizeEstimator.estimate(output) : 0;
+        if (failure == null && memoKey != null && !memoized
+                && !resultCache.put(memoKey, node.getType(), output, outputBytes)) {
+            metrics.memoPersistFailed();
+        }
+        Object stored = output;
+        if (failure == null) {
+            // Large outputs always spill; others spill once the run document would grow too big to save, or
+            // keeping them would overflow a memory budget. An output is either charged or off the heap:
+            // without a spiller an uncharged output fails the task.
+            String spillReason = null;
+            if (outputSpiller.shouldSpill(outputBytes)) {
+                spillReason = "size";
+            } else if (!outputSpiller.tryKeepInline(run.inlineBytes, outputBytes)) {
+                spillReason = "document";
+            } else if (!memoryBudget.tryCharge(run.retainedBytes, outputBytes)) {
+                run.inlineBytes.addAndGet(-outputBytes);
+                spillReason = "budget";
+            }
+            if (spillReason != null && !outputSpiller.isEnabled()) {
+                failure = new IllegalStateException("Output of ~" + outputBytes
+                        + " bytes exceeds the run's memory budget");
+            } else if (spillReason != null) {
+                try {
+                    stored = outputSpiller.spill(run.runId, node.getName(), output, outputBytes);
+                    metrics.outputSpilled(spillReason);
+                } catch (Exception e) {
+                    failure = e;
+                }
+            }
+        }
+        run.endNanos[index] = System.nanoTime();
+        run.attempts[index] = attempts;
+        run.memoized[index] = memoized;
+        event.end();
+        if (event.shouldCommit()) {
+            event.workflowId = run.plan.getWorkflowId();
+            event.runId = run.runId;
+            event.taskName = node.getName();
+            event.taskType = node.getType();
+            event.succeeded = failure == null;
+            event.attempts = attempts;
+            event.outputBytes = outputBytes;
+            event.commit();
+        }
+        metrics.taskFinished(node.getType(), run.endNanos[index] - run.startNanos[index],
+                failure == null, Math.max(0, attempts - 1));
+
+        if (failure != null) {
+            run.errors[index] = String.valueOf(failure.getMessage());
+            run.status[index] = RunState.FAILED;
+            run.failed = true;
+            return release(run);
+        }
+        run.outputs[index] = stored;
+        run.status[index] = RunState.COMPLETED;
+
+        int continueWith = -1;
+        for (int successor : node.getSuccessors()) {
+            if (run.pendingPredecessors.decrementAndGet(successor) == 0 && !run.failed) {
+                run.readyNanos[successor] = System.nanoTime();
+                if (continueWith < 0) {
+                    continueWith = successor;
+                } else {
+                    run.inFlight.incrementAndGet();
+                    pool.execute(() -> runFrom(run, successor));
+                }
+            }
+        }
+        // The continuation inherits this task's in-flight slot
+        return continueWith >= 0 ? continueWith : release(run);
+    }
+
+    private int release(RunState run) {
+        if (run.inFlight.decrementAndGet() == 0) {
+            run.finish();
+        }
+        return -1;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    // One task's progress through its attempts, carried across threads when a handler completes asynchronously
+    private static final class Attempt {
+        final RunState run;
+        final ExecutionPlan.Node node;
+        final TaskHandler handler;
+        final TaskContext context;
+        final TaskGuards.Guard guard;
+        final TaskExecutedEvent event;
+        final String memoKey;
+        int count;
+
+        Attempt(RunState run, ExecutionPlan.Node node, TaskHandler handler, TaskContext context,
+                TaskGuards.Guard guard, TaskExecutedEvent event, String memoKey) {
+            this.run = run;
+            this.node = node;
+            this.handler = handler;
+            this.context = context;
+            this.guard = guard;
+            this.event = event;
+            this.memoKey = memoKey;
+        }
+    }
+}
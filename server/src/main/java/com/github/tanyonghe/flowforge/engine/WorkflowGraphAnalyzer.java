@@ -0,0 +1,187 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import com.github.tanyonghe.flowforge.model.Workflow;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// Validates a workflow's task graph when it is saved and derives the metadata stored alongside it.
+// Without "start" tasks, every task without predecessors is an entry point, so a task can only be
+// unreachable by sitting on, or downstream of, a cycle. A workflow that declares "start" tasks is entered
+// only through them, so any other task without predecessors is rejected along with what only it leads to.
+public final class WorkflowGraphAnalyzer {
+
+    static final String START_TYPE = "start";
+
+    private WorkflowGraphAnalyzer() {
+    }
+
+    public static Workflow.Graph analyze(Workflow workflow) {
+        List<Workflow.Task> tasks = workflow.getTasks() != null ? workflow.getTasks() : Collections.emptyList();
+        int size = tasks.size();
+        List<String> errors = new ArrayList<>();
+
+        Map<String, Integer> indexByName = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            String name = tasks.get(i).getName();
+            if (name == null || name.isBlank()) {
+                errors.add("Task at position " + i + " has no name");
+            } else if (indexByName.putIfAbsent(name, i) != null) {
+                errors.add("Duplicate task name: " + name);
+            }
+        }
+        if (!errors.isEmpty()) {
+            // Edges can't be resolved reliably without unique names
+            throw new WorkflowValidationException(errors);
+        }
+
+        List<List<Integer>> successors = new ArrayList<>(size);
+        int[] inDegree = new int[size];
+        int edgeCount = 0;
+        for (int i = 0; i < size; i++) {
+            Workflow.Task task = tasks.get(i);
+            List<Integer> next = new ArrayList<>();
+            if (task.getNextTasks() != null) {
+                for (String target : task.getNextTasks()) {
+                    Integer index = indexByName.get(target);
+                    if (index == null) {
+                        errors.add("Task '" + task.getName() + "' references unknown task '" + target + "'");
+                    } else if (!next.contains(index)) {
+                        next.add(index);
+                        inDegree[index]++;
+                        edgeCount++;
+                    }
+                }
+            }
+            successors.add(next);
+        }
+
+        // Kahn's algorithm, lowest position first so the order is stable across saves
+        int[] remaining = inDegree.clone();
+        int[] level = new int[size];
+        boolean[] visited = new boolean[size];
+        PriorityQueue<Integer> ready = new PriorityQueue<>();
+        List<String> roots = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (inDegree[i] == 0) {
+                ready.add(i);
+                roots.add(tasks.get(i).getName());
+            }
+        }
+        List<String> order = new ArrayList<>(size);
+        while (!ready.isEmpty()) {
+            int current = ready.poll();
+            visited[current] = true;
+            order.add(tasks.get(current).getName());
+            for (int target : successors.get(current)) {
+                level[target] = Math.max(level[target], level[current] + 1);
+                if (--remaining[target] == 0) {
+                    ready.add(target);
+                }
+            }
+        }
+
+        if (order.size() != size) {
+            reportCycles(tasks, successors, visited, errors);
+        }
+        reportUnreachableFromStart(tasks, successors, inDegree, visited, errors);
+        if (!errors.isEmpty()) {
+            throw new WorkflowValidationException(errors);
+        }
+
+        List<List<String>> levels = new ArrayList<>();
+        List<String> sinks = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            while (levels.size() <= level[i]) {
+                levels.add(new ArrayList<>());
+            }
+            levels.get(level[i]).add(tasks.get(i).getName());
+            if (successors.get(i).isEmpty()) {
+                sinks.add(tasks.get(i).getName());
+            }
+        }
+
+        Workflow.Graph graph = new Workflow.Graph();
+        graph.setTopologicalOrder(order);
+        graph.setRoots(roots);
+        graph.setSinks(sinks);
+        graph.setLevels(levels);
+        graph.setDepth(levels.size());
+        graph.setMaxWidth(levels.stream().mapToInt(List::size).max().orElse(0));
+        graph.setEdgeCount(edgeCount);
+        return graph;
+    }
+
+    // Tasks a cycle holds up were already reported, so only the ones Kahn's algorithm visited are checked
+    private static void reportUnreachableFromStart(List<Workflow.Task> tasks, List<List<Integer>> successors,
+                                                   int[] inDegree, boolean[] visited, List<String> errors) {
+        int size = tasks.size();
+        boolean[] reachable = new boolean[size];
+        Deque<Integer> pending = new ArrayDeque<>();
+        for (int i = 0; i < size; i++) {
+            if (START_TYPE.equals(tasks.get(i).getType())) {
+                reachable[i] = true;
+                pending.push(i);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        while (!pending.isEmpty()) {
+            for (int target : successors.get(pending.pop())) {
+                if (!reachable[target]) {
+                    reachable[target] = true;
+                    pending.push(target);
+                }
+            }
+        }
+        List<String> strayRoots = new ArrayList<>();
+        List<String> unreachable = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (!reachable[i] && visited[i]) {
+                (inDegree[i] == 0 ? strayRoots : unreachable).add(tasks.get(i).getName());
+            }
+        }
+        if (!strayRoots.isEmpty()) {
+            errors.add("Tasks without predecessors must be start tasks: " + String.join(", ", strayRoots));
+        }
+        if (!unreachable.isEmpty()) {
+            errors.add("Tasks unreachable from a start task: " + String.join(", ", unreachable));
+        }
+    }
+
+    // Of the tasks Kahn's algorithm never reached, those that can still reach a cycle are on one (or
+    // between two); the rest only hang off one
+    private static void reportCycles(List<Workflow.Task> tasks, List<List<Integer>> successors,
+                                     boolean[] visited, List<String> errors) {
+        int size = tasks.size();
+        boolean[] pruned = visited.clone();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < size; i++) {
+                if (!pruned[i] && successors.get(i).stream().allMatch(target -> pruned[target])) {
+                    pruned[i] = true;
+                    changed = true;
+                }
+            }
+        }
+        List<String> onCycle = new ArrayList<>();
+        List<String> downstream = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (!visited[i]) {
+                (pruned[i] ? downstream : onCycle).add(tasks.get(i).getName());
+            }
+        }
+        errors.add("Workflow contains a cycle through tasks: " + String.join(", ", onCycle));
+        if (!downstream.isEmpty()) {
+            errors.add("Tasks unreachable because they depend on a cycle: " + String.join(", ", downstream));
+        }
+    }
+}
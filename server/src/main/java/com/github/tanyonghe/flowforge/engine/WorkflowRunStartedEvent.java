@@ -0,0 +1,24 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name(WorkflowRunStartedEvent.NAME)
+@Label("Workflow Run Started")
+@Category({"FlowForge", "Execution"})
+@StackTrace(false)
+class WorkflowRunStartedEvent extends jdk.jfr.Event {
+
+    static final String NAME = "flowforge.WorkflowRunStarted";
+
+    @Label("Workflow Id")
+    String workflowId;
+
+    @Label("Run Id")
+    String runId;
+
+    @Label("Task Count")
+    int taskCount;
+}
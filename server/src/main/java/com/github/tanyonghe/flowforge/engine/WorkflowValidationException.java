@@ -0,0 +1,17 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import lombok.Getter;
+
+import java.util.List;
+
+// A workflow definition failed save-time analysis; carries every problem found, not just the first
+@Getter
+public class WorkflowValidationException extends RuntimeException {
+
+    private final List<String> errors;
+
+    public WorkflowValidationException(List<String> errors) {
+        super(String.join("; ", errors));
+        this.errors = List.copyOf(errors);
+    }
+}
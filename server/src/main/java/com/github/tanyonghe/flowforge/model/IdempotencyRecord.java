@@ -0,0 +1,28 @@
+package com.github.tanyonghe.flowforge.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.util.Date;
+import java.util.Map;
+
+// The outcome of a request sent with an Idempotency-Key, keyed by a hash of the caller's scope and the key.
+// While IN_PROGRESS, expiresAt is short and renewed by the running instance, so a crashed one frees the key.
+@Data
+@Document(collection = "idempotency_keys")
+public class IdempotencyRecord {
+    public static final String STATUS_IN_PROGRESS = "IN_PROGRESS";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+
+    @Id
+    private String id;
+    // Hash of the request body; a retry must send the same one
+    private String requestHash;
+    private String status;
+    private Map<String, Object> result;
+    private Date createdAt;
+
+    @Indexed(expireAfter = "0s")
+    private Date expiresAt;
+}
@@ -0,0 +1,26 @@
+package com.github.tanyonghe.flowforge.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.util.Date;
+
+// Persistent tier of the task result cache, keyed by the SHA-256 of the task's type, config and inputs
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "memoized_results")
+public class MemoizedResult {
+    @Id
+    private String id;
+    private String taskType;
+    private Object output;
+    private long sizeBytes;
+    private Date createdAt;
+
+    @Indexed(expireAfter = "0s")
+    private Date expiresAt;
+}
@@ -0,0 +1,22 @@
+package com.github.tanyonghe.flowforge.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Stands in for a task output that was too large to keep inline and was spilled to GridFS
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutputReference {
+    private String fileId;
+    // Estimated in-memory size of the output and compressed size as stored
+    private long sizeBytes;
+    private long storedBytes;
+    // SHA-256 of the stored JSON, so memo keys can identify the output without loading it
+    private String contentHash;
+
+    public OutputReference(String fileId, long sizeBytes, long storedBytes) {
+        this(fileId, sizeBytes, storedBytes, null);
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.tanyonghe.flowforge.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.util.Date;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "revoked_tokens")
+public class RevokedToken {
+    @Id
+    private String id; // jti of the refresh token
+    private String username;
+
+    // Mongo drops the entry once the token would have expired anyway
+    @Indexed(expireAfter = "0s")
+    private Date expiresAt;
+
+    private Date revokedAt;
+}
@@ -0,0 +1,16 @@
+package com.github.tanyonghe.flowforge.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.util.Date;
+
+// One document per leader-elected role; whoever holds an unexpired lease is the leader
+@Data
+@Document(collection = "scheduler_leases")
+public class SchedulerLease {
+    @Id
+    private String id;
+    private String owner;
+    private Date expiresAt;
+}
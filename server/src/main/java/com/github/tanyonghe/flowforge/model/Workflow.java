@@ -2,12 +2,14 @@ package com.github.tanyonghe.flowforge.model;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.util.List;
 import java.util.Map;
 
 @Data
 @Document(collection = "workflows")
+@CompoundIndex(name = "scheduled", def = "{'schedules.enabled': 1}", sparse = true)
 public class Workflow {
     @Id
     private String id;
@@ -17,6 +19,11 @@ public class Workflow {
     private String status = "DRAFT"; // Default status
     private List<Task> tasks;
     private Map<String, Object> metadata;
+    // Changes on every save, so anything derived from the definition can be cached per revision
+    private String revision;
+    // Written by the save-time analysis; null for workflows saved before it existed
+    private Graph graph;
+    private List<Schedule> schedules;
 
     @Data
     public static class Task {
@@ -31,6 +38,30 @@ public class Workflow {
         private Map<String, Object> configOverrides;
     }
 
+    // Starts a run on a cron expression (Spring's six-field format, evaluated in zone, default UTC)
+    // or every intervalSeconds; exactly one of the two is set
+    @Data
+    public static class Schedule {
+        private String cron;
+        private Long intervalSeconds;
+        private String zone;
+        private Map<String, Object> input;
+        private boolean enabled = true;
+    }
+
+    @Data
+    public static class Graph {
+        // Tasks in dependency order; ties keep their position in the task list
+        private List<String> topologicalOrder;
+        private List<String> roots;
+        private List<String> sinks;
+        // levels.get(i) holds the tasks whose longest chain of predecessors has length i
+        private List<List<String>> levels;
+        private int depth;
+        private int maxWidth;
+        private int edgeCount;
+    }
+
     public void setId(String id) {
         this.id = id;
     }
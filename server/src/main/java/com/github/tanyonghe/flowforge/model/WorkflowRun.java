@@ -0,0 +1,61 @@
+package com.github.tanyonghe.flowforge.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Document(collection = "workflow_runs")
+public class WorkflowRun {
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    @Id
+    private String id;
+    @Indexed
+    private String workflowId;
+    private String status;
+    private Map<String, Object> input;
+    private List<TaskRun> tasks;
+    private String error;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long durationMillis;
+    // Definition revision the run executed, so a rerun can tell whether the workflow changed since
+    private String workflowRevision;
+    // Id of the run this one re-ran from a failed or chosen task
+    private String rerunOf;
+    // Built by the engine alongside the run and stored separately in workflow_run_traces
+    @Transient
+    @JsonIgnore
+    private WorkflowRunTrace trace;
+
+    @Data
+    public static class TaskRun {
+        public static final String STATUS_PENDING = "PENDING";
+        public static final String STATUS_COMPLETED = "COMPLETED";
+        public static final String STATUS_FAILED = "FAILED";
+        public static final String STATUS_SKIPPED = "SKIPPED";
+
+        private String name;
+        private String type;
+        private String status;
+        private int attempts;
+        // Output came from the task result cache; the handler didn't run
+        private boolean memoized;
+        // Id of the earlier run whose output was reused; the task didn't execute in this run
+        private String reusedFrom;
+        private Object output;
+        // Set instead of output when the output was spilled to GridFS
+        private OutputReference outputRef;
+        private String error;
+        private LocalDateTime startedAt;
+        private long durationMicros;
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.tanyonghe.flowforge.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.util.List;
+
+// Timing of every task in a run, as offsets in microseconds from the run start.
+// Stored under the run id; tasks that never ran have -1 offsets.
+@Data
+@Document(collection = "workflow_run_traces")
+public class WorkflowRunTrace {
+    @Id
+    private String id;
+    @Indexed
+    private String workflowId;
+    private long totalMicros;
+    private List<TaskTrace> tasks;
+
+    @Data
+    public static class TaskTrace {
+        private String name;
+        private String type;
+        private String status;
+        private List<String> dependsOn;
+        // When the last predecessor finished and the task was handed to the scheduler
+        private long readyAtMicros = -1;
+        private long startedAtMicros = -1;
+        private long finishedAtMicros = -1;
+        private long queueWaitMicros;
+        private long executionMicros;
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.tanyonghe.flowforge.repository;
+
+import com.github.tanyonghe.flowforge.model.IdempotencyRecord;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+
+@Repository
+public interface IdempotencyRecordRepository extends MongoRepository<IdempotencyRecord, String> {
+
+    // Only touches a record still IN_PROGRESS, so a late renewal can't overwrite a completed result
+    @Query("{ '_id': ?0, 'status': 'IN_PROGRESS' }")
+    @Update("{ '$set': { 'expiresAt': ?1 } }")
+    long renewInProgress(String id, Date expiresAt);
+}
@@ -0,0 +1,9 @@
+package com.github.tanyonghe.flowforge.repository;
+
+import com.github.tanyonghe.flowforge.model.MemoizedResult;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MemoizedResultRepository extends MongoRepository<MemoizedResult, String> {
+}
@@ -2,11 +2,20 @@ package com.github.tanyonghe.flowforge.repository;
 
 import com.github.tanyonghe.flowforge.model.Workflow;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface WorkflowRepository extends MongoRepository<Workflow, String> {
-    List<Workflow> findByStatus(String status);
-    List<Workflow> findByCreatedBy(String createdBy);
+    // Backed by a Mongo cursor; the caller must close the stream
+    Stream<Workflow> findByStatus(String status);
+    Stream<Workflow> findByCreatedBy(String createdBy);
+    @Query("{}")
+    Stream<Workflow> streamAll();
+
+    // Only what the scheduler needs, for the workflows with at least one enabled schedule
+    @Query(value = "{ 'schedules.enabled': true }", fields = "{ 'revision': 1, 'schedules': 1 }")
+    List<Workflow> findScheduled();
 } 
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.github.tanyonghe.flowforge.repository;
+
+import com.github.tanyonghe.flowforge.model.WorkflowRun;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+
+@Repository
+public interface WorkflowRunRepository extends MongoRepository<WorkflowRun, String> {
+    List<WorkflowRun> findByWorkflowIdOrderByStartedAtDesc(String workflowId);
+}
@@ -8,11 +8,14 @@ import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Component
 public class JwtUtil {
     
+    private static final String REFRESH_TOKEN_TYPE = "refresh";
+    
     @Value("${jwt.secret:defaultSecretKey}")
     private String secret;
     
@@ -33,8 +36,20 @@ public class JwtUtil {
         return createToken(claims, username, expiration);
     }
     
-    public String generateRefreshToken(String username) {
-        return createToken(new HashMap<>(), username, refreshExpiration);
+    public String generateRefreshToken(String username, String email, String role) {
+        // Refresh tokens carry what the auth response needs, so refreshing doesn't require a user lookup
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("type", REFRESH_TOKEN_TYPE);
+        claims.put("email", email);
+        claims.put("role", role);
+        return Jwts.builder()
+                .setClaims(claims)
+                .setId(UUID.randomUUID().toString())
+                .setSubject(username)
+                .setIssuedAt(new Date(System.currentTimeMillis()))
+                .setExpiration(new Date(System.currentTimeMillis() + refreshExpiration))
+                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .compact();
     }
     
     private String createToken(Map<String, Object> claims, String subject, long expiration) {
@@ -65,6 +80,22 @@ public class JwtUtil {
         return claims.get("role", String.class);
     }
     
+    public Claims extractRefreshClaims(String token) {
+        Claims claims = extractAllClaims(token);
+        if (!REFRESH_TOKEN_TYPE.equals(claims.get("type", String.class)) || claims.getId() == null) {
+            throw new JwtException("Not a refresh token");
+        }
+        return claims;
+    }
+    
+    public Claims extractAccessClaims(String token) {
+        Claims claims = extractAllClaims(token);
+        if (claims.get("type") != null) {
+            throw new JwtException("Not an access token");
+        }
+        return claims;
+    }
+    
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
         final Claims claims = extractAllClaims(token);
         return claimsResolver.apply(claims);
@@ -0,0 +1,26 @@
+package com.github.tanyonghe.flowforge.security;
+
+import com.github.tanyonghe.flowforge.model.RevokedToken;
+import com.github.tanyonghe.flowforge.repository.RevokedTokenRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import java.util.Date;
+
+@Component
+public class RefreshTokenStore {
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    // Returns false if the token had already been revoked, possibly by another replica. The unique id
+    // makes the insert itself the check, so there is no separate lookup that could race with it.
+    public boolean revoke(String tokenId, String username, Date expiresAt) {
+        try {
+            revokedTokenRepository.insert(new RevokedToken(tokenId, username, expiresAt, new Date()));
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+}
@@ -5,7 +5,10 @@ import com.github.tanyonghe.flowforge.dto.AuthResponse;
 import com.github.tanyonghe.flowforge.model.User;
 import com.github.tanyonghe.flowforge.repository.UserRepository;
 import com.github.tanyonghe.flowforge.security.JwtUtil;
+import com.github.tanyonghe.flowforge.security.RefreshTokenStore;
+import io.jsonwebtoken.Claims;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
@@ -26,6 +29,9 @@ public class AuthService {
     @Autowired
     private PasswordEncoder passwordEncoder;
     
+    @Autowired
+    private RefreshTokenStore refreshTokenStore;
+    
     public AuthResponse login(AuthRequest request) {
         // Try to find user by username or email
         Optional<User> userOpt = userRepository.findByUsernameOrEmail(request.getUsername(), request.getUsername());
@@ -51,7 +57,7 @@ public class AuthService {
         
         // Generate tokens
         String token = jwtUtil.generateToken(user.getUsername(), user.getRole());
-        String refreshToken = jwtUtil.generateRefreshToken(user.getUsername());
+        String refreshToken = jwtUtil.generateRefreshToken(user.getUsername(), user.getEmail(), user.getRole());
         
         return new AuthResponse(
             token,
@@ -64,13 +70,8 @@ public class AuthService {
     }
     
     public AuthResponse register(AuthRequest request, String email, String firstName, String lastName) {
-        // Check if username or email already exists
-        if (userRepository.existsByUsername(request.getUsername())) {
-            throw new RuntimeException("Username already exists");
-        }
-        
-        if (userRepository.existsByEmail(email)) {
-            throw new RuntimeException("Email already exists");
+        if (isBlank(request.getUsername()) || isBlank(request.getPassword()) || isBlank(email)) {
+            throw new RegistrationRejectedException("Username, password and email are required");
         }
         
         // Create new user
@@ -84,11 +85,17 @@ public class AuthService {
         user.setFirstName(firstName);
         user.setLastName(lastName);
         
-        userService.createUser(user);
+        // Insert directly and let the unique indexes on username/email reject duplicates,
+        // which also closes the race between a separate existence check and the insert
+        try {
+            userService.createUser(user);
+        } catch (DuplicateKeyException e) {
+            throw new RegistrationRejectedException(UserService.duplicateUserMessage(e.getMessage()));
+        }
         
         // Generate tokens
         String token = jwtUtil.generateToken(user.getUsername(), user.getRole());
-        String refreshToken = jwtUtil.generateRefreshToken(user.getUsername());
+        String refreshToken = jwtUtil.generateRefreshToken(user.getUsername(), user.getEmail(), user.getRole());
         
         return new AuthResponse(
             token,
@@ -101,31 +108,48 @@ public class AuthService {
     }
     
     public AuthResponse refreshToken(String refreshToken) {
+        Claims claims;
+        try {
+            claims = jwtUtil.extractRefreshClaims(refreshToken);
+        } catch (Exception e) {
+            throw new RuntimeException("Invalid refresh token");
+        }
+        
+        // Rotate: each refresh token can be exchanged exactly once
+        String tokenId = claims.getId();
+        String username = claims.getSubject();
+        if (!refreshTokenStore.revoke(tokenId, username, claims.getExpiration())) {
+            throw new RuntimeException("Invalid refresh token");
+        }
+        
+        // The account may have been deleted, disabled or changed since the token was issued, so the
+        // new tokens are built from the user record rather than the old claims
+        User user = userService.getUserByUsername(username)
+            .filter(User::isEnabled)
+            .orElseThrow(() -> new RuntimeException("Invalid refresh token"));
+        
+        // Generate new tokens
+        String newToken = jwtUtil.generateToken(user.getUsername(), user.getRole());
+        String newRefreshToken = jwtUtil.generateRefreshToken(user.getUsername(), user.getEmail(), user.getRole());
+        
+        return new AuthResponse(
+            newToken,
+            newRefreshToken,
+            user.getUsername(),
+            user.getEmail(),
+            user.getRole(),
+            86400000L // 24 hours
+        );
+    }
+    
+    public void logout(String refreshToken) {
+        Claims claims;
         try {
-            String username = jwtUtil.extractUsername(refreshToken);
-            Optional<User> userOpt = userRepository.findByUsername(username);
-            
-            if (userOpt.isEmpty()) {
-                throw new RuntimeException("Invalid refresh token");
-            }
-            
-            User user = userOpt.get();
-            
-            // Generate new tokens
-            String newToken = jwtUtil.generateToken(user.getUsername(), user.getRole());
-            String newRefreshToken = jwtUtil.generateRefreshToken(user.getUsername());
-            
-            return new AuthResponse(
-                newToken,
-                newRefreshToken,
-                user.getUsername(),
-                user.getEmail(),
-                user.getRole(),
-                86400000L // 24 hours
-            );
+            claims = jwtUtil.extractRefreshClaims(refreshToken);
         } catch (Exception e) {
             throw new RuntimeException("Invalid refresh token");
         }
+        refreshTokenStore.revoke(claims.getId(), claims.getSubject(), claims.getExpiration());
     }
     
     public User getCurrentUser(String token) {
@@ -133,4 +157,8 @@ public class AuthService {
         return userService.getUserByUsername(username)
                 .orElseThrow(() -> new RuntimeException("User not found"));
     }
-} 
\ No newline at end of file
+    
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
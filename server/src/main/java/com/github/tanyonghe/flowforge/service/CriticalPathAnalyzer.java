@@ -0,0 +1,91 @@
+package com.github.tanyonghe.flowforge.service;
+
+import com.github.tanyonghe.flowforge.model.WorkflowRunTrace;
+import com.github.tanyonghe.flowforge.model.WorkflowRunTrace.TaskTrace;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Finds the observed critical path of a run: starting from the task that finished last, walk back
+// through the predecessor that finished last (the one that made the task ready). Shortening any
+// step on this chain shortens the run; work off the chain only matters once it becomes critical.
+final class CriticalPathAnalyzer {
+
+    private CriticalPathAnalyzer() {
+    }
+
+    static Map<String, Object> analyze(WorkflowRunTrace trace) {
+        Map<String, TaskTrace> byName = new HashMap<>();
+        TaskTrace last = null;
+        long totalQueueWait = 0;
+        long totalExecution = 0;
+        for (TaskTrace task : trace.getTasks()) {
+            byName.put(task.getName(), task);
+            if (task.getFinishedAtMicros() < 0) {
+                continue;
+            }
+            totalQueueWait += task.getQueueWaitMicros();
+            totalExecution += task.getExecutionMicros();
+            if (last == null || task.getFinishedAtMicros() > last.getFinishedAtMicros()) {
+                last = task;
+            }
+        }
+
+        List<TaskTrace> path = new ArrayList<>();
+        for (TaskTrace current = last; current != null; current = latestPredecessor(current, byName)) {
+            path.add(current);
+        }
+        Collections.reverse(path);
+
+        long pathQueueWait = 0;
+        long pathExecution = 0;
+        TaskTrace bottleneck = null;
+        List<Map<String, Object>> steps = new ArrayList<>(path.size());
+        for (TaskTrace task : path) {
+            pathQueueWait += task.getQueueWaitMicros();
+            pathExecution += task.getExecutionMicros();
+            if (bottleneck == null || task.getExecutionMicros() > bottleneck.getExecutionMicros()) {
+                bottleneck = task;
+            }
+            Map<String, Object> step = new LinkedHashMap<>();
+            step.put("name", task.getName());
+            step.put("type", task.getType());
+            step.put("startedAtMicros", task.getStartedAtMicros());
+            step.put("queueWaitMicros", task.getQueueWaitMicros());
+            step.put("executionMicros", task.getExecutionMicros());
+            steps.add(step);
+        }
+        long pathLength = last != null ? last.getFinishedAtMicros() : 0;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("runId", trace.getId());
+        result.put("totalMicros", trace.getTotalMicros());
+        result.put("criticalPathMicros", pathLength);
+        result.put("criticalPath", steps);
+        result.put("bottleneck", bottleneck != null ? bottleneck.getName() : null);
+        // Time on the path spent waiting for a scheduler thread vs. inside handlers; the remainder is
+        // engine bookkeeping between a predecessor finishing and its successor becoming ready
+        result.put("pathQueueWaitMicros", pathQueueWait);
+        result.put("pathExecutionMicros", pathExecution);
+        result.put("pathOverheadMicros", Math.max(0, pathLength - pathQueueWait - pathExecution));
+        result.put("totalQueueWaitMicros", totalQueueWait);
+        result.put("totalExecutionMicros", totalExecution);
+        return result;
+    }
+
+    private static TaskTrace latestPredecessor(TaskTrace task, Map<String, TaskTrace> byName) {
+        TaskTrace latest = null;
+        for (String name : task.getDependsOn()) {
+            TaskTrace predecessor = byName.get(name);
+            if (predecessor != null && predecessor.getFinishedAtMicros() >= 0
+                    && (latest == null || predecessor.getFinishedAtMicros() > latest.getFinishedAtMicros())) {
+                latest = predecessor;
+            }
+        }
+        return latest;
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.tanyonghe.flowforge.service;
+
+import com.github.tanyonghe.flowforge.engine.ExecutionPlan;
+import com.github.tanyonghe.flowforge.engine.ExecutionPlanSource;
+import com.github.tanyonghe.flowforge.model.Workflow;
+import com.github.tanyonghe.flowforge.repository.WorkflowRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Compiled plans keyed by workflow id and valid for one (revision, template catalog) pair, shared by
+// top-level executions and sub-workflow tasks. Within the TTL a hit needs no Mongo read at all; after
+// it the workflow is re-read and the plan reused if the revision hasn't moved. Local writes evict.
+@Component
+public class ExecutionPlanCache implements ExecutionPlanSource {
+
+    private final WorkflowRepository workflowRepository;
+    private final TaskTemplateService taskTemplateService;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public ExecutionPlanCache(WorkflowRepository workflowRepository,
+                              TaskTemplateService taskTemplateService,
+                              @Value("${flowforge.execution.plan-cache.ttl:5s}") Duration ttl,
+                              @Value("${flowforge.execution.plan-cache.max-entries:1000}") int maxEntries) {
+        this.workflowRepository = workflowRepository;
+        this.taskTemplateService = taskTemplateService;
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public Optional<ExecutionPlan> getPlan(String workflowId) {
+        Entry entry = entries.get(workflowId);
+        long now = System.nanoTime();
+        if (entry != null && now - entry.checkedNanos < ttlNanos
+                && entry.catalogVersion == taskTemplateService.getCatalogVersion()) {
+            return Optional.of(entry.plan);
+        }
+        Optional<Workflow> workflow = workflowRepository.findById(workflowId);
+        if (workflow.isEmpty()) {
+            entries.remove(workflowId);
+            return Optional.empty();
+        }
+        return Optional.of(getPlan(workflow.get()));
+    }
+
+    // For callers that already hold the workflow document
+    public ExecutionPlan getPlan(Workflow workflow) {
+        Object catalogVersion = taskTemplateService.getCatalogVersion();
+        long now = System.nanoTime();
+        Entry entry = entries.get(workflow.getId());
+        if (entry != null && entry.catalogVersion == catalogVersion
+                && workflow.getRevision() != null && workflow.getRevision().equals(entry.revision)) {
+            entries.replace(workflow.getId(), entry, new Entry(entry.revision, catalogVersion, entry.plan, now));
+            return entry.plan;
+        }
+        ExecutionPlan plan = ExecutionPlan.compile(workflow, taskTemplateService::getTaskTemplateById);
+        // Workflows saved before revisions existed can't be told apart from their edits, so aren't cached
+        if (workflow.getId() != null && workflow.getRevision() != null) {
+            if (entries.size() >= maxEntries) {
+                entries.values().removeIf(e -> now - e.checkedNanos >= ttlNanos);
+            }
+            if (entries.size() < maxEntries || entries.containsKey(workflow.getId())) {
+                entries.put(workflow.getId(), new Entry(workflow.getRevision(), catalogVersion, plan, now));
+            }
+        }
+        return plan;
+    }
+
+    public void evict(String workflowId) {
+        entries.remove(workflowId);
+    }
+
+    private record Entry(String revision, Object catalogVersion, ExecutionPlan plan, long checkedNanos) {
+    }
+}
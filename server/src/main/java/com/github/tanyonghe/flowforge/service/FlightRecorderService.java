@@ -0,0 +1,118 @@
+package com.github.tanyonghe.flowforge.service;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// On-demand JFR recordings. Only one recording is kept at a time and every recording is
+// bounded in duration and size, so a forgotten recording cannot fill the disk.
+@Service
+public class FlightRecorderService {
+
+    // Events that capture the environment, system properties and JVM arguments, which hold
+    // secrets such as the JWT key and the Mongo URI
+    static final List<String> REDACTED_EVENTS = List.of(
+            "jdk.InitialEnvironmentVariable", "jdk.InitialSystemProperty", "jdk.JVMInformation");
+
+    private final String settings;
+    private final Duration maxDuration;
+    private final DataSize maxSize;
+
+    private Recording current;
+
+    public FlightRecorderService(
+            @Value("${flowforge.diagnostics.recording.settings:default}") String settings,
+            @Value("${flowforge.diagnostics.recording.max-duration:10m}") Duration maxDuration,
+            @Value("${flowforge.diagnostics.recording.max-size:100MB}") DataSize maxSize) {
+        this.settings = settings;
+        this.maxDuration = maxDuration;
+        this.maxSize = maxSize;
+    }
+
+    public synchronized Map<String, Object> startRecording(Duration duration) throws IOException, ParseException {
+        if (current != null && current.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("Recording " + current.getId() + " is already running");
+        }
+        if (current != null) {
+            current.close();
+        }
+        Duration bounded = duration == null || duration.compareTo(maxDuration) > 0 ? maxDuration : duration;
+        Recording recording = new Recording(recordingSettings(settings));
+        recording.setName("flowforge-" + System.currentTimeMillis());
+        recording.setToDisk(true);
+        recording.setDuration(bounded);
+        recording.setMaxSize(maxSize.toBytes());
+        recording.start();
+        current = recording;
+        return describe(recording);
+    }
+
+    static Map<String, String> recordingSettings(String settings) throws IOException, ParseException {
+        Map<String, String> values = new HashMap<>(Configuration.getConfiguration(settings).getSettings());
+        for (String event : REDACTED_EVENTS) {
+            values.put(event + "#enabled", "false");
+        }
+        return values;
+    }
+
+    public synchronized Map<String, Object> getRecording(long id) {
+        return describe(find(id));
+    }
+
+    public synchronized Map<String, Object> stopRecording(long id) {
+        Recording recording = find(id);
+        if (recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+        }
+        return describe(recording);
+    }
+
+    // Dumps what has been recorded so far; the recording keeps running if it was running
+    public synchronized Path dumpRecording(long id) throws IOException {
+        Recording recording = find(id);
+        Path file = Files.createTempFile(recording.getName(), ".jfr");
+        recording.dump(file);
+        return file;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+    }
+
+    private Recording find(long id) {
+        if (current == null || current.getId() != id || current.getState() == RecordingState.CLOSED) {
+            throw new RuntimeException("Recording not found");
+        }
+        return current;
+    }
+
+    private static Map<String, Object> describe(Recording recording) {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("id", recording.getId());
+        info.put("name", recording.getName());
+        info.put("state", recording.getState().name());
+        info.put("startTime", recording.getStartTime());
+        info.put("duration", recording.getDuration());
+        info.put("maxSize", recording.getMaxSize());
+        info.put("size", recording.getSize());
+        return info;
+    }
+}
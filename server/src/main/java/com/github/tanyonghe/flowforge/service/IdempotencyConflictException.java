@@ -0,0 +1,22 @@
+package com.github.tanyonghe.flowforge.service;
+
+import lombok.Getter;
+
+// A request reused an Idempotency-Key in a way that can't be answered with the stored result
+@Getter
+public class IdempotencyConflictException extends RuntimeException {
+
+    public enum Reason {
+        // The first request with the key is still running elsewhere; retry later
+        IN_PROGRESS,
+        // The key was first used with a different request body
+        REQUEST_MISMATCH
+    }
+
+    private final Reason reason;
+
+    public IdempotencyConflictException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+}
@@ -0,0 +1,237 @@
+package com.github.tanyonghe.flowforge.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.github.tanyonghe.flowforge.model.IdempotencyRecord;
+import com.github.tanyonghe.flowforge.repository.IdempotencyRecordRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+// Runs an action at most once per (scope, Idempotency-Key) and replays its result to retries.
+// Duplicates on this instance join the in-flight call; across instances the first to insert the
+// IN_PROGRESS record runs the action and the others poll for its result. The IN_PROGRESS record's expiry
+// is renewed while the action runs, so only a dead instance lets it lapse. Completed results live in
+// Mongo until the TTL index removes them, fronted by a small LRU of recent ones. If the action throws,
+// the record is deleted so a retry runs it again. If only saving the result fails, the record is deleted
+// too, rather than left IN_PROGRESS for other instances to wait on; the result is still returned and
+// replayed to retries that reach this instance.
+@Service
+public class IdempotencyService {
+
+    private static final ObjectMapper CANONICAL = JsonMapper.builder()
+            .findAndAddModules()
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .build();
+    private static final long MAX_POLL_MILLIS = 1000;
+
+    private final IdempotencyRecordRepository repository;
+    private final long ttlMillis;
+    private final long inProgressTtlMillis;
+    private final long waitMillis;
+    private final int maxCachedEntries;
+    private final LongSupplier clock;
+    private final SingleFlight<String, Completed> inFlight = new SingleFlight<>();
+    private final LinkedHashMap<String, Completed> recent = new LinkedHashMap<>(16, 0.75f, true);
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "idempotency-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public IdempotencyService(IdempotencyRecordRepository repository,
+                              @Value("${flowforge.idempotency.ttl:24h}") Duration ttl,
+                              @Value("${flowforge.idempotency.in-progress-ttl:10m}") Duration inProgressTtl,
+                              @Value("${flowforge.idempotency.wait:30s}") Duration wait,
+                              @Value("${flowforge.idempotency.cache.max-entries:10000}") int maxCachedEntries) {
+        this(repository, ttl, inProgressTtl, wait, maxCachedEntries, System::currentTimeMillis);
+    }
+
+    IdempotencyService(IdempotencyRecordRepository repository, Duration ttl, Duration inProgressTtl,
+                       Duration wait, int maxCachedEntries, LongSupplier clock) {
+        this.repository = repository;
+        this.ttlMillis = ttl.toMillis();
+        this.inProgressTtlMillis = inProgressTtl.toMillis();
+        this.waitMillis = wait.toMillis();
+        this.maxCachedEntries = maxCachedEntries;
+        this.clock = clock;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        heartbeat.shutdownNow();
+    }
+
+    public Map<String, Object> execute(String scope, String key, Object request,
+                                       Supplier<Map<String, Object>> action) {
+        String id = sha256(scope + '\n' + key);
+        String requestHash = sha256(canonicalJson(request));
+        Completed completed = cached(id);
+        if (completed == null) {
+            completed = inFlight.execute(id, () -> executeOnce(id, requestHash, action));
+        }
+        // Also covers joiners of an in-flight call, which may have sent a different body
+        if (!completed.requestHash().equals(requestHash)) {
+            throw new IdempotencyConflictException(IdempotencyConflictException.Reason.REQUEST_MISMATCH,
+                    "Idempotency-Key was already used with a different request body");
+        }
+        return completed.result();
+    }
+
+    private Completed executeOnce(String id, String requestHash, Supplier<Map<String, Object>> action) {
+        Completed cached = cached(id);
+        if (cached != null) {
+            return cached;
+        }
+        while (true) {
+            long now = clock.getAsLong();
+            IdempotencyRecord record = new IdempotencyRecord();
+            record.setId(id);
+            record.setRequestHash(requestHash);
+            record.setStatus(IdempotencyRecord.STATUS_IN_PROGRESS);
+            record.setCreatedAt(new Date(now));
+            record.setExpiresAt(new Date(now + inProgressTtlMillis));
+            try {
+                repository.insert(record);
+            } catch (DuplicateKeyException e) {
+                Completed other = awaitOther(id);
+                if (other != null) {
+                    return other;
+                }
+                // The other attempt failed and released the key; try to take it
+                continue;
+            }
+
+            Map<String, Object> result;
+            ScheduledFuture<?> renewal = renewWhileRunning(id);
+            try {
+                result = action.get();
+            } catch (RuntimeException | Error e) {
+                renewal.cancel(false);
+                repository.deleteById(id);
+                throw e;
+            }
+            renewal.cancel(false);
+            record.setStatus(IdempotencyRecord.STATUS_COMPLETED);
+            record.setResult(result);
+            record.setExpiresAt(new Date(clock.getAsLong() + ttlMillis));
+            try {
+                repository.save(record);
+            } catch (RuntimeException e) {
+                release(id);
+            }
+            return remember(id, new Completed(requestHash, result, record.getExpiresAt().getTime()));
+        }
+    }
+
+    private void release(String id) {
+        try {
+            repository.deleteById(id);
+        } catch (RuntimeException e) {
+            // Renewals have stopped, so the record lapses after in-progress-ttl anyway
+        }
+    }
+
+    // Pushes the IN_PROGRESS expiry forward a few times per TTL, however long the action takes
+    private ScheduledFuture<?> renewWhileRunning(String id) {
+        long periodMillis = Math.max(1, inProgressTtlMillis / 3);
+        return heartbeat.scheduleAtFixedRate(() -> {
+            try {
+                repository.renewInProgress(id, new Date(clock.getAsLong() + inProgressTtlMillis));
+            } catch (RuntimeException e) {
+                // Retried on the next beat; the expiry still has two periods left
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Null if the record disappeared, i.e. the attempt holding it failed or expired
+    private Completed awaitOther(String id) {
+        long deadline = clock.getAsLong() + waitMillis;
+        long pollMillis = 50;
+        while (true) {
+            Optional<IdempotencyRecord> found = repository.findById(id);
+            if (found.isEmpty()) {
+                return null;
+            }
+            IdempotencyRecord record = found.get();
+            if (IdempotencyRecord.STATUS_COMPLETED.equals(record.getStatus())) {
+                return remember(id, new Completed(record.getRequestHash(), record.getResult(),
+                        record.getExpiresAt().getTime()));
+            }
+            if (clock.getAsLong() >= deadline) {
+                throw new IdempotencyConflictException(IdempotencyConflictException.Reason.IN_PROGRESS,
+                        "A request with this Idempotency-Key is still in progress");
+            }
+            try {
+                Thread.sleep(pollMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IdempotencyConflictException(IdempotencyConflictException.Reason.IN_PROGRESS,
+                        "Interrupted while waiting for a request with this Idempotency-Key");
+            }
+            pollMillis = Math.min(pollMillis * 2, MAX_POLL_MILLIS);
+        }
+    }
+
+    private Completed cached(String id) {
+        synchronized (recent) {
+            Completed completed = recent.get(id);
+            if (completed != null && completed.expiresAtMillis() <= clock.getAsLong()) {
+                recent.remove(id);
+                return null;
+            }
+            return completed;
+        }
+    }
+
+    private Completed remember(String id, Completed completed) {
+        synchronized (recent) {
+            recent.put(id, completed);
+            if (recent.size() > maxCachedEntries) {
+                recent.remove(recent.keySet().iterator().next());
+            }
+        }
+        return completed;
+    }
+
+    private static String canonicalJson(Object request) {
+        try {
+            return CANONICAL.writeValueAsString(request);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Request body can't be serialized", e);
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Completed(String requestHash, Map<String, Object> result, long expiresAtMillis) {
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.tanyonghe.flowforge.service;
+
+import com.github.tanyonghe.flowforge.model.SchedulerLease;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.util.Date;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+// Leader election on a single Mongo document. Acquiring and renewing are the same atomic upsert,
+// which only matches when the lease is free, expired or already ours; if another replica holds it
+// the upsert collides on _id and we stay a follower. Leadership is trusted locally only until a
+// safety margin before the lease runs out, so a paused leader steps down before anyone can take over.
+class LeaderLease {
+
+    private final MongoTemplate mongoTemplate;
+    private final String name;
+    private final String owner;
+    private final long durationMillis;
+    private volatile long leaderUntilMillis;
+
+    LeaderLease(MongoTemplate mongoTemplate, String name, String owner, Duration duration) {
+        this.mongoTemplate = mongoTemplate;
+        this.name = name;
+        this.owner = owner;
+        this.durationMillis = duration.toMillis();
+    }
+
+    boolean tryAcquire() {
+        long now = System.currentTimeMillis();
+        Query query = new Query(where("_id").is(name)
+                .orOperator(where("owner").is(owner), where("expiresAt").lt(new Date(now))));
+        Update update = new Update().set("owner", owner).set("expiresAt", new Date(now + durationMillis));
+        try {
+            mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().upsert(true).returnNew(true),
+                    SchedulerLease.class);
+            leaderUntilMillis = now + durationMillis * 2 / 3;
+            return true;
+        } catch (DuplicateKeyException e) {
+            leaderUntilMillis = 0;
+            return false;
+        }
+    }
+
+    boolean isLeader() {
+        return System.currentTimeMillis() < leaderUntilMillis;
+    }
+
+    // Lets another replica take over immediately instead of waiting out the lease
+    void release() {
+        if (leaderUntilMillis > 0) {
+            leaderUntilMillis = 0;
+            mongoTemplate.remove(new Query(where("_id").is(name).and("owner").is(owner)), SchedulerLease.class);
+        }
+    }
+
+    String getOwner() {
+        return owner;
+    }
+}
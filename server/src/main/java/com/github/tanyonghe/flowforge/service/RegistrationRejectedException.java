@@ -0,0 +1,10 @@
+package com.github.tanyonghe.flowforge.service;
+
+// A registration the caller has to fix, such as a taken username. The message is fixed text that is
+// safe to return to the client; database and driver errors never end up in it.
+public class RegistrationRejectedException extends RuntimeException {
+
+    public RegistrationRejectedException(String message) {
+        super(message);
+    }
+}
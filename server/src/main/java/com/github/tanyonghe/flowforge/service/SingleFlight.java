@@ -0,0 +1,63 @@
+package com.github.tanyonghe.flowforge.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+// Coalesces concurrent calls for the same key: the first caller runs the loader on its own thread
+// and later callers wait for and share its result (or exception). Nothing is cached once the call
+// completes, so a read that starts after a load finishes always goes to the database.
+final class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final UnaryOperator<V> copy;
+
+    // For immutable values, which callers can safely share
+    SingleFlight() {
+        this(UnaryOperator.identity());
+    }
+
+    // For mutable values: the caller that ran the loader keeps the loaded value, every waiter gets a copy
+    SingleFlight(UnaryOperator<V> copy) {
+        this.copy = copy;
+    }
+
+    V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            return copy.apply(await(existing));
+        }
+        try {
+            V value = loader.get();
+            call.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    // Called after a write so that later readers don't join a load that may predate it
+    void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    private static <V> V await(CompletableFuture<V> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.tanyonghe.flowforge.service;
+
+import com.github.tanyonghe.flowforge.model.TaskTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Immutable snapshot of the template catalog with prebuilt lookups. Writers derive a new snapshot
+// and swap it in; readers never lock and always see a consistent catalog.
+final class TaskTemplateCatalog {
+
+    private final Map<String, TaskTemplate> byId;
+    private final List<TaskTemplate> all;
+    private final List<TaskTemplate> active;
+    private final Map<String, List<TaskTemplate>> byType;
+    private final Map<String, List<TaskTemplate>> byCategory;
+    // Time of the last full load from Mongo; incremental updates keep it
+    private final long loadedAtNanos;
+
+    private TaskTemplateCatalog(Map<String, TaskTemplate> byId, long loadedAtNanos) {
+        this.byId = byId;
+        this.all = List.copyOf(byId.values());
+        this.loadedAtNanos = loadedAtNanos;
+        List<TaskTemplate> activeTemplates = new ArrayList<>();
+        Map<String, List<TaskTemplate>> types = new LinkedHashMap<>();
+        Map<String, List<TaskTemplate>> categories = new LinkedHashMap<>();
+        for (TaskTemplate template : all) {
+            if (Boolean.TRUE.equals(template.getIsActive())) {
+                activeTemplates.add(template);
+            }
+            if (template.getType() != null) {
+                types.computeIfAbsent(template.getType(), key -> new ArrayList<>()).add(template);
+            }
+            if (template.getCategory() != null) {
+                categories.computeIfAbsent(template.getCategory(), key -> new ArrayList<>()).add(template);
+            }
+        }
+        this.active = List.copyOf(activeTemplates);
+        this.byType = freeze(types);
+        this.byCategory = freeze(categories);
+    }
+
+    static TaskTemplateCatalog load(Collection<TaskTemplate> templates) {
+        Map<String, TaskTemplate> byId = new LinkedHashMap<>();
+        for (TaskTemplate template : templates) {
+            byId.put(template.getId(), template);
+        }
+        return new TaskTemplateCatalog(byId, System.nanoTime());
+    }
+
+    TaskTemplateCatalog with(TaskTemplate template) {
+        Map<String, TaskTemplate> copy = new LinkedHashMap<>(byId);
+        copy.put(template.getId(), template);
+        return new TaskTemplateCatalog(copy, loadedAtNanos);
+    }
+
+    TaskTemplateCatalog without(String id) {
+        if (!byId.containsKey(id)) {
+            return this;
+        }
+        Map<String, TaskTemplate> copy = new LinkedHashMap<>(byId);
+        copy.remove(id);
+        return new TaskTemplateCatalog(copy, loadedAtNanos);
+    }
+
+    boolean isOlderThan(Duration maxAge) {
+        return System.nanoTime() - loadedAtNanos >= maxAge.toNanos();
+    }
+
+    Optional<TaskTemplate> findById(String id) {
+        return Optional.ofNullable(byId.get(id));
+    }
+
+    List<TaskTemplate> getAll() {
+        return all;
+    }
+
+    List<TaskTemplate> getActive() {
+        return active;
+    }
+
+    List<TaskTemplate> getByType(String type) {
+        return byType.getOrDefault(type, List.of());
+    }
+
+    List<TaskTemplate> getByCategory(String category) {
+        return byCategory.getOrDefault(category, List.of());
+    }
+
+    private static Map<String, List<TaskTemplate>> freeze(Map<String, List<TaskTemplate>> groups) {
+        Map<String, List<TaskTemplate>> frozen = new LinkedHashMap<>();
+        groups.forEach((key, templates) -> frozen.put(key, List.copyOf(templates)));
+        return Map.copyOf(frozen);
+    }
+}
@@ -3,41 +3,66 @@ package com.github.tanyonghe.flowforge.service;
 import com.github.tanyonghe.flowforge.model.TaskTemplate;
 import com.github.tanyonghe.flowforge.repository.TaskTemplateRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.UnaryOperator;
 
+// Reads are served from an in-memory catalog snapshot. Local writes swap in an updated snapshot;
+// a full reload every refresh interval picks up changes made by other instances.
 @Service
 public class TaskTemplateService {
     
     @Autowired
     private TaskTemplateRepository taskTemplateRepository;
     
+    @Value("${flowforge.templates.catalog.refresh-interval:30s}")
+    private Duration refreshInterval = Duration.ofSeconds(30);
+    
+    private volatile TaskTemplateCatalog catalog;
+    private final Object catalogLock = new Object();
+    
     public List<TaskTemplate> getAllTaskTemplates() {
-        return taskTemplateRepository.findAll();
+        return catalog().getAll();
     }
     
     public Optional<TaskTemplate> getTaskTemplateById(String id) {
-        return taskTemplateRepository.findById(id);
+        Optional<TaskTemplate> cached = catalog().findById(id);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        // Read through on a miss, e.g. a template created on another instance since the last reload
+        Optional<TaskTemplate> loaded = taskTemplateRepository.findById(id);
+        loaded.ifPresent(template -> swapCatalog(current -> current.with(template)));
+        return loaded;
+    }
+    
+    // Identity changes whenever the snapshot is replaced, so anything compiled against templates can tell it may be stale
+    public Object getCatalogVersion() {
+        return catalog();
     }
     
     public List<TaskTemplate> getTaskTemplatesByType(String type) {
-        return taskTemplateRepository.findByType(type);
+        return catalog().getByType(type);
     }
     
     public List<TaskTemplate> getActiveTaskTemplates() {
-        return taskTemplateRepository.findByIsActiveTrue();
+        return catalog().getActive();
     }
     
     public List<TaskTemplate> getTaskTemplatesByCategory(String category) {
-        return taskTemplateRepository.findByCategory(category);
+        return catalog().getByCategory(category);
     }
     
     public TaskTemplate createTaskTemplate(TaskTemplate taskTemplate) {
         if (taskTemplate.getIsActive() == null) {
             taskTemplate.setIsActive(true);
         }
-        return taskTemplateRepository.save(taskTemplate);
+        TaskTemplate saved = taskTemplateRepository.save(taskTemplate);
+        swapCatalog(current -> current.with(saved));
+        return saved;
     }
     
     public TaskTemplate updateTaskTemplate(String id, TaskTemplate taskTemplate) {
@@ -53,12 +78,38 @@ public class TaskTemplateService {
             existingTemplate.setIsActive(taskTemplate.getIsActive());
             existingTemplate.setVersion(taskTemplate.getVersion());
             existingTemplate.setMetadata(taskTemplate.getMetadata());
-            return taskTemplateRepository.save(existingTemplate);
+            TaskTemplate saved = taskTemplateRepository.save(existingTemplate);
+            swapCatalog(current -> current.with(saved));
+            return saved;
         }
         throw new RuntimeException("TaskTemplate not found with id: " + id);
     }
     
     public void deleteTaskTemplate(String id) {
         taskTemplateRepository.deleteById(id);
+        swapCatalog(current -> current.without(id));
+    }
+    
+    private TaskTemplateCatalog catalog() {
+        TaskTemplateCatalog current = catalog;
+        if (current != null && !current.isOlderThan(refreshInterval)) {
+            return current;
+        }
+        synchronized (catalogLock) {
+            // Another thread may have reloaded while we waited
+            if (catalog == current) {
+                catalog = TaskTemplateCatalog.load(taskTemplateRepository.findAll());
+            }
+            return catalog;
+        }
+    }
+    
+    // Serialized with reloads, so a write can't be overwritten by a reload that read Mongo before it
+    private void swapCatalog(UnaryOperator<TaskTemplateCatalog> update) {
+        synchronized (catalogLock) {
+            if (catalog != null) {
+                catalog = update.apply(catalog);
+            }
+        }
     }
-} 
\ No newline at end of file
+}
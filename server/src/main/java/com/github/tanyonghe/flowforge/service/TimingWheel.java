@@ -0,0 +1,103 @@
+package com.github.tanyonghe.flowforge.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Hierarchical timing wheel: level i has SLOTS buckets of tickMillis * SLOTS^i each. Adding and
+// expiring an item are O(1) no matter how many are pending; far-off items sit in a coarse bucket
+// and cascade down a level when its time comes. Deadlines are rounded up to a tick, so items fire
+// at or after their deadline, never before. Items past the top level wait in an overflow list.
+final class TimingWheel<T> {
+
+    private static final int SLOTS = 64;
+    private static final int LEVELS = 4;
+
+    private final long tickMillis;
+    private final long[] levelTicks = new long[LEVELS];
+    private final List<List<Entry<T>>> buckets = new ArrayList<>(LEVELS * SLOTS);
+    private final List<Entry<T>> overflow = new ArrayList<>();
+    private long currentTick;
+    private int size;
+
+    TimingWheel(long tickMillis, long startMillis) {
+        this.tickMillis = tickMillis;
+        long ticks = 1;
+        for (int level = 0; level < LEVELS; level++) {
+            levelTicks[level] = ticks;
+            ticks *= SLOTS;
+        }
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    // Returns true if the deadline has already passed, in which case the item is not stored
+    synchronized boolean add(T item, long deadlineMillis) {
+        long deadlineTick = Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis);
+        if (deadlineTick <= currentTick) {
+            return true;
+        }
+        place(new Entry<>(item, deadlineTick));
+        size++;
+        return false;
+    }
+
+    // Moves time forward to nowMillis and returns the items that came due, in deadline order
+    synchronized List<T> advance(long nowMillis) {
+        long target = nowMillis / tickMillis;
+        List<T> due = new ArrayList<>();
+        while (currentTick < target) {
+            currentTick++;
+            // Highest level first, so cascaded items can land in the level-0 bucket drained below
+            if (currentTick % (levelTicks[LEVELS - 1] * SLOTS) == 0) {
+                List<Entry<T>> waiting = new ArrayList<>(overflow);
+                overflow.clear();
+                cascade(waiting, due);
+            }
+            for (int level = LEVELS - 1; level >= 0; level--) {
+                if (currentTick % levelTicks[level] == 0) {
+                    List<Entry<T>> bucket = bucket(level, currentTick);
+                    List<Entry<T>> entries = new ArrayList<>(bucket);
+                    bucket.clear();
+                    cascade(entries, due);
+                }
+            }
+        }
+        return due;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private void cascade(List<Entry<T>> entries, List<T> due) {
+        for (Entry<T> entry : entries) {
+            if (entry.deadlineTick <= currentTick) {
+                due.add(entry.item);
+                size--;
+            } else {
+                place(entry);
+            }
+        }
+    }
+
+    // The lowest level whose range still covers the deadline; it always lands in a future bucket there
+    private void place(Entry<T> entry) {
+        for (int level = 0; level < LEVELS; level++) {
+            long distance = entry.deadlineTick / levelTicks[level] - currentTick / levelTicks[level];
+            if (distance < SLOTS) {
+                bucket(level, entry.deadlineTick).add(entry);
+                return;
+            }
+        }
+        overflow.add(entry);
+    }
+
+    private List<Entry<T>> bucket(int level, long tick) {
+        return buckets.get(level * SLOTS + (int) ((tick / levelTicks[level]) % SLOTS));
+    }
+
+    private record Entry<T>(T item, long deadlineTick) {
+    }
+}
@@ -0,0 +1,176 @@
+package com.github.tanyonghe.flowforge.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tanyonghe.flowforge.dto.BulkUserProvisionResponse;
+import com.github.tanyonghe.flowforge.dto.BulkUserProvisionResponse.RowFailure;
+import com.github.tanyonghe.flowforge.dto.UserProvisionRequest;
+import com.github.tanyonghe.flowforge.model.User;
+import com.mongodb.bulk.BulkWriteError;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+@Service
+public class UserProvisioningService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserProvisioningService.class);
+
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+
+    private final MongoTemplate mongoTemplate;
+    private final PasswordEncoder passwordEncoder;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final int maxRows;
+    private final int maxReportedFailures;
+
+    // BCrypt is CPU-bound, so hashing gets its own pool sized to the machine
+    private final ForkJoinPool hashingPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    public UserProvisioningService(MongoTemplate mongoTemplate,
+                                   PasswordEncoder passwordEncoder,
+                                   ObjectMapper objectMapper,
+                                   @Value("${flowforge.users.bulk.batch-size:500}") int batchSize,
+                                   @Value("${flowforge.users.bulk.max-rows:10000}") int maxRows,
+                                   @Value("${flowforge.users.bulk.max-reported-failures:100}") int maxReportedFailures) {
+        this.mongoTemplate = mongoTemplate;
+        this.passwordEncoder = passwordEncoder;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.maxRows = maxRows;
+        this.maxReportedFailures = maxReportedFailures;
+    }
+
+    public BulkUserProvisionResponse provisionUsers(InputStream ndjson) throws IOException {
+        BulkUserProvisionResponse response = new BulkUserProvisionResponse();
+        List<PendingUser> batch = new ArrayList<>(batchSize);
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8));
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            // Every row costs a BCrypt hash, so one request can't queue more than maxRows of them
+            if (response.getReceived() >= maxRows) {
+                response.setTruncated(true);
+                break;
+            }
+            response.setReceived(response.getReceived() + 1);
+
+            UserProvisionRequest request;
+            try {
+                request = objectMapper.readValue(line, UserProvisionRequest.class);
+            } catch (JsonProcessingException e) {
+                addFailure(response, new RowFailure(lineNumber, null, "Malformed JSON"));
+                continue;
+            }
+
+            String error = validate(request);
+            if (error != null) {
+                addFailure(response, new RowFailure(lineNumber, request.getUsername(), error));
+                continue;
+            }
+
+            batch.add(new PendingUser(lineNumber, request));
+            if (batch.size() >= batchSize) {
+                insertBatch(batch, response);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            insertBatch(batch, response);
+        }
+        return response;
+    }
+
+    private String validate(UserProvisionRequest request) {
+        if (!StringUtils.hasText(request.getUsername())) {
+            return "Username is required";
+        }
+        if (!StringUtils.hasText(request.getPassword())) {
+            return "Password is required";
+        }
+        if (!StringUtils.hasText(request.getEmail())) {
+            return "Email is required";
+        }
+        return null;
+    }
+
+    private void insertBatch(List<PendingUser> batch, BulkUserProvisionResponse response) {
+        // parallelStream() run from inside the pool executes on the pool's workers, not the common pool
+        List<User> users = hashingPool.submit(() -> batch.parallelStream()
+                .map(pending -> toUser(pending.request()))
+                .toList()).join();
+
+        // Unordered, so one duplicate doesn't stop the rest of the batch from being inserted
+        BulkOperations operations = mongoTemplate.bulkOps(BulkMode.UNORDERED, User.class);
+        operations.insert(users);
+        try {
+            response.setCreated(response.getCreated() + operations.execute().getInsertedCount());
+        } catch (BulkOperationException e) {
+            response.setCreated(response.getCreated() + e.getResult().getInsertedCount());
+            for (BulkWriteError error : e.getErrors()) {
+                PendingUser pending = batch.get(error.getIndex());
+                String message;
+                if (error.getCode() == DUPLICATE_KEY_ERROR) {
+                    message = UserService.duplicateUserMessage(error.getMessage());
+                } else {
+                    // Raw driver messages name collections and indexes, so they stay in the log
+                    log.warn("Bulk insert of line {} failed with code {}: {}",
+                            pending.line(), error.getCode(), error.getMessage());
+                    message = "Could not create user";
+                }
+                addFailure(response, new RowFailure(pending.line(), pending.request().getUsername(), message));
+            }
+        }
+    }
+
+    // Only the first maxReportedFailures rows are listed; failed still counts all of them
+    private void addFailure(BulkUserProvisionResponse response, RowFailure failure) {
+        response.setFailed(response.getFailed() + 1);
+        if (response.getFailures().size() < maxReportedFailures) {
+            response.getFailures().add(failure);
+        }
+    }
+
+    private User toUser(UserProvisionRequest request) {
+        User user = new User(
+            request.getUsername(),
+            request.getEmail(),
+            passwordEncoder.encode(request.getPassword()),
+            "USER" // Bulk provisioning never grants elevated roles
+        );
+        user.setFirstName(request.getFirstName());
+        user.setLastName(request.getLastName());
+        return user;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        hashingPool.shutdown();
+    }
+
+    private record PendingUser(int line, UserProvisionRequest request) {
+    }
+}
@@ -58,6 +58,18 @@ public class UserService implements UserDetailsService {
     }
     
     public User createUser(User user) {
-        return userRepository.save(user);
+        return userRepository.insert(user);
     }
-} 
\ No newline at end of file
+    
+    // Maps a Mongo duplicate key error on the unique username/email indexes to a user-facing message
+    static String duplicateUserMessage(String errorMessage) {
+        String message = String.valueOf(errorMessage);
+        if (message.contains("index: username")) {
+            return "Username already exists";
+        }
+        if (message.contains("index: email")) {
+            return "Email already exists";
+        }
+        return "User already exists";
+    }
+}
\ No newline at end of file
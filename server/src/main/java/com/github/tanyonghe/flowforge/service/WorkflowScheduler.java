@@ -0,0 +1,260 @@
+package com.github.tanyonghe.flowforge.service;
+
+import com.github.tanyonghe.flowforge.model.Workflow;
+import com.github.tanyonghe.flowforge.model.WorkflowRun;
+import com.github.tanyonghe.flowforge.repository.WorkflowRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Starts runs for workflow schedules. Every replica keeps the next fire of each schedule in a timing
+// wheel, but only the holder of the Mongo lease actually starts runs, so a standby takes over within
+// one lease period. Local saves and deletes update the wheel immediately; a periodic resync of the
+// scheduled workflows picks up changes made on other replicas. A schedule whose previous run is still
+// going skips that fire rather than piling up runs.
+@Service
+@ConditionalOnProperty(name = "flowforge.scheduler.enabled", havingValue = "true", matchIfMissing = true)
+public class WorkflowScheduler {
+
+    static final String FIRES = "flowforge.scheduler.fires";
+    private static final String LEASE_NAME = "workflow-scheduler";
+
+    private final WorkflowRepository workflowRepository;
+    private final WorkflowService workflowService;
+    private final LeaderLease lease;
+    private final LongSupplier clock;
+    private final long tickMillis;
+    private final long leaseCheckMillis;
+    private final long resyncMillis;
+    private final Executor fireExecutor;
+    private final TimingWheel<Fire> wheel;
+
+    private final Map<String, Registration> registrations = new ConcurrentHashMap<>();
+    private final AtomicLong generations = new AtomicLong();
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+    private final Counter completed;
+    private final Counter failed;
+    private final Counter skipped;
+
+    private ScheduledExecutorService ticker;
+    private long nextLeaseCheck;
+    private long nextResync;
+
+    @Autowired
+    public WorkflowScheduler(WorkflowRepository workflowRepository,
+                             WorkflowService workflowService,
+                             MongoTemplate mongoTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${flowforge.scheduler.tick:1s}") Duration tick,
+                             @Value("${flowforge.scheduler.lease-duration:30s}") Duration leaseDuration,
+                             @Value("${flowforge.scheduler.resync-interval:60s}") Duration resyncInterval,
+                             @Value("${flowforge.scheduler.fire-threads:4}") int fireThreads) {
+        this(workflowRepository, workflowService,
+                new LeaderLease(mongoTemplate, LEASE_NAME, ownerId(), leaseDuration),
+                meterRegistry, System::currentTimeMillis, tick, leaseDuration, resyncInterval,
+                Executors.newFixedThreadPool(fireThreads, daemonThreads("workflow-scheduler-fire-")));
+    }
+
+    WorkflowScheduler(WorkflowRepository workflowRepository, WorkflowService workflowService, LeaderLease lease,
+                      MeterRegistry meterRegistry, LongSupplier clock, Duration tick, Duration leaseDuration,
+                      Duration resyncInterval, Executor fireExecutor) {
+        this.workflowRepository = workflowRepository;
+        this.workflowService = workflowService;
+        this.lease = lease;
+        this.clock = clock;
+        this.tickMillis = tick.toMillis();
+        // Renewing three times per lease leaves two chances to retry before it can expire
+        this.leaseCheckMillis = leaseDuration.toMillis() / 3;
+        this.resyncMillis = resyncInterval.toMillis();
+        this.fireExecutor = fireExecutor;
+        this.wheel = new TimingWheel<>(tickMillis, clock.getAsLong());
+        this.completed = fireCounter(meterRegistry, "completed");
+        this.failed = fireCounter(meterRegistry, "failed");
+        this.skipped = fireCounter(meterRegistry, "skipped");
+    }
+
+    @PostConstruct
+    void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(daemonThreads("workflow-scheduler-tick-"));
+        ticker.scheduleAtFixedRate(() -> tick(clock.getAsLong()), 0, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+        if (fireExecutor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+        try {
+            lease.release();
+        } catch (RuntimeException e) {
+            // The lease simply expires
+        }
+    }
+
+    public void workflowSaved(Workflow workflow) {
+        register(workflow, clock.getAsLong());
+    }
+
+    public void workflowDeleted(String id) {
+        // Kept as an empty registration so a resync that read the workflow before the delete can't revive it
+        registrations.put(id, new Registration(null, generations.incrementAndGet(), List.of(), clock.getAsLong()));
+    }
+
+    boolean isLeader() {
+        return lease.isLeader();
+    }
+
+    int pendingFires() {
+        return wheel.size();
+    }
+
+    // Runs on the ticker thread only. Failures are swallowed: an exception would cancel the ticker for good.
+    void tick(long now) {
+        if (now >= nextLeaseCheck) {
+            nextLeaseCheck = now + leaseCheckMillis;
+            try {
+                lease.tryAcquire();
+            } catch (RuntimeException e) {
+                // Mongo unreachable; isLeader() lapses on its own before anyone else can take over
+            }
+        }
+        if (now >= nextResync) {
+            nextResync = now + resyncMillis;
+            try {
+                resync(now);
+            } catch (RuntimeException e) {
+                // Retried at the next resync; the wheel keeps firing what it already has
+            }
+        }
+        for (Fire fire : wheel.advance(now)) {
+            onDue(fire, now);
+        }
+    }
+
+    private void resync(long now) {
+        Set<String> scheduled = new HashSet<>();
+        for (Workflow workflow : workflowRepository.findScheduled()) {
+            scheduled.add(workflow.getId());
+            Registration existing = registrations.get(workflow.getId());
+            // Local saves made while the query ran are newer than what it returned
+            if (existing == null || (existing.registeredAt() < now
+                    && !Objects.equals(existing.revision(), workflow.getRevision()))) {
+                register(workflow, now);
+            }
+        }
+        registrations.entrySet().removeIf(entry ->
+                !scheduled.contains(entry.getKey()) && entry.getValue().registeredAt() < now);
+    }
+
+    private void register(Workflow workflow, long now) {
+        List<Workflow.Schedule> schedules = workflow.getSchedules() != null
+                ? List.copyOf(workflow.getSchedules()) : List.of();
+        // A new generation orphans the wheel entries of the previous definition; they're dropped when due
+        Registration registration = new Registration(workflow.getRevision(), generations.incrementAndGet(),
+                schedules, now);
+        registrations.put(workflow.getId(), registration);
+        for (int i = 0; i < schedules.size(); i++) {
+            if (schedules.get(i).isEnabled()) {
+                scheduleNext(workflow.getId(), registration, i, now, now);
+            }
+        }
+    }
+
+    private void scheduleNext(String workflowId, Registration registration, int index, long previous, long now) {
+        long next = WorkflowSchedules.nextFire(registration.schedules().get(index), previous, now);
+        if (next < 0) {
+            return;
+        }
+        Fire fire = new Fire(workflowId, registration.generation(), index, next);
+        if (wheel.add(fire, next)) {
+            onDue(fire, now);
+        }
+    }
+
+    private void onDue(Fire fire, long now) {
+        Registration registration = registrations.get(fire.workflowId());
+        if (registration == null || registration.generation() != fire.generation()) {
+            return;
+        }
+        if (lease.isLeader()) {
+            start(fire.workflowId(), fire.index(), registration.schedules().get(fire.index()));
+        }
+        scheduleNext(fire.workflowId(), registration, fire.index(), fire.deadline(), now);
+    }
+
+    private void start(String workflowId, int index, Workflow.Schedule schedule) {
+        String key = workflowId + "#" + index;
+        if (!running.add(key)) {
+            skipped.increment();
+            return;
+        }
+        try {
+            fireExecutor.execute(() -> {
+                try {
+                    Map<String, Object> result = workflowService.executeWorkflow(workflowId, schedule.getInput());
+                    (WorkflowRun.STATUS_FAILED.equals(result.get("status")) ? failed : completed).increment();
+                } catch (RuntimeException e) {
+                    failed.increment();
+                } finally {
+                    running.remove(key);
+                }
+            });
+        } catch (RuntimeException e) {
+            // Executor shut down or saturated
+            running.remove(key);
+            skipped.increment();
+        }
+    }
+
+    private static Counter fireCounter(MeterRegistry registry, String outcome) {
+        return Counter.builder(FIRES).tag("outcome", outcome).register(registry);
+    }
+
+    private static String ownerId() {
+        return ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID();
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private record Registration(String revision, long generation, List<Workflow.Schedule> schedules,
+                                long registeredAt) {
+    }
+
+    private record Fire(String workflowId, long generation, int index, long deadline) {
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.tanyonghe.flowforge.service;
+
+import com.github.tanyonghe.flowforge.model.Workflow;
+import org.springframework.scheduling.support.CronExpression;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+final class WorkflowSchedules {
+
+    // Anything tighter is better served by a loop inside a task than by the scheduler
+    static final long MIN_INTERVAL_SECONDS = 1;
+
+    private WorkflowSchedules() {
+    }
+
+    static List<String> validate(Workflow workflow) {
+        List<String> errors = new ArrayList<>();
+        if (workflow.getSchedules() == null) {
+            return errors;
+        }
+        for (int i = 0; i < workflow.getSchedules().size(); i++) {
+            Workflow.Schedule schedule = workflow.getSchedules().get(i);
+            String prefix = "Schedule " + i + ": ";
+            if (schedule == null) {
+                errors.add(prefix + "must not be null");
+                continue;
+            }
+            if ((schedule.getCron() == null) == (schedule.getIntervalSeconds() == null)) {
+                errors.add(prefix + "set exactly one of cron and intervalSeconds");
+            } else if (schedule.getCron() != null && !CronExpression.isValidExpression(schedule.getCron())) {
+                errors.add(prefix + "invalid cron expression '" + schedule.getCron() + "'");
+            } else if (schedule.getIntervalSeconds() != null && schedule.getIntervalSeconds() < MIN_INTERVAL_SECONDS) {
+                errors.add(prefix + "intervalSeconds must be at least " + MIN_INTERVAL_SECONDS);
+            }
+            if (schedule.getZone() != null) {
+                try {
+                    ZoneId.of(schedule.getZone());
+                } catch (DateTimeException e) {
+                    errors.add(prefix + "unknown zone '" + schedule.getZone() + "'");
+                }
+            }
+        }
+        return errors;
+    }
+
+    // The first fire time strictly after nowMillis, or -1 if there is none. Intervals stay aligned to
+    // previousMillis, so a late tick doesn't shift later fires; missed fires are skipped, not replayed.
+    static long nextFire(Workflow.Schedule schedule, long previousMillis, long nowMillis) {
+        if (schedule.getIntervalSeconds() != null) {
+            long interval = schedule.getIntervalSeconds() * 1000;
+            long elapsed = Math.max(0, nowMillis - previousMillis);
+            return previousMillis + (elapsed / interval + 1) * interval;
+        }
+        ZoneId zone = schedule.getZone() != null ? ZoneId.of(schedule.getZone()) : ZoneOffset.UTC;
+        ZonedDateTime next = CronExpression.parse(schedule.getCron())
+                .next(ZonedDateTime.ofInstant(Instant.ofEpochMilli(nowMillis), zone));
+        return next != null ? next.toInstant().toEpochMilli() : -1;
+    }
+}
@@ -1,53 +1,234 @@
 package com.github.tanyonghe.flowforge.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.github.tanyonghe.flowforge.engine.ExecutionPlan;
+import com.github.tanyonghe.flowforge.engine.OutputStore;
+import com.github.tanyonghe.flowforge.engine.WorkflowExecutor;
+import com.github.tanyonghe.flowforge.engine.WorkflowGraphAnalyzer;
+import com.github.tanyonghe.flowforge.engine.WorkflowValidationException;
 import com.github.tanyonghe.flowforge.model.Workflow;
+import com.github.tanyonghe.flowforge.model.WorkflowRun;
+import com.github.tanyonghe.flowforge.model.WorkflowRunTrace;
 import com.github.tanyonghe.flowforge.repository.WorkflowRepository;
+import com.github.tanyonghe.flowforge.repository.WorkflowRunRepository;
+import com.github.tanyonghe.flowforge.repository.WorkflowRunTraceRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class WorkflowService {
+    private static final ObjectMapper COPIER = JsonMapper.builder().findAndAddModules().build();
+
     private final WorkflowRepository workflowRepository;
+    private final WorkflowRunRepository workflowRunRepository;
+    private final WorkflowRunTraceRepository workflowRunTraceRepository;
+    private final WorkflowExecutor workflowExecutor;
+    private final OutputStore outputStore;
+    private final ExecutionPlanCache executionPlanCache;
+    // Absent when flowforge.scheduler.enabled is false; a provider because the scheduler runs workflows through us
+    private final ObjectProvider<WorkflowScheduler> workflowScheduler;
+
+    // Concurrent identical reads share one Mongo query. Workflows are mutable, so callers that joined
+    // another's query get their own copies.
+    private final SingleFlight<String, Optional<Workflow>> workflowReads =
+            new SingleFlight<>(workflow -> workflow.map(WorkflowService::copy));
 
     public Workflow createWorkflow(Workflow workflow) {
-        return workflowRepository.save(workflow);
+        analyze(workflow);
+        Workflow saved = workflowRepository.save(workflow);
+        workflowScheduler.ifAvailable(scheduler -> scheduler.workflowSaved(saved));
+        return saved;
     }
 
-    public List<Workflow> getAllWorkflows() {
-        return workflowRepository.findAll();
+    // Backed by a Mongo cursor; the caller must close the stream
+    public Stream<Workflow> getAllWorkflows() {
+        return workflowRepository.streamAll();
     }
 
     public Optional<Workflow> getWorkflowById(String id) {
-        return workflowRepository.findById(id);
+        return workflowReads.execute(id, () -> workflowRepository.findById(id));
     }
 
     public Workflow updateWorkflow(String id, Workflow workflow) {
         workflow.setId(id);
-        return workflowRepository.save(workflow);
+        analyze(workflow);
+        Workflow saved = workflowRepository.save(workflow);
+        executionPlanCache.evict(id);
+        workflowReads.forget(id);
+        workflowScheduler.ifAvailable(scheduler -> scheduler.workflowSaved(saved));
+        return saved;
     }
 
     public void deleteWorkflow(String id) {
         workflowRepository.deleteById(id);
+        executionPlanCache.evict(id);
+        workflowReads.forget(id);
+        workflowScheduler.ifAvailable(scheduler -> scheduler.workflowDeleted(id));
+    }
+
+    // Throws WorkflowValidationException before anything is written
+    private void analyze(Workflow workflow) {
+        workflow.setGraph(WorkflowGraphAnalyzer.analyze(workflow));
+        List<String> scheduleErrors = WorkflowSchedules.validate(workflow);
+        if (!scheduleErrors.isEmpty()) {
+            throw new WorkflowValidationException(scheduleErrors);
+        }
+        workflow.setRevision(UUID.randomUUID().toString());
     }
 
     public Map<String, Object> executeWorkflow(String id, Map<String, Object> input) {
         Workflow workflow = getWorkflowById(id)
             .orElseThrow(() -> new RuntimeException("Workflow not found"));
 
-        // TODO: Implement workflow execution logic
-        // This will be implemented in the next step
-        return Map.of("status", "pending", "message", "Workflow execution not yet implemented");
+        ExecutionPlan plan = executionPlanCache.getPlan(workflow);
+        WorkflowRun run = workflowExecutor.execute(plan, input).join();
+        return saveRun(run, workflow);
+    }
+
+    // Re-runs the named task (or every task that didn't complete) and everything downstream of it,
+    // reusing the stored outputs of the rest. Empty if the run doesn't exist.
+    public Optional<Map<String, Object>> rerunWorkflow(String runId, String from) {
+        Optional<WorkflowRun> found = getRunById(runId);
+        if (found.isEmpty()) {
+            return Optional.empty();
+        }
+        WorkflowRun previous = found.get();
+        Workflow workflow = getWorkflowById(previous.getWorkflowId())
+            .orElseThrow(() -> new IllegalStateException("Workflow " + previous.getWorkflowId() + " no longer exists"));
+        if (previous.getWorkflowRevision() != null && !previous.getWorkflowRevision().equals(workflow.getRevision())) {
+            throw new IllegalStateException("Workflow has changed since run " + runId + "; start a new run instead");
+        }
+        ExecutionPlan plan = executionPlanCache.getPlan(workflow);
+
+        Map<String, WorkflowRun.TaskRun> previousTasks = new HashMap<>();
+        for (WorkflowRun.TaskRun task : previous.getTasks()) {
+            previousTasks.put(task.getName(), task);
+        }
+        Deque<ExecutionPlan.Node> starts = new ArrayDeque<>();
+        if (from != null) {
+            ExecutionPlan.Node node = plan.getNode(from);
+            if (node == null) {
+                throw new IllegalArgumentException("Unknown task: " + from);
+            }
+            starts.add(node);
+        }
+        for (ExecutionPlan.Node node : plan.getNodes()) {
+            WorkflowRun.TaskRun task = previousTasks.get(node.getName());
+            if (task == null || !WorkflowRun.TaskRun.STATUS_COMPLETED.equals(task.getStatus())) {
+                starts.add(node);
+            } else if (task.getOutputRef() != null && !outputStore.exists(task.getOutputRef())) {
+                // The spilled output outlived its retention; recompute it rather than fail loading it
+                starts.add(node);
+            }
+        }
+        if (starts.isEmpty()) {
+            throw new IllegalArgumentException("Run " + runId + " has no failed tasks; name a task to re-run from");
+        }
+
+        // Whatever is downstream of a re-run task must run again; the complement is closed under predecessors
+        boolean[] rerun = new boolean[plan.size()];
+        while (!starts.isEmpty()) {
+            ExecutionPlan.Node node = starts.poll();
+            if (!rerun[node.getIndex()]) {
+                rerun[node.getIndex()] = true;
+                for (int successor : node.getSuccessors()) {
+                    starts.add(plan.getNode(successor));
+                }
+            }
+        }
+        Map<String, Object> reused = new LinkedHashMap<>();
+        for (ExecutionPlan.Node node : plan.getNodes()) {
+            if (!rerun[node.getIndex()]) {
+                WorkflowRun.TaskRun task = previousTasks.get(node.getName());
+                reused.put(node.getName(), task.getOutputRef() != null ? task.getOutputRef() : task.getOutput());
+            }
+        }
+
+        WorkflowRun run = workflowExecutor.rerun(plan, previous.getInput(), reused, runId).join();
+        return Optional.of(saveRun(run, workflow));
+    }
+
+    private Map<String, Object> saveRun(WorkflowRun run, Workflow workflow) {
+        run.setWorkflowRevision(workflow.getRevision());
+        workflowRunRepository.save(run);
+        if (run.getTrace() != null) {
+            workflowRunTraceRepository.save(run.getTrace());
+        }
+        return toExecutionResult(run);
+    }
+
+    public Optional<WorkflowRun> getRunById(String runId) {
+        return workflowRunRepository.findById(runId);
     }
 
-    public List<Workflow> getWorkflowsByStatus(String status) {
+    public List<WorkflowRun> getRunsByWorkflow(String workflowId) {
+        return workflowRunRepository.findByWorkflowIdOrderByStartedAtDesc(workflowId);
+    }
+
+    // Spilled outputs come back as a stream of uncompressed JSON, inline ones as the stored value.
+    // Throws FileNotFoundException if a spilled output has expired.
+    public Optional<Object> getTaskOutput(String runId, String taskName) throws IOException {
+        Optional<WorkflowRun.TaskRun> task = getRunById(runId).flatMap(run -> run.getTasks().stream()
+            .filter(t -> t.getName().equals(taskName))
+            .findFirst());
+        if (task.isEmpty()) {
+            return Optional.empty();
+        }
+        if (task.get().getOutputRef() != null) {
+            return Optional.of(outputStore.open(task.get().getOutputRef()));
+        }
+        return Optional.ofNullable(task.get().getOutput());
+    }
+
+    public Optional<WorkflowRunTrace> getRunTrace(String runId) {
+        return workflowRunTraceRepository.findById(runId);
+    }
+
+    public Optional<Map<String, Object>> getCriticalPath(String runId) {
+        return getRunTrace(runId).map(CriticalPathAnalyzer::analyze);
+    }
+
+    private Map<String, Object> toExecutionResult(WorkflowRun run) {
+        Map<String, Object> outputs = new LinkedHashMap<>();
+        for (WorkflowRun.TaskRun task : run.getTasks()) {
+            if (WorkflowRun.TaskRun.STATUS_COMPLETED.equals(task.getStatus())) {
+                outputs.put(task.getName(), task.getOutputRef() != null ? task.getOutputRef() : task.getOutput());
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("runId", run.getId());
+        result.put("status", run.getStatus());
+        result.put("outputs", outputs);
+        if (run.getError() != null) {
+            result.put("error", run.getError());
+        }
+        return result;
+    }
+
+    // Both hold an open Mongo cursor: callers must close the stream, e.g. with try-with-resources
+    public Stream<Workflow> getWorkflowsByStatus(String status) {
         return workflowRepository.findByStatus(status);
     }
 
-    public List<Workflow> getWorkflowsByCreator(String creator) {
+    public Stream<Workflow> getWorkflowsByCreator(String creator) {
         return workflowRepository.findByCreatedBy(creator);
     }
-} 
\ No newline at end of file
+
+    // Deep copy through Jackson, so nested task configs aren't shared either
+    static Workflow copy(Workflow workflow) {
+        return COPIER.convertValue(workflow, Workflow.class);
+    }
+}
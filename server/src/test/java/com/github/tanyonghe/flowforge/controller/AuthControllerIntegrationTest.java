@@ -129,7 +129,23 @@ class AuthControllerIntegrationTest {
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(request))
                 .param("email", "new@example.com"))
-                .andExpect(status().isBadRequest());
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Username already exists"));
+    }
+
+    @Test
+    void register_MissingPassword_ReturnsFixedMessage() throws Exception {
+        // Arrange
+        AuthRequest request = new AuthRequest();
+        request.setUsername("newuser");
+
+        // Act & Assert
+        mockMvc.perform(post("/api/auth/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request))
+                .param("email", "new@example.com"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Username, password and email are required"));
     }
 
     @Test
@@ -0,0 +1,150 @@
+package com.github.tanyonghe.flowforge.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SerializedResponseCacheTest {
+
+    private SerializedResponseCache responseCache;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        responseCache = new SerializedResponseCache(new ObjectMapper(), new MappingJackson2CborHttpMessageConverter(), Duration.ofMinutes(1), 10, DataSize.ofBytes(64));
+    }
+
+    @Test
+    void respond_RepeatedRequest_ServesCachedBytesWithStrongEtag() {
+        // Act
+        ResponseEntity<byte[]> first = responseCache.respond("key", request(null), this::load);
+        ResponseEntity<byte[]> second = responseCache.respond("key", request(null), this::load);
+
+        // Assert
+        assertEquals(HttpStatus.OK, second.getStatusCode());
+        assertEquals("[\"a\",\"b\"]", new String(second.getBody()));
+        assertEquals(first.getHeaders().getETag(), second.getHeaders().getETag());
+        assertTrue(second.getHeaders().getETag().startsWith("\""));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void respond_MatchingIfNoneMatch_ReturnsNotModified() {
+        // Arrange
+        String etag = responseCache.respond("key", request(null), this::load).getHeaders().getETag();
+
+        // Act
+        ResponseEntity<byte[]> response = responseCache.respond("key", request(etag), this::load);
+
+        // Assert
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertNull(response.getBody());
+    }
+
+    @Test
+    void respond_LargeBodyAndGzipAccepted_ServesPrecompressedVariant() throws IOException {
+        // Arrange
+        List<String> large = Collections.nCopies(50, "workflow");
+        ServletWebRequest request = request(null);
+        ((MockHttpServletRequest) request.getRequest()).addHeader("Accept-Encoding", "gzip, deflate");
+
+        // Act
+        ResponseEntity<byte[]> gzipped = responseCache.respond("large", request, () -> large);
+        ResponseEntity<byte[]> plain = responseCache.respond("large", request(null), () -> large);
+
+        // Assert
+        assertEquals("gzip", gzipped.getHeaders().getFirst("Content-Encoding"));
+        assertNotEquals(plain.getHeaders().getETag(), gzipped.getHeaders().getETag());
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getBody()))) {
+            assertArrayEquals(plain.getBody(), in.readAllBytes());
+        }
+        assertNull(plain.getHeaders().getFirst("Content-Encoding"));
+    }
+
+    @Test
+    void respond_CborAccepted_ServesCborWithDistinctEtag() throws IOException {
+        // Arrange
+        ServletWebRequest request = request(null);
+        ((MockHttpServletRequest) request.getRequest()).addHeader("Accept", "application/cbor");
+
+        // Act
+        ResponseEntity<byte[]> cbor = responseCache.respond("key", request, this::load);
+        ResponseEntity<byte[]> json = responseCache.respond("key", request(null), this::load);
+
+        // Assert
+        assertEquals(MediaType.APPLICATION_CBOR, cbor.getHeaders().getContentType());
+        assertEquals(List.of("a", "b"), new CBORMapper().readValue(cbor.getBody(), List.class));
+        assertEquals(MediaType.APPLICATION_JSON, json.getHeaders().getContentType());
+        assertNotEquals(json.getHeaders().getETag(), cbor.getHeaders().getETag());
+    }
+
+    @Test
+    void prefersCbor_OnlyWhenRankedAboveJson() {
+        // Act & Assert
+        assertTrue(SerializedResponseCache.prefersCbor("application/cbor"));
+        assertTrue(SerializedResponseCache.prefersCbor("application/cbor, application/json;q=0.5"));
+        assertFalse(SerializedResponseCache.prefersCbor("application/json, application/cbor"));
+        assertFalse(SerializedResponseCache.prefersCbor("*/*"));
+        assertFalse(SerializedResponseCache.prefersCbor(null));
+    }
+
+    @Test
+    void acceptsGzip_HonoursZeroQuality() {
+        // Act & Assert
+        assertTrue(SerializedResponseCache.acceptsGzip("br, gzip;q=0.8"));
+        assertFalse(SerializedResponseCache.acceptsGzip("gzip;q=0"));
+        assertFalse(SerializedResponseCache.acceptsGzip("identity"));
+        assertFalse(SerializedResponseCache.acceptsGzip(null));
+    }
+
+    @Test
+    void respond_AfterEvict_ReloadsBody() {
+        // Arrange
+        responseCache.respond("task-templates:all", request(null), this::load);
+
+        // Act
+        responseCache.evictByPrefix("task-templates:");
+        responseCache.respond("task-templates:all", request(null), this::load);
+
+        // Assert
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void respond_LoaderReturnsNull_ReturnsNull() {
+        // Act & Assert
+        assertNull(responseCache.respond("missing", request(null), () -> null));
+    }
+
+    private List<String> load() {
+        loads.incrementAndGet();
+        return List.of("a", "b");
+    }
+
+    private ServletWebRequest request(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/task-templates");
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
+}
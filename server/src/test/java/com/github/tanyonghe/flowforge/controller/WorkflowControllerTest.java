@@ -1,6 +1,7 @@
 package com.github.tanyonghe.flowforge.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import com.github.tanyonghe.flowforge.model.Workflow;
 import com.github.tanyonghe.flowforge.repository.WorkflowRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -9,14 +10,19 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -50,7 +56,10 @@ class WorkflowControllerTest {
         workflowRepository.save(workflow2);
 
         // Act & Assert
-        mockMvc.perform(get("/api/workflows"))
+        MvcResult streaming = mockMvc.perform(get("/api/workflows"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(streaming))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$").isArray())
                 .andExpect(jsonPath("$[0].name").value("Workflow 1"))
@@ -86,7 +95,10 @@ class WorkflowControllerTest {
         workflowRepository.save(draftWorkflow);
 
         // Act & Assert
-        mockMvc.perform(get("/api/workflows/status/ACTIVE"))
+        MvcResult streaming = mockMvc.perform(get("/api/workflows/status/ACTIVE"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(streaming))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$").isArray())
                 .andExpect(jsonPath("$[0].status").value("ACTIVE"))
@@ -104,13 +116,36 @@ class WorkflowControllerTest {
         workflowRepository.save(workflow2);
 
         // Act & Assert
-        mockMvc.perform(get("/api/workflows/creator/user1"))
+        MvcResult streaming = mockMvc.perform(get("/api/workflows/creator/user1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(streaming))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$").isArray())
                 .andExpect(jsonPath("$[0].createdBy").value("user1"))
                 .andExpect(jsonPath("$[0].name").value("Workflow 1"));
     }
 
+    @Test
+    void getAllWorkflows_AcceptCbor_StreamsCbor() throws Exception {
+        // Arrange
+        workflowRepository.save(createTestWorkflow("Workflow 1"));
+
+        // Act
+        MvcResult streaming = mockMvc.perform(get("/api/workflows").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(streaming))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+
+        // Assert
+        List<?> workflows = new ObjectMapper(new CBORFactory())
+                .readValue(result.getResponse().getContentAsByteArray(), List.class);
+        assertEquals("Workflow 1", ((Map<?, ?>) workflows.get(0)).get("name"));
+    }
+
     @Test
     void createWorkflow_ValidData_ReturnsCreatedWorkflow() throws Exception {
         // Arrange
@@ -204,8 +239,52 @@ class WorkflowControllerTest {
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(input)))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.status").value("pending"))
-                .andExpect(jsonPath("$.message").value("Workflow execution not yet implemented"));
+                .andExpect(jsonPath("$.runId").exists())
+                .andExpect(jsonPath("$.status").value("COMPLETED"));
+    }
+
+    @Test
+    void executeWorkflow_SameIdempotencyKey_ReplaysFirstRun() throws Exception {
+        // Arrange
+        Workflow saved = workflowRepository.save(createTestWorkflow("Idempotent Workflow"));
+        UsernamePasswordAuthenticationToken caller = new UsernamePasswordAuthenticationToken("alice", null, List.of());
+        String body = objectMapper.writeValueAsString(Map.of("param1", "value1"));
+        String first = mockMvc.perform(post("/api/workflows/" + saved.getId() + "/execute")
+                .principal(caller)
+                .header("Idempotency-Key", "retry-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String runId = objectMapper.readTree(first).get("runId").asText();
+
+        // Act & Assert
+        mockMvc.perform(post("/api/workflows/" + saved.getId() + "/execute")
+                .principal(caller)
+                .header("Idempotency-Key", "retry-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.runId").value(runId));
+        mockMvc.perform(post("/api/workflows/" + saved.getId() + "/execute")
+                .principal(caller)
+                .header("Idempotency-Key", "retry-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Map.of("param1", "other"))))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
+    @Test
+    void executeWorkflow_AnonymousIdempotencyKey_ReturnsUnauthorized() throws Exception {
+        // Arrange
+        Workflow saved = workflowRepository.save(createTestWorkflow("Idempotent Workflow"));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/workflows/" + saved.getId() + "/execute")
+                .header("Idempotency-Key", "retry-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Map.of("param1", "value1"))))
+                .andExpect(status().isUnauthorized());
     }
 
     @Test
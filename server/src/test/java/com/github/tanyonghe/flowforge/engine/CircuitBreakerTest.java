@@ -0,0 +1,86 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void record_FailureRateReached_Opens() {
+        // Arrange
+        CircuitBreaker breaker = new CircuitBreaker(50, 4, 4, 1000, 1, clock::get);
+        breaker.record(true);
+        breaker.record(true);
+        breaker.record(false);
+
+        // Act
+        breaker.record(false);
+
+        // Assert
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void record_OldFailuresSlideOutOfWindow_StaysClosed() {
+        // Arrange
+        CircuitBreaker breaker = new CircuitBreaker(50, 4, 4, 1000, 1, clock::get);
+        breaker.record(false);
+        breaker.record(true);
+        breaker.record(true);
+        breaker.record(true);
+
+        // Act
+        breaker.record(false);
+
+        // Assert: the first failure left the window, so it holds one failure in four
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void tryAcquire_AfterOpenDuration_AllowsProbesThenCloses() {
+        // Arrange
+        CircuitBreaker breaker = new CircuitBreaker(50, 2, 2, 1000, 2, clock::get);
+        breaker.record(false);
+        breaker.record(false);
+        clock.set(1000);
+
+        // Act
+        boolean first = breaker.tryAcquire();
+        boolean second = breaker.tryAcquire();
+        boolean third = breaker.tryAcquire();
+        breaker.record(true);
+        breaker.record(true);
+
+        // Assert
+        assertTrue(first);
+        assertTrue(second);
+        assertFalse(third);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void record_ProbeFails_ReopensForAnotherPeriod() {
+        // Arrange
+        CircuitBreaker breaker = new CircuitBreaker(50, 2, 2, 1000, 1, clock::get);
+        breaker.record(false);
+        breaker.record(false);
+        clock.set(1500);
+        assertTrue(breaker.tryAcquire());
+
+        // Act
+        breaker.record(false);
+
+        // Assert
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        clock.set(2000);
+        assertFalse(breaker.tryAcquire());
+        clock.set(2500);
+        assertTrue(breaker.tryAcquire());
+    }
+}
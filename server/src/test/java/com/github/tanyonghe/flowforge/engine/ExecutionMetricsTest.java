@@ -0,0 +1,41 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutionMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutionMetrics metrics = new ExecutionMetrics(registry, Set.of("http")::contains);
+
+    @Test
+    void taskFinished_UnregisteredTypes_ShareUnknownTag() {
+        // Act
+        for (int i = 0; i < 100; i++) {
+            metrics.taskStarted();
+            metrics.taskFinished("type-" + i, 1_000, false, 0);
+        }
+
+        // Assert
+        assertEquals(100, registry.get(ExecutionMetrics.TASK_EXECUTION)
+                .tag("type", ExecutionMetrics.UNKNOWN_TYPE).tag("outcome", "failure").timer().count());
+        assertEquals(1, registry.find(ExecutionMetrics.TASK_EXECUTION).tag("outcome", "failure").timers().size());
+    }
+
+    @Test
+    void memoLookup_RegisteredType_KeepsItsTag() {
+        // Act
+        metrics.memoLookup("http", true);
+        metrics.memoLookup(null, true);
+
+        // Assert
+        assertEquals(1.0, registry.get(ExecutionMetrics.TASK_MEMO).tag("type", "http").tag("result", "hit")
+                .counter().count());
+        assertEquals(1.0, registry.get(ExecutionMetrics.TASK_MEMO).tag("type", ExecutionMetrics.UNKNOWN_TYPE)
+                .tag("result", "hit").counter().count());
+    }
+}
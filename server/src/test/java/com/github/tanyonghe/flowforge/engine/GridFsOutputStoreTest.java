@@ -0,0 +1,121 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tanyonghe.flowforge.model.OutputReference;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsOperations;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GridFsOutputStoreTest {
+
+    @Mock
+    private GridFsOperations gridFsOperations;
+
+    private GridFsOutputStore outputStore;
+
+    @BeforeEach
+    void setUp() {
+        outputStore = new GridFsOutputStore(gridFsOperations, new ObjectMapper(), Duration.ofDays(7), Duration.ofHours(1));
+    }
+
+    @Test
+    void storeThenLoad_RoundTripsCompressedJson() throws Exception {
+        // Arrange
+        Map<String, Object> output = Map.of("rows", List.of("a".repeat(1000), "b".repeat(1000)));
+        ObjectId fileId = new ObjectId();
+        ArgumentCaptor<InputStream> content = ArgumentCaptor.forClass(InputStream.class);
+        ArgumentCaptor<Document> metadata = ArgumentCaptor.forClass(Document.class);
+        when(gridFsOperations.store(content.capture(), eq("run-1/task"), eq("application/json"), metadata.capture()))
+                .thenReturn(fileId);
+
+        // Act
+        OutputReference reference = outputStore.store("run-1", "task", output, 4321);
+
+        // Assert
+        byte[] stored = content.getValue().readAllBytes();
+        assertEquals(fileId.toHexString(), reference.getFileId());
+        assertEquals(4321, reference.getSizeBytes());
+        assertEquals(stored.length, reference.getStoredBytes());
+        assertTrue(stored.length < 2000);
+        byte[] json = new ObjectMapper().writeValueAsBytes(output);
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json)),
+                reference.getContentHash());
+        assertEquals("run-1", metadata.getValue().get("runId"));
+        Date expiresAt = metadata.getValue().get("expiresAt", Date.class);
+        assertTrue(expiresAt.after(new Date(System.currentTimeMillis() + Duration.ofDays(6).toMillis())));
+
+        GridFSFile file = mock(GridFSFile.class);
+        GridFsResource resource = mock(GridFsResource.class);
+        when(gridFsOperations.findOne(any(Query.class))).thenReturn(file);
+        when(gridFsOperations.getResource(file)).thenReturn(resource);
+        when(resource.getInputStream()).thenReturn(new ByteArrayInputStream(stored));
+        assertEquals(output, outputStore.load(reference));
+    }
+
+    @Test
+    void load_MissingFile_ThrowsFileNotFound() {
+        // Arrange
+        when(gridFsOperations.findOne(any(Query.class))).thenReturn(null);
+
+        // Act & Assert
+        assertThrows(FileNotFoundException.class,
+                () -> outputStore.load(new OutputReference(new ObjectId().toHexString(), 1, 1)));
+    }
+
+    @Test
+    void exists_ExpiredFile_ReturnsFalse() {
+        // Arrange
+        when(gridFsOperations.findOne(any(Query.class))).thenReturn(null);
+
+        // Act & Assert
+        assertFalse(outputStore.exists(new OutputReference(new ObjectId().toHexString(), 1, 1)));
+    }
+
+    @Test
+    void deleteRun_DeletesFilesOfThatRun() {
+        // Act
+        outputStore.deleteRun("run-1");
+
+        // Assert
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(gridFsOperations).delete(query.capture());
+        assertEquals("run-1", query.getValue().getQueryObject().get("metadata.runId"));
+    }
+
+    @Test
+    void deleteExpired_DeletesFilesPastTheirExpiry() {
+        // Act
+        outputStore.deleteExpired();
+
+        // Assert
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(gridFsOperations).delete(query.capture());
+        Document expiresAt = (Document) query.getValue().getQueryObject().get("metadata.expiresAt");
+        assertTrue(expiresAt.get("$lt") instanceof Date);
+    }
+}
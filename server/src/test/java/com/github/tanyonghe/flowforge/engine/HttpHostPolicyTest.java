@@ -0,0 +1,63 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpHostPolicyTest {
+
+    @Test
+    void check_InternalAddresses_RejectedByDefault() {
+        // Arrange
+        HttpHostPolicy policy = new HttpHostPolicy();
+
+        // Act & Assert
+        for (String url : List.of("http://10.1.2.3/", "http://192.168.0.1/", "http://169.254.169.254/latest",
+                "http://[::1]/", "http://[fd00::1]/", "http://0.0.0.0/", "http://100.64.0.1/")) {
+            assertThrows(IllegalArgumentException.class, () -> policy.check(URI.create(url)), url);
+        }
+        assertDoesNotThrow(() -> policy.check(URI.create("http://93.184.216.34/")));
+    }
+
+    @Test
+    void check_AllowedCidr_AdmitsOnlyCoveredInternalAddresses() {
+        // Arrange
+        HttpHostPolicy policy = new HttpHostPolicy();
+        policy.setAllowed(List.of("10.0.0.0/8"));
+
+        // Act & Assert
+        assertDoesNotThrow(() -> policy.check(URI.create("http://10.20.30.40:8080/")));
+        assertThrows(IllegalArgumentException.class, () -> policy.check(URI.create("http://192.168.0.1/")));
+        assertThrows(IllegalArgumentException.class, () -> policy.check(URI.create("http://93.184.216.34/")));
+    }
+
+    @Test
+    void check_AllowedName_DoesNotVouchForInternalAddress() {
+        // Arrange
+        HttpHostPolicy policy = new HttpHostPolicy();
+        policy.setAllowed(List.of("localhost"));
+
+        // Act
+        IllegalArgumentException failure = assertThrows(IllegalArgumentException.class,
+                () -> policy.check(URI.create("http://localhost/")));
+
+        // Assert
+        assertTrue(failure.getMessage().startsWith("Host localhost resolves to internal address"));
+    }
+
+    @Test
+    void check_DeniedEntry_WinsOverAllowedAndPrivateNetworks() {
+        // Arrange
+        HttpHostPolicy policy = new HttpHostPolicy();
+        policy.setAllowPrivateNetworks(true);
+        policy.setAllowed(List.of("10.0.0.0/8"));
+        policy.setDenied(List.of("10.0.0.1"));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> policy.check(URI.create("http://10.0.0.1/")));
+        assertDoesNotThrow(() -> policy.check(URI.create("http://10.0.0.2/")));
+    }
+}
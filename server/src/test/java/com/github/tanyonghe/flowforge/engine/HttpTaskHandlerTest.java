@@ -0,0 +1,288 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tanyonghe.flowforge.model.Workflow;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpTaskHandlerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger slowCalls = new AtomicInteger();
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger peakConcurrent = new AtomicInteger();
+    private HttpServer server;
+    private String baseUrl;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/json", exchange -> respond(exchange, 200, "application/json", "{\"ok\":true,\"n\":3}"));
+        server.createContext("/echo", exchange -> respond(exchange, 200,
+                exchange.getRequestHeaders().getFirst("Content-Type"),
+                new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)));
+        server.createContext("/error", exchange -> respond(exchange, 503, "text/plain", "down"));
+        server.createContext("/slow-first", exchange -> {
+            if (slowCalls.incrementAndGet() == 1) {
+                sleep(1000);
+            }
+            respond(exchange, 200, "text/plain", "call " + slowCalls.get());
+        });
+        server.createContext("/concurrent", exchange -> {
+            peakConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            sleep(100);
+            concurrent.decrementAndGet();
+            respond(exchange, 200, "text/plain", "done");
+        });
+        server.createContext("/redirect", exchange -> {
+            exchange.getResponseHeaders().set("Location", "/json");
+            respond(exchange, 302, null, "");
+        });
+        server.createContext("/redirect-localhost", exchange -> {
+            exchange.getResponseHeaders().set("Location",
+                    "http://localhost:" + server.getAddress().getPort() + "/json");
+            respond(exchange, 302, null, "");
+        });
+        server.createContext("/large", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "text/plain");
+            // Chunked, so only the bytes read so far tell the handler how large the body is
+            exchange.sendResponseHeaders(200, 0);
+            try {
+                for (int i = 0; i < 64; i++) {
+                    exchange.getResponseBody().write(new byte[1024]);
+                }
+            } catch (IOException e) {
+                // The client hung up once it had read enough
+            }
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void executeAsync_JsonResponse_ParsesBody() {
+        // Arrange
+        HttpTaskHandler handler = handler(8);
+
+        // Act
+        Map<?, ?> output = (Map<?, ?>) handler.executeAsync(context(Map.of("url", baseUrl + "/json"))).join();
+
+        // Assert
+        assertEquals(200, output.get("status"));
+        assertEquals(Map.of("ok", true, "n", 3), output.get("body"));
+    }
+
+    @Test
+    void executeAsync_ObjectBody_SentAsJson() {
+        // Arrange
+        HttpTaskHandler handler = handler(8);
+
+        // Act
+        Map<?, ?> output = (Map<?, ?>) handler.executeAsync(context(Map.of(
+                "url", baseUrl + "/echo",
+                "method", "post",
+                "body", Map.of("name", "flowforge")))).join();
+
+        // Assert
+        assertEquals(Map.of("name", "flowforge"), output.get("body"));
+    }
+
+    @Test
+    void executeAsync_ErrorStatus_FailsUnlessDisabled() {
+        // Arrange
+        HttpTaskHandler handler = handler(8);
+
+        // Act
+        CompletionException failure = assertThrows(CompletionException.class,
+                () -> handler.executeAsync(context(Map.of("url", baseUrl + "/error"))).join());
+        Map<?, ?> output = (Map<?, ?>) handler.executeAsync(context(Map.of(
+                "url", baseUrl + "/error", "failOnStatus", false))).join();
+
+        // Assert
+        assertEquals("HTTP 503 from GET " + baseUrl + "/error", failure.getCause().getMessage());
+        assertEquals(503, output.get("status"));
+        assertEquals("down", output.get("body"));
+    }
+
+    @Test
+    void executeAsync_SlowResponse_HedgedRequestWins() {
+        // Arrange
+        HttpTaskHandler handler = handler(8);
+        long start = System.nanoTime();
+
+        // Act
+        Map<?, ?> output = (Map<?, ?>) handler.executeAsync(context(Map.of(
+                "url", baseUrl + "/slow-first", "hedge", true, "hedgeAfterMillis", 50))).join();
+
+        // Assert
+        assertEquals("call 2", output.get("body"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 800);
+        assertEquals(1, meterRegistry.counter("flowforge.http.hedges").count());
+    }
+
+    @Test
+    void executeAsync_HedgedRequestWins_LoserFreesItsHostSlot() {
+        // Arrange
+        HttpTaskHandler handler = handler(2);
+        handler.executeAsync(context(Map.of(
+                "url", baseUrl + "/slow-first", "hedge", true, "hedgeAfterMillis", 50))).join();
+
+        // Act: the slow first request is still on the server, but no longer holds a slot
+        CompletableFuture<Object> left = handler.executeAsync(context(Map.of("url", baseUrl + "/concurrent")));
+        CompletableFuture<Object> right = handler.executeAsync(context(Map.of("url", baseUrl + "/concurrent")));
+        CompletableFuture.allOf(left, right).join();
+
+        // Assert
+        assertEquals(2, peakConcurrent.get());
+    }
+
+    @Test
+    void executeAsync_PostIsNeverHedged() {
+        // Arrange
+        HttpTaskHandler handler = handler(8);
+
+        // Act
+        Map<?, ?> output = (Map<?, ?>) handler.executeAsync(context(Map.of(
+                "url", baseUrl + "/slow-first", "method", "POST", "hedge", true, "hedgeAfterMillis", 50))).join();
+
+        // Assert
+        assertEquals("call 1", output.get("body"));
+        assertEquals(0, meterRegistry.counter("flowforge.http.hedges").count());
+    }
+
+    @Test
+    void executeAsync_PerHostLimit_QueuesExcessRequests() {
+        // Arrange
+        HttpTaskHandler handler = handler(2);
+
+        // Act
+        List<CompletableFuture<Object>> calls = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            calls.add(handler.executeAsync(context(Map.of("url", baseUrl + "/concurrent"))));
+        }
+        CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).join();
+
+        // Assert
+        assertEquals(2, peakConcurrent.get());
+        for (CompletableFuture<Object> call : calls) {
+            assertEquals(200, ((Map<?, ?>) call.join()).get("status"));
+        }
+    }
+
+    @Test
+    void executeAsync_LoopbackHost_RejectedByDefault() {
+        // Arrange
+        HttpTaskHandler handler = handler(8, new HttpHostPolicy(), 1024);
+
+        // Act
+        CompletionException failure = assertThrows(CompletionException.class,
+                () -> handler.executeAsync(context(Map.of("url", baseUrl + "/json"))).join());
+
+        // Assert
+        assertEquals("Host 127.0.0.1 resolves to internal address 127.0.0.1", failure.getCause().getMessage());
+    }
+
+    @Test
+    void executeAsync_Redirect_FollowedOnlyToAllowedHosts() {
+        // Arrange
+        HttpHostPolicy policy = loopbackPolicy();
+        policy.setDenied(List.of("localhost"));
+        HttpTaskHandler handler = handler(8, policy, 1024);
+
+        // Act
+        Map<?, ?> output = (Map<?, ?>) handler.executeAsync(context(Map.of("url", baseUrl + "/redirect"))).join();
+        CompletionException failure = assertThrows(CompletionException.class,
+                () -> handler.executeAsync(context(Map.of("url", baseUrl + "/redirect-localhost"))).join());
+
+        // Assert
+        assertEquals(Map.of("ok", true, "n", 3), output.get("body"));
+        assertEquals("Host localhost is not allowed", failure.getCause().getMessage());
+    }
+
+    @Test
+    void executeAsync_BodyOverLimit_Fails() {
+        // Arrange
+        HttpTaskHandler handler = handler(8, loopbackPolicy(), 4096);
+
+        // Act
+        CompletionException failure = assertThrows(CompletionException.class,
+                () -> handler.executeAsync(context(Map.of("url", baseUrl + "/large"))).join());
+
+        // Assert
+        assertTrue(failure.getCause().getMessage().contains("Response body exceeds 4096 bytes"));
+    }
+
+    private HttpTaskHandler handler(int maxRequestsPerHost) {
+        return handler(maxRequestsPerHost, loopbackPolicy(), 1024 * 1024);
+    }
+
+    private HttpTaskHandler handler(int maxRequestsPerHost, HttpHostPolicy policy, long maxResponseBytes) {
+        return new HttpTaskHandler(HttpClient.newHttpClient(), objectMapper, meterRegistry, policy,
+                Duration.ofSeconds(10), maxRequestsPerHost, 0.95, 20, maxResponseBytes);
+    }
+
+    private static HttpHostPolicy loopbackPolicy() {
+        HttpHostPolicy policy = new HttpHostPolicy();
+        policy.setAllowed(List.of("127.0.0.1/32"));
+        return policy;
+    }
+
+    private TaskContext context(Map<String, Object> config) {
+        Workflow.Task task = new Workflow.Task();
+        task.setName("call");
+        task.setType("http");
+        task.setConfig(config);
+        Workflow workflow = new Workflow();
+        workflow.setId("wf");
+        workflow.setTasks(List.of(task));
+        ExecutionPlan plan = ExecutionPlan.compile(workflow, id -> Optional.empty());
+        return new TaskContext(new RunState(plan, Map.of(), OutputSpiller.disabled()), plan.getNode("call"));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        if (contentType != null) {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
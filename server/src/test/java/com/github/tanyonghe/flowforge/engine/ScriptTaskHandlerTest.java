@@ -0,0 +1,166 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import com.github.tanyonghe.flowforge.model.Workflow;
+import org.junit.jupiter.api.Test;
+import org.springframework.expression.EvaluationException;
+import org.springframework.expression.spel.SpelEvaluationException;
+import org.springframework.expression.spel.SpelMessage;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptTaskHandlerTest {
+
+    private final ScriptTaskHandler handler = new ScriptTaskHandler(1_000_000_000L, 64L * 1024 * 1024, 1000, 100);
+
+    @Test
+    void execute_ReadsInputAndUpstreamOutputs() {
+        // Arrange
+        TaskContext context = context(Map.of("script", "input.factor * upstream['fetch'].items.?[price > 10].size()"),
+                Map.of("factor", 3),
+                Map.of("items", List.of(Map.of("price", 5), Map.of("price", 20), Map.of("price", 30))));
+
+        // Act
+        Object result = handler.execute(context);
+
+        // Assert
+        assertEquals(6, result);
+    }
+
+    @Test
+    void execute_SameScriptTwice_ParsesOnce() {
+        // Arrange
+        Map<String, Object> config = Map.of("script", "input.name.toUpperCase()");
+
+        // Act
+        Object first = handler.execute(context(config, Map.of("name", "ada"), Map.of()));
+        Object second = handler.execute(context(config, Map.of("name", "grace"), Map.of()));
+
+        // Assert
+        assertEquals("ADA", first);
+        assertEquals("GRACE", second);
+        assertEquals(1, handler.parsedCount());
+    }
+
+    @Test
+    void execute_TypeReferencesAndConstructors_AreRejected() {
+        // Act & Assert
+        assertThrows(EvaluationException.class, () -> handler.execute(
+                context(Map.of("script", "T(java.lang.Runtime).getRuntime()"), Map.of(), Map.of())));
+        assertThrows(EvaluationException.class, () -> handler.execute(
+                context(Map.of("script", "new java.io.File('/tmp')"), Map.of(), Map.of())));
+        assertThrows(EvaluationException.class, () -> handler.execute(
+                context(Map.of("script", "input.getClass().forName('java.lang.Runtime')"), Map.of(), Map.of())));
+    }
+
+    @Test
+    void execute_AllocationOverLimit_Fails() {
+        // Arrange
+        TaskContext context = context(Map.of("script", "input.values.![#this + '-suffix']", "maxAllocatedBytes", 1024),
+                Map.of("values", IntStream.range(0, 10_000).boxed().toList()), Map.of());
+
+        // Act
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> handler.execute(context));
+
+        // Assert
+        assertTrue(e.getMessage().startsWith("Script allocated "), e.getMessage());
+    }
+
+    @Test
+    void execute_AmplifyingMethods_AreRejected() {
+        // Act & Assert
+        assertThrows(EvaluationException.class, () -> handler.execute(
+                context(Map.of("script", "'a'.repeat(2000000000)"), Map.of(), Map.of())));
+        assertThrows(EvaluationException.class, () -> handler.execute(
+                context(Map.of("script", "input.name.replace('a', 'aaaaaaaa')"), Map.of("name", "aaaa"), Map.of())));
+    }
+
+    @Test
+    void execute_MemoryAmplifyingScript_FailsWhileRunning() {
+        // Arrange
+        // Unchecked, this would build 4 million strings of 50 KB each
+        String script = "input.values.![#root.input.values.![#root.input.text + #this]]";
+        TaskContext context = context(Map.of("script", script),
+                Map.of("values", IntStream.range(0, 2_000).boxed().toList(), "text", "x".repeat(50_000)), Map.of());
+
+        // Act
+        IllegalStateException e = assertTimeout(Duration.ofSeconds(10),
+                () -> assertThrows(IllegalStateException.class, () -> handler.execute(context)));
+
+        // Assert
+        assertTrue(e.getMessage().startsWith("Script allocated "), e.getMessage());
+    }
+
+    @Test
+    void execute_RootIndexer_IsMeteredToo() {
+        // Arrange
+        TaskContext context = context(Map.of("script", "#root['input']['values'].![#root['input']['text'] + #this]",
+                        "maxAllocatedBytes", 1024 * 1024),
+                Map.of("values", IntStream.range(0, 2_000).boxed().toList(), "text", "x".repeat(50_000)), Map.of());
+
+        // Act
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> handler.execute(context));
+
+        // Assert
+        assertTrue(e.getMessage().startsWith("Script allocated "), e.getMessage());
+    }
+
+    @Test
+    void execute_DeeplyNestedProjections_AreRejected() {
+        // Arrange
+        TaskContext context = context(Map.of("script", "input.rows.![#this.![#this.?[#this > 0]]]"),
+                Map.of(), Map.of());
+
+        // Act
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> handler.execute(context));
+
+        // Assert
+        assertEquals("Script nests selections and projections more than 2 deep", e.getMessage());
+    }
+
+    @Test
+    void execute_ScriptOverMaxLength_IsRejected() {
+        // Arrange
+        TaskContext context = context(Map.of("script", "1" + " + 1".repeat(300)), Map.of(), Map.of());
+
+        // Act
+        SpelEvaluationException e = assertThrows(SpelEvaluationException.class, () -> handler.execute(context));
+
+        // Assert
+        assertEquals(SpelMessage.MAX_EXPRESSION_LENGTH_EXCEEDED, e.getMessageCode());
+    }
+
+    @Test
+    void execute_MissingScript_Fails() {
+        // Act
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> handler.execute(context(Map.of(), Map.of(), Map.of())));
+
+        // Assert
+        assertEquals("Script task 'transform' needs a script", e.getMessage());
+    }
+
+    private TaskContext context(Map<String, Object> config, Map<String, Object> input, Map<String, Object> fetched) {
+        Workflow.Task fetch = new Workflow.Task();
+        fetch.setName("fetch");
+        fetch.setType("noop");
+        fetch.setNextTasks(List.of("transform"));
+        Workflow.Task transform = new Workflow.Task();
+        transform.setName("transform");
+        transform.setType("script");
+        transform.setConfig(new HashMap<>(config));
+        Workflow workflow = new Workflow();
+        workflow.setId("wf");
+        workflow.setTasks(List.of(fetch, transform));
+        ExecutionPlan plan = ExecutionPlan.compile(workflow, id -> Optional.empty());
+        RunState run = new RunState(plan, input, OutputSpiller.disabled());
+        run.seed(plan.getNode("fetch").getIndex(), fetched);
+        return new TaskContext(run, plan.getNode("transform"));
+    }
+}
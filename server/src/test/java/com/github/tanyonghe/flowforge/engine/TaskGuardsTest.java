@@ -0,0 +1,46 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskGuardsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void forType_UnregisteredTypes_ShareOneUnguardedGuard() {
+        // Arrange
+        TaskGuards guards = new TaskGuards(bulkheadDefaults(), registry, System::nanoTime, Set.of("http")::contains);
+
+        // Act
+        TaskGuards.Guard first = guards.forType("type-1");
+        TaskGuards.Guard second = guards.forType("type-2");
+
+        // Assert
+        assertSame(first, second);
+        assertTrue(registry.find(TaskGuards.BULKHEAD_ACTIVE).gauges().isEmpty());
+    }
+
+    @Test
+    void forType_RegisteredType_IsGuardedOnce() {
+        // Arrange
+        TaskGuards guards = new TaskGuards(bulkheadDefaults(), registry, System::nanoTime, Set.of("http")::contains);
+
+        // Act
+        TaskGuards.Guard guard = guards.forType("http");
+
+        // Assert
+        assertSame(guard, guards.forType("http"));
+        assertNotNull(registry.find(TaskGuards.BULKHEAD_ACTIVE).tag("key", "http").gauge());
+    }
+
+    private TaskGuardProperties bulkheadDefaults() {
+        TaskGuardProperties properties = new TaskGuardProperties();
+        properties.getDefaults().setMaxConcurrent(4);
+        return properties;
+    }
+}
@@ -0,0 +1,151 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import com.github.tanyonghe.flowforge.model.MemoizedResult;
+import com.github.tanyonghe.flowforge.repository.MemoizedResultRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TaskResultCacheTest {
+
+    @Mock
+    private MemoizedResultRepository repository;
+
+    @Test
+    void key_MapOrder_DoesNotChangeKey() {
+        // Arrange
+        TaskResultCache cache = new TaskResultCache(10, 1024, 1024, null, Duration.ZERO);
+        Map<String, Object> forward = new LinkedHashMap<>();
+        forward.put("a", 1);
+        forward.put("b", Map.of("x", 1, "y", 2));
+        Map<String, Object> backward = new LinkedHashMap<>();
+        backward.put("b", Map.of("y", 2, "x", 1));
+        backward.put("a", 1);
+
+        // Act & Assert
+        assertEquals(cache.key("http", forward, Map.of(), Map.of()), cache.key("http", backward, Map.of(), Map.of()));
+        assertNotEquals(cache.key("http", forward, Map.of(), Map.of()), cache.key("email", forward, Map.of(), Map.of()));
+    }
+
+    @Test
+    void put_OverEntryLimit_EvictsLeastRecentlyUsed() {
+        // Arrange
+        TaskResultCache cache = new TaskResultCache(2, 1024, 1024, null, Duration.ZERO);
+        cache.put("a", "t", "A", 10);
+        cache.put("b", "t", "B", 10);
+        cache.get("a");
+
+        // Act
+        cache.put("c", "t", "C", 10);
+
+        // Assert
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    void put_OverByteLimit_EvictsUntilUnderBudget() {
+        // Arrange
+        TaskResultCache cache = new TaskResultCache(100, 100, 80, null, Duration.ZERO);
+        cache.put("a", "t", "A", 40);
+        cache.put("b", "t", "B", 40);
+
+        // Act
+        cache.put("c", "t", "C", 40);
+        cache.put("huge", "t", "H", 81);
+
+        // Assert
+        assertNull(cache.get("a"));
+        assertEquals(2, cache.size());
+        assertNull(cache.get("huge"));
+    }
+
+    @Test
+    void get_PersistentHit_PromotesToMemory() {
+        // Arrange
+        TaskResultCache cache = new TaskResultCache(10, 1024, 1024, repository, Duration.ofDays(1));
+        MemoizedResult stored = new MemoizedResult("k", "t", "stored", 10, new Date(),
+                new Date(System.currentTimeMillis() + 60_000));
+        when(repository.findById("k")).thenReturn(Optional.of(stored));
+
+        // Act
+        TaskResultCache.Entry first = cache.get("k");
+        TaskResultCache.Entry second = cache.get("k");
+
+        // Assert
+        assertEquals("stored", first.output());
+        assertEquals(first, second);
+        verify(repository, times(1)).findById("k");
+    }
+
+    @Test
+    void get_PersistentEntryExpired_IsMiss() {
+        // Arrange
+        TaskResultCache cache = new TaskResultCache(10, 1024, 1024, repository, Duration.ofDays(1));
+        when(repository.findById("k")).thenReturn(Optional.of(new MemoizedResult("k", "t", "stale", 10,
+                new Date(0), new Date(System.currentTimeMillis() - 1))));
+
+        // Act & Assert
+        assertNull(cache.get("k"));
+    }
+
+    @Test
+    void put_PersistentTier_WritesThrough() {
+        // Arrange
+        TaskResultCache cache = new TaskResultCache(10, 1024, 1024, repository, Duration.ofDays(1));
+
+        // Act
+        cache.put("k", "t", "value", 10);
+
+        // Assert
+        verify(repository).save(any(MemoizedResult.class));
+    }
+
+    @Test
+    void put_PersistentWriteFails_StaysInMemoryAndReportsFailure() {
+        // Arrange
+        TaskResultCache cache = new TaskResultCache(10, 1024, 1024, repository, Duration.ofDays(1));
+        when(repository.save(any(MemoizedResult.class))).thenThrow(new IllegalStateException("Mongo is down"));
+
+        // Act
+        boolean persisted = cache.put("k", "t", "value", 10);
+
+        // Assert
+        assertFalse(persisted);
+        assertEquals("value", cache.get("k").output());
+    }
+
+    @Test
+    void putAndGet_CallersMutateOutputs_CachedEntryUnchanged() {
+        // Arrange
+        TaskResultCache cache = new TaskResultCache(10, 1024, 1024, null, Duration.ZERO);
+        List<Object> items = new ArrayList<>(List.of(1, 2));
+        Map<String, Object> output = new LinkedHashMap<>(Map.of("items", items));
+        cache.put("k", "t", output, 10);
+
+        // Act
+        output.put("extra", true);
+        items.add(3);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> hit = (Map<String, Object>) cache.get("k").output();
+        hit.clear();
+
+        // Assert
+        assertEquals(Map.of("items", List.of(1, 2)), cache.get("k").output());
+    }
+}
@@ -0,0 +1,1085 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import com.github.tanyonghe.flowforge.model.OutputReference;
+import com.github.tanyonghe.flowforge.model.TaskTemplate;
+import com.github.tanyonghe.flowforge.model.Workflow;
+import com.github.tanyonghe.flowforge.model.WorkflowRun;
+import com.github.tanyonghe.flowforge.model.WorkflowRunTrace;
+import com.github.tanyonghe.flowforge.repository.MemoizedResultRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.util.unit.DataSize;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WorkflowExecutorTest {
+
+    private ForkJoinPool pool;
+    private SimpleMeterRegistry meterRegistry;
+    private ExecutionMetrics metrics;
+    private TaskHandlerRegistry handlerRegistry;
+    private WorkflowExecutor workflowExecutor;
+    private final AtomicInteger flakyCalls = new AtomicInteger();
+    private final AtomicInteger asyncCalls = new AtomicInteger();
+    private final Map<String, ExecutionPlan> savedPlans = new HashMap<>();
+    private WorkflowExecutor subWorkflowExecutor;
+    private final AtomicInteger mapConcurrency = new AtomicInteger();
+    private final AtomicInteger mapPeakConcurrency = new AtomicInteger();
+    private final InMemoryOutputStore outputStore = new InMemoryOutputStore();
+    private final TaskResultCache resultCache = new TaskResultCache(100, 1 << 20, 1 << 16, null, Duration.ZERO);
+
+    @BeforeEach
+    void setUp() {
+        pool = new ForkJoinPool(4, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        TaskHandler concat = new TestHandler("concat", context -> {
+            StringBuilder result = new StringBuilder(context.getTaskName());
+            context.getUpstreamOutputs().values().forEach(value -> result.append("<").append(value));
+            return result.toString();
+        });
+        TaskHandler fail = new TestHandler("fail", context -> {
+            throw new IllegalStateException("boom");
+        });
+        TaskHandler big = new TestHandler("big", context -> "x".repeat(4096));
+        TaskHandler medium = new TestHandler("medium", context -> "x".repeat(800));
+        TaskHandler length = new TestHandler("length", context ->
+                context.getUpstreamOutputs().values().stream().mapToInt(value -> value.toString().length()).sum());
+        TaskHandler doubler = new TestHandler("double", context -> {
+            int item = ((Number) context.getInput().get("item")).intValue();
+            if (item < 0) {
+                throw new IllegalArgumentException("negative");
+            }
+            int running = mapConcurrency.incrementAndGet();
+            mapPeakConcurrency.accumulateAndGet(running, Math::max);
+            Thread.sleep(context.getConfig().get("sleep") instanceof Number sleep ? sleep.longValue() : 0);
+            mapConcurrency.decrementAndGet();
+            return item * 2;
+        });
+        TaskHandler flaky = new TestHandler("flaky", context -> {
+            if (flakyCalls.incrementAndGet() < 3) {
+                throw new IllegalStateException("not yet");
+            }
+            return "ok";
+        });
+        // Completes on a timer thread after the handler returned, failing its first call
+        TaskHandler async = new TaskHandler() {
+            @Override
+            public Set<String> getTypes() {
+                return Set.of("async");
+            }
+
+            @Override
+            public Object execute(TaskContext context) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public CompletableFuture<Object> executeAsync(TaskContext context) {
+                return CompletableFuture.supplyAsync(() -> {
+                    if (asyncCalls.incrementAndGet() == 1) {
+                        throw new IllegalStateException("first call fails");
+                    }
+                    return "async:" + context.getUpstreamOutputs().keySet();
+                }, CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS));
+            }
+        };
+        meterRegistry = new SimpleMeterRegistry();
+        metrics = new ExecutionMetrics(meterRegistry);
+        MapTaskHandler map = new MapTaskHandler(pool, 0, type -> handlerRegistry.getHandler(type),
+                TaskGuards.disabled(), metrics);
+        SubWorkflowTaskHandler subWorkflow = new SubWorkflowTaskHandler(
+                id -> Optional.ofNullable(savedPlans.get(id)), () -> subWorkflowExecutor, 3);
+        handlerRegistry = new TaskHandlerRegistry(
+                List.of(new NoopTaskHandler(), concat, fail, flaky, big, medium, length, doubler, map, subWorkflow,
+                        async));
+        workflowExecutor = new WorkflowExecutor(handlerRegistry, pool,
+                metrics, new OutputSpiller(outputStore, DataSize.ofKilobytes(1)),
+                MemoryBudget.unbounded(), resultCache, TaskGuards.disabled());
+        subWorkflowExecutor = workflowExecutor;
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void execute_LinearChain_PassesOutputsDownstream() {
+        // Arrange
+        Workflow workflow = workflow(
+                task("a", "concat", "b"),
+                task("b", "concat", "c"),
+                task("c", "concat"));
+
+        // Act
+        WorkflowRun run = execute(workflow);
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_COMPLETED, run.getStatus());
+        assertEquals("c<b<a", taskRun(run, "c").getOutput());
+    }
+
+    @Test
+    void execute_Diamond_JoinWaitsForAllPredecessors() {
+        // Arrange
+        Workflow workflow = workflow(
+                task("start", "concat", "left", "right"),
+                task("left", "concat", "join"),
+                task("right", "concat", "join"),
+                task("join", "concat"));
+
+        // Act
+        WorkflowRun run = execute(workflow);
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_COMPLETED, run.getStatus());
+        assertEquals("join<left<start<right<start", taskRun(run, "join").getOutput());
+        run.getTasks().forEach(task -> assertEquals(1, task.getAttempts()));
+    }
+
+    @Test
+    void execute_Diamond_RecordsTraceWithEdgesAndTimings() {
+        // Arrange
+        Workflow workflow = workflow(
+                task("start", "concat", "left", "right"),
+                task("left", "concat", "join"),
+                task("right", "concat", "join"),
+                task("join", "concat"));
+
+        // Act
+        WorkflowRunTrace trace = execute(workflow).getTrace();
+
+        // Assert
+        assertNotNull(trace);
+        WorkflowRunTrace.TaskTrace join = trace.getTasks().stream()
+                .filter(task -> task.getName().equals("join")).findFirst().orElseThrow();
+        assertEquals(List.of("left", "right"), join.getDependsOn());
+        for (WorkflowRunTrace.TaskTrace task : trace.getTasks()) {
+            assertTrue(task.getReadyAtMicros() >= 0);
+            assertTrue(task.getStartedAtMicros() >= task.getReadyAtMicros());
+            assertTrue(task.getFinishedAtMicros() >= task.getStartedAtMicros());
+        }
+        WorkflowRunTrace.TaskTrace left = trace.getTasks().get(1);
+        WorkflowRunTrace.TaskTrace right = trace.getTasks().get(2);
+        assertTrue(join.getReadyAtMicros() >= Math.max(left.getFinishedAtMicros(), right.getFinishedAtMicros()));
+    }
+
+    @Test
+    void execute_TaskFails_SkipsDescendantsAndFailsRun() {
+        // Arrange
+        Workflow workflow = workflow(
+                task("a", "concat", "b"),
+                task("b", "fail", "c"),
+                task("c", "concat"));
+
+        // Act
+        WorkflowRun run = execute(workflow);
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_FAILED, run.getStatus());
+        assertEquals(WorkflowRun.TaskRun.STATUS_FAILED, taskRun(run, "b").getStatus());
+        assertEquals("boom", taskRun(run, "b").getError());
+        assertEquals(WorkflowRun.TaskRun.STATUS_SKIPPED, taskRun(run, "c").getStatus());
+        assertEquals("Task 'b' failed: boom", run.getError());
+    }
+
+    @Test
+    void execute_TaskFails_LeavesNoPendingTasks() {
+        // Arrange
+        Workflow workflow = workflow(
+                task("a", "fail", "b"),
+                task("b", "concat", "c"),
+                task("c", "concat"),
+                task("other", "noop"));
+
+        // Act
+        WorkflowRun run = execute(workflow);
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_FAILED, run.getStatus());
+        assertTrue(run.getTasks().stream()
+                .noneMatch(task -> WorkflowRun.TaskRun.STATUS_PENDING.equals(task.getStatus())));
+        assertEquals(WorkflowRun.TaskRun.STATUS_SKIPPED, taskRun(run, "c").getStatus());
+    }
+
+    @Test
+    void execute_HandlerThrowsError_ReleasesPermitAndActiveCount() {
+        // Arrange
+        TaskGuardProperties properties = new TaskGuardProperties();
+        TaskGuardProperties.Limits limits = new TaskGuardProperties.Limits();
+        limits.setMaxConcurrent(1);
+        properties.getOverrides().put("broken", limits);
+        TaskHandler broken = new TestHandler("broken", context -> {
+            throw new StackOverflowError();
+        });
+        WorkflowExecutor executor = new WorkflowExecutor(new TaskHandlerRegistry(List.of(broken)), pool, metrics,
+                OutputSpiller.disabled(), MemoryBudget.unbounded(), TaskResultCache.disabled(),
+                new TaskGuards(properties, meterRegistry));
+
+        // Act
+        CompletionException e = assertThrows(CompletionException.class,
+                () -> executor.execute(compile(workflow(task("broken", "broken"))), Map.of()).join());
+
+        // Assert
+        assertInstanceOf(StackOverflowError.class, e.getCause());
+        assertEquals(0.0, meterRegistry.get(TaskGuards.BULKHEAD_ACTIVE).tag("key", "broken").gauge().value());
+        assertEquals(0.0, meterRegistry.get("flowforge.tasks.active").gauge().value());
+    }
+
+    @Test
+    void execute_RetriesConfigured_RetriesUntilSuccess() {
+        // Arrange
+        Workflow.Task flaky = task("flaky", "flaky");
+        flaky.setConfig(Map.of("retries", 2));
+        Workflow workflow = workflow(flaky);
+
+        // Act
+        WorkflowRun run = execute(workflow);
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_COMPLETED, run.getStatus());
+        assertEquals(3, taskRun(run, "flaky").getAttempts());
+        assertEquals("ok", taskRun(run, "flaky").getOutput());
+    }
+
+    @Test
+    void execute_AsyncHandler_ContinuesRunWhenFutureCompletes() {
+        // Arrange
+        Workflow.Task wait = task("wait", "async", "after");
+        wait.setConfig(Map.of("retries", 1));
+        Workflow workflow = workflow(task("a", "noop", "wait"), wait, task("after", "length"));
+
+        // Act
+        WorkflowRun run = execute(workflow);
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_COMPLETED, run.getStatus());
+        assertEquals("async:[a]", taskRun(run, "wait").getOutput());
+        assertEquals(2, taskRun(run, "wait").getAttempts());
+        assertEquals("async:[a]".length(), taskRun(run, "after").getOutput());
+        assertTrue(taskRun(run, "wait").getDurationMicros() >= 40_000);
+    }
+
+    @Test
+    void execute_CircuitOpen_FailsFastWithoutCallingHandler() {
+        // Arrange
+        TaskGuardProperties properties = new TaskGuardProperties();
+        TaskGuardProperties.Limits limits = new TaskGuardProperties.Limits();
+        limits.setFailureRateThreshold(50);
+        limits.setSlidingWindow(4);
+        limits.setMinimumCalls(2);
+        limits.setOpenDuration(Duration.ofMinutes(1));
+        properties.getOverrides().put("flaky", limits);
+        WorkflowExecutor guarded = guardedExecutor(properties);
+        Workflow.Task flaky = task("flaky", "flaky");
+        flaky.setConfig(Map.of("retries", 5));
+        ExecutionPlan plan = compile(workflow(flaky));
+
+        // Act
+        WorkflowRun run = guarded.execute(plan, Map.of()).join();
+
+        // Assert: two failures open the breaker before the third call would have succeeded
+        assertEquals(WorkflowRun.STATUS_FAILED, run.getStatus());
+        assertEquals("Circuit breaker for 'flaky' is open", taskRun(run, "flaky").getError());
+        assertEquals(3, taskRun(run, "flaky").getAttempts());
+        assertEquals(2, flakyCalls.get());
+        assertEquals(1, meterRegistry.counter(TaskGuards.REJECTIONS, "key", "flaky", "reason", "circuit_open").count());
+        assertEquals(1.0, meterRegistry.get(TaskGuards.CIRCUIT_STATE).tag("key", "flaky").gauge().value());
+    }
+
+    @Test
+    void execute_BulkheadFull_RejectsConcurrentTaskOfSameType() {
+        // Arrange
+        TaskGuardProperties properties = new TaskGuardProperties();
+        TaskGuardProperties.Limits limits = new TaskGuardProperties.Limits();
+        limits.setMaxConcurrent(1);
+        properties.getOverrides().put("double", limits);
+        WorkflowExecutor guarded = guardedExecutor(properties);
+        Workflow.Task first = task("first", "double");
+        first.setConfig(Map.of("sleep", 300));
+        Workflow.Task second = task("second", "double");
+        second.setConfig(Map.of("sleep", 300));
+        ExecutionPlan plan = compile(workflow(first, second));
+
+        // Act
+        WorkflowRun run = guarded.execute(plan, Map.of("item", 1)).join();
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_FAILED, run.getStatus());
+        assertEquals(1, run.getTasks().stream()
+                .filter(task -> "Too many concurrent 'double' tasks".equals(task.getError()))
+                .count());
+        assertEquals(0.0, meterRegistry.get(TaskGuards.BULKHEAD_ACTIVE).tag("key", "double").gauge().value());
+    }
+
+    @Test
+    void execute_RecordsTaskAndRunMetrics() {
+        // Arrange
+        Workflow.Task flaky = task("flaky", "flaky");
+        flaky.setConfig(Map.of("retries", 2));
+        Workflow workflow = workflow(task("a", "concat", "flaky"), flaky);
+
+        // Act
+        execute(workflow);
+
+        // Assert
+        assertEquals(1, meterRegistry.get(ExecutionMetrics.TASK_EXECUTION)
+                .tags("type", "concat", "outcome", "success").timer().count());
+        assertEquals(2.0, meterRegistry.get(ExecutionMetrics.TASK_RETRIES)
+                .tag("type", "flaky").counter().count());
+        assertEquals(1, meterRegistry.get(ExecutionMetrics.WORKFLOW_RUN)
+                .tag("status", WorkflowRun.STATUS_COMPLETED).timer().count());
+        assertEquals(0.0, meterRegistry.get("flowforge.tasks.active").gauge().value());
+    }
+
+    @Test
+    void execute_RecordingEnabled_EmitsFlightRecorderEvents() throws Exception {
+        // Arrange
+        Workflow workflow = workflow(task("a", "concat", "b"), task("b", "concat"));
+        Path file = Files.createTempFile("executor", ".jfr");
+
+        // Act
+        try (Recording recording = new Recording()) {
+            recording.enable(WorkflowRunStartedEvent.NAME);
+            recording.enable(TaskExecutedEvent.NAME);
+            recording.start();
+            execute(workflow);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        // Assert
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+        assertEquals(1, events.stream()
+                .filter(e -> e.getEventType().getName().equals(WorkflowRunStartedEvent.NAME)).count());
+        RecordedEvent taskB = events.stream()
+                .filter(e -> e.getEventType().getName().equals(TaskExecutedEvent.NAME))
+                .filter(e -> "b".equals(e.getString("taskName")))
+                .findFirst().orElseThrow();
+        assertEquals("concat", taskB.getString("taskType"));
+        assertTrue(taskB.getBoolean("succeeded"));
+        assertEquals(ObjectSizeEstimator.estimate("b<a"), taskB.getLong("outputBytes"));
+    }
+
+    @Test
+    void execute_LargeOutput_SpillsAndLoadsLazily() {
+        // Arrange
+        Workflow workflow = workflow(
+                task("producer", "big", "consumer", "bystander"),
+                task("consumer", "length"),
+                task("bystander", "noop"));
+
+        // Act
+        WorkflowRun run = execute(workflow);
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_COMPLETED, run.getStatus());
+        WorkflowRun.TaskRun producer = taskRun(run, "producer");
+        assertNull(producer.getOutput());
+        assertNotNull(producer.getOutputRef());
+        assertTrue(producer.getOutputRef().getSizeBytes() >= 4096);
+        assertEquals(4096, taskRun(run, "consumer").getOutput());
+        assertNull(taskRun(run, "consumer").getOutputRef());
+        // Only the consumer read the output
+        assertEquals(1, outputStore.loads.get());
+    }
+
+    @Test
+    void execute_SpilledOutputWithSeveralConsumers_LoadedOnce() {
+        // Arrange
+        Workflow workflow = workflow(
+                task("producer", "big", "first", "second"),
+                task("first", "length"),
+                task("second", "length"));
+
+        // Act
+        WorkflowRun run = execute(workflow);
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_COMPLETED, run.getStatus());
+        assertEquals(4096, taskRun(run, "first").getOutput());
+        assertEquals(4096, taskRun(run, "second").getOutput());
+        assertEquals(1, outputStore.loads.get());
+    }
+
+    @Test
+    void execute_OutputOverRunBudget_SpillsBelowThreshold() {
+        // Arrange
+        MemoryBudget budget = new MemoryBudget(1_000_000, 600, Duration.ZERO);
+        WorkflowExecutor executor = budgetedExecutor(budget, new OutputSpiller(outputStore, DataSize.ofMegabytes(1)));
+        Workflow workflow = workflow(task("medium", "medium", "consumer"), task("consumer", "length"));
+
+        // Act
+        WorkflowRun run = executor.execute(compile(workflow), Map.of()).join();
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_COMPLETED, run.getStatus());
+        assertNotNull(taskRun(run, "medium").getOutputRef());
+        assertEquals(800, taskRun(run, "consumer").getOutput());
+        assertEquals(0, budget.getUsedBytes());
+        assertEquals(1.0, meterRegistry.get(ExecutionMetrics.OUTPUT_SPILLS).tag("reason", "budget").counter().count());
+        assertEquals(0.0, meterRegistry.get(ExecutionMetrics.OUTPUT_SPILLS).tag("reason", "size").counter().count());
+    }
+
+    @Test
+    void execute_InlineOutputsReachDocumentCap_SpillTheRest() {
+        // Arrange
+        OutputSpiller spiller = new OutputSpiller(outputStore, DataSize.ofMegabytes(1), DataSize.ofBytes(2500));
+        WorkflowExecutor executor = budgetedExecutor(MemoryBudget.unbounded(), spiller);
+        Workflow workflow = workflow(task("m1", "medium"), task("m2", "medium"), task("m3", "medium"),
+                task("m4", "medium"));
+
+        // Act
+        WorkflowRun run = executor.execute(compile(workflow), Map.of()).join();
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_COMPLETED, run.getStatus());
+        long spilled = run.getTasks().stream().filter(task -> task.getOutputRef() != null).count();
+        assertTrue(spilled >= 2, "spilled " + spilled);
+        assertEquals((double) spilled,
+                meterRegistry.get(ExecutionMetrics.OUTPUT_SPILLS).tag("reason", "document").counter().count());
+    }
+
+    @Test
+    void execute_OutputOverRunBudgetWithoutSpilling_FailsTask() {
+        // Arrange
+        MemoryBudget budget = new MemoryBudget(1_000_000, 600, Duration.ZERO);
+        WorkflowExecutor executor = budgetedExecutor(budget, OutputSpiller.disabled());
+
+        // Act
+        WorkflowRun run = executor.execute(compile(workflow(task("medium", "medium"))), Map.of()).join();
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_FAILED, run.getStatus());
+        assertTrue(taskRun(run, "medium").getError().contains("memory budget"));
+        assertEquals(0, budget.getUsedBytes());
+    }
+
+    @Test
+    void execute_MemoizedOutputOverRunBudgetWithoutSpilling_FailsTask() {
+        // Arrange
+        Workflow.Task medium = task("medium", "medium");
+        medium.setConfig(Map.of("deterministic", true));
+        ExecutionPlan plan = compile(workflow(medium));
+        executeAndJoin(plan, Map.of());
+        MemoryBudget budget = new MemoryBudget(1_000_000, 600, Duration.ZERO);
+        WorkflowExecutor executor = new WorkflowExecutor(handlerRegistry, pool, metrics, OutputSpiller.disabled(),
+                budget, resultCache, TaskGuards.disabled());
+
+        // Act
+        WorkflowRun run = executor.execute(plan, Map.of()).join();
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_FAILED, run.getStatus());
+        assertTrue(taskRun(run, "medium").isMemoized());
+        assertTrue(taskRun(run, "medium").getError().contains("memory budget"));
+        assertEquals(0, budget.getUsedBytes());
+    }
+
+    @Test
+    void execute_InputOverRunBudget_RejectsRun() {
+        // Arrange
+        MemoryBudget budget = new MemoryBudget(1_000_000, 100, Duration.ZERO);
+        WorkflowExecutor executor = budgetedExecutor(budget, OutputSpiller.disabled());
+        ExecutionPlan plan = compile(workflow(task("a", "noop")));
+
+        // Act & Assert
+        assertThrows(ExecutionCapacityException.class,
+                () -> executor.execute(plan, Map.of("payload", "x".repeat(500))));
+        assertEquals(0, budget.getUsedBytes());
+    }
+
+    @Test
+    void execute_GlobalBudgetExhausted_RejectsAfterTimeout() {
+        // Arrange
+        MemoryBudget budget = new MemoryBudget(1_000, 1_000, Duration.ofMillis(50));
+        WorkflowExecutor executor = budgetedExecutor(budget, OutputSpiller.disabled());
+        AtomicLong held = new AtomicLong();
+        assertTrue(budget.tryCharge(held, 900));
+        ExecutionPlan plan = compile(workflow(task("a", "noop")));
+
+        // Act & Assert
+        assertThrows(ExecutionCapacityException.class,
+                () -> executor.execute(plan, Map.of("payload", "x".repeat(200))));
+        budget.release(held.get());
+        assertEquals(WorkflowRun.STATUS_COMPLETED,
+                executor.execute(plan, Map.of("payload", "x".repeat(200))).join().getStatus());
+        assertEquals(0, budget.getUsedBytes());
+    }
+
+    @Test
+    void execute_MapOverInput_ReturnsResultsInOrder() {
+        // Arrange
+        Workflow.Task map = task("map", "map");
+        map.setConfig(Map.of("from", "input.records", "chunkSize", 7, "task", Map.of("type", "double")));
+        List<Integer> records = IntStream.range(0, 1000).boxed().toList();
+        WorkflowExecutor executor = budgetedExecutor(MemoryBudget.unbounded(), OutputSpiller.disabled());
+
+        // Act
+        WorkflowRun run = executor.execute(compile(workflow(map)), Map.of("records", records)).join();
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_COMPLETED, run.getStatus());
+        assertEquals(records.stream().map(i -> i * 2).toList(), taskRun(run, "map").getOutput());
+    }
+
+    @Test
+    void execute_MapWithParallelism_NeverExceedsCap() {
+        // Arrange
+        Workflow.Task map = task("map", "map");
+        map.setConfig(Map.of("items", IntStream.range(0, 40).boxed().toList(), "parallelism", 2, "chunkSize", 1,
+                "task", Map.of("type", "double", "config", Map.of("sleep", 5))));
+
+        // Act
+        WorkflowRun run = execute(workflow(map));
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_COMPLETED, run.getStatus());
+        assertTrue(mapPeakConcurrency.get() <= 2);
+    }
+
+    @Test
+    void execute_MapOverUpstreamOutput_UsesSingleUpstream() {
+        // Arrange
+        Workflow.Task source = task("source", "noop", "map");
+        source.setConfig(Map.of("output", List.of(1, 2, 3)));
+        Workflow.Task map = task("map", "map");
+        map.setConfig(Map.of("task", Map.of("type", "double")));
+
+        // Act
+        WorkflowRun run = execute(workflow(source, map));
+
+        // Assert
+        assertEquals(List.of(2, 4, 6), taskRun(run, "map").getOutput());
+    }
+
+    @Test
+    void execute_MapItemFails_FailsTaskWithIndex() {
+        // Arrange
+        Workflow.Task map = task("map", "map");
+        map.setConfig(Map.of("items", List.of(1, 2, -3, 4), "task", Map.of("type", "double")));
+
+        // Act
+        WorkflowRun run = execute(workflow(map));
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_FAILED, run.getStatus());
+        assertEquals("Item 2 failed: negative", taskRun(run, "map").getError());
+    }
+
+    @Test
+    void execute_MapOverAsyncItems_RetriesFailedItemAndRecordsMetrics() {
+        // Arrange
+        Workflow.Task map = task("map", "map");
+        map.setConfig(Map.of("items", List.of(1, 2), "parallelism", 1,
+                "task", Map.of("type", "async", "config", Map.of("retries", 1))));
+
+        // Act
+        WorkflowRun run = execute(workflow(map));
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_COMPLETED, run.getStatus());
+        assertEquals(List.of("async:[]", "async:[]"), taskRun(run, "map").getOutput());
+        assertEquals(3, asyncCalls.get());
+        assertEquals(2, meterRegistry.get(ExecutionMetrics.TASK_EXECUTION)
+                .tag("type", "async").tag("outcome", "success").timer().count());
+        assertEquals(1.0, meterRegistry.get(ExecutionMetrics.TASK_RETRIES).tag("type", "async").counter().count());
+    }
+
+    @Test
+    void execute_MapItemsOverBulkhead_RejectedByItemTypeGuard() {
+        // Arrange
+        TaskGuardProperties properties = new TaskGuardProperties();
+        TaskGuardProperties.Limits limits = new TaskGuardProperties.Limits();
+        limits.setMaxConcurrent(1);
+        properties.getOverrides().put("double", limits);
+        TaskGuards guards = new TaskGuards(properties, meterRegistry);
+        MapTaskHandler guardedMap = new MapTaskHandler(pool, 0, type -> handlerRegistry.getHandler(type), guards,
+                metrics);
+        Workflow.Task map = task("map", "map");
+        map.setConfig(Map.of("items", List.of(1, 2, 3, 4), "parallelism", 4, "chunkSize", 1,
+                "task", Map.of("type", "double", "config", Map.of("sleep", 200))));
+        ExecutionPlan plan = compile(workflow(map));
+
+        // Act
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> guardedMap.executeAsync(new TaskContext(new RunState(plan, Map.of(), OutputSpiller.disabled()),
+                        plan.getNode("map"))).join());
+
+        // Assert
+        assertTrue(exception.getCause().getMessage().endsWith("Too many concurrent 'double' tasks"));
+        assertTrue(meterRegistry.get(TaskGuards.REJECTIONS).tag("key", "double").tag("reason", "bulkhead")
+                .counter().count() >= 1);
+    }
+
+    @Test
+    void execute_SubWorkflow_ReturnsCalleeOutputsToCaller() {
+        // Arrange
+        Workflow.Task greet = task("greet", "concat");
+        save(workflow("child", task("hello", "noop", "greet"), greet));
+        Workflow.Task call = task("call", "workflow", "after");
+        call.setConfig(Map.of("workflowId", "child"));
+
+        // Act
+        WorkflowRun run = execute(workflow("parent", call, task("after", "noop")));
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_COMPLETED, run.getStatus());
+        Map<?, ?> outputs = (Map<?, ?>) taskRun(run, "call").getOutput();
+        assertEquals("greet<null", outputs.get("greet"));
+        assertTrue(outputs.containsKey("hello"));
+    }
+
+    @Test
+    void execute_SubWorkflowWithSpilledOutput_DeletesItsFilesAfterTheCall() {
+        // Arrange
+        save(workflow("child", task("producer", "big")));
+        Workflow.Task call = task("call", "workflow", "after");
+        call.setConfig(Map.of("workflowId", "child"));
+
+        // Act
+        WorkflowRun run = execute(workflow("parent", call, task("after", "noop")));
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_COMPLETED, run.getStatus());
+        // The caller's own spilled output stays, the callee's is gone
+        assertTrue(outputStore.files.containsKey(taskRun(run, "call").getOutputRef().getFileId()));
+        assertTrue(outputStore.files.keySet().stream().noneMatch(fileId -> fileId.endsWith("/producer")));
+    }
+
+    @Test
+    void execute_SubWorkflowOnSingleThreadPool_DoesNotDeadlock() {
+        // Arrange
+        ForkJoinPool single = new ForkJoinPool(1, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        subWorkflowExecutor = new WorkflowExecutor(handlerRegistry, single, new ExecutionMetrics(meterRegistry),
+                OutputSpiller.disabled(), MemoryBudget.unbounded(), TaskResultCache.disabled(), TaskGuards.disabled());
+        save(workflow("child", task("left", "noop"), task("right", "noop")));
+        Workflow.Task call = task("call", "workflow");
+        call.setConfig(Map.of("workflowId", "child"));
+
+        try {
+            // Act
+            WorkflowRun run = subWorkflowExecutor.execute(compile(workflow("parent", call)), Map.of())
+                    .orTimeout(10, TimeUnit.SECONDS).join();
+
+            // Assert
+            assertEquals(WorkflowRun.STATUS_COMPLETED, run.getStatus());
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    void execute_RecursiveSubWorkflow_FailsWithCallChain() {
+        // Arrange
+        Workflow.Task callB = task("callB", "workflow");
+        callB.setConfig(Map.of("workflowId", "b"));
+        Workflow.Task callA = task("callA", "workflow");
+        callA.setConfig(Map.of("workflowId", "a"));
+        save(workflow("a", callB));
+        save(workflow("b", callA));
+
+        // Act
+        WorkflowRun run = execute(workflow("a", callB));
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_FAILED, run.getStatus());
+        assertEquals("Sub-workflow 'b' failed: Task 'callA' failed: Recursive sub-workflow call: a -> b -> a",
+                taskRun(run, "callB").getError());
+    }
+
+    @Test
+    void execute_SubWorkflowTooDeep_FailsTask() {
+        // Arrange
+        Workflow top = null;
+        for (int level = 1; level <= 4; level++) {
+            Workflow.Task call = task("call", "workflow");
+            call.setConfig(Map.of("workflowId", "level" + (level + 1)));
+            Workflow workflow = workflow("level" + level, call);
+            save(workflow);
+            top = top != null ? top : workflow;
+        }
+        save(workflow("level5", task("leaf", "noop")));
+
+        // Act
+        WorkflowRun run = execute(top);
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_FAILED, run.getStatus());
+        assertTrue(taskRun(run, "call").getError().endsWith("Sub-workflow nesting exceeds the maximum depth of 3"));
+    }
+
+    @Test
+    void execute_DeterministicTaskSameInputs_ReusesCachedOutput() {
+        // Arrange
+        Workflow.Task flaky = task("flaky", "flaky");
+        flaky.setConfig(Map.of("retries", 2, "deterministic", true));
+        ExecutionPlan plan = compile(workflow(flaky));
+        executeAndJoin(plan, Map.of("day", "2024-01-01"));
+
+        // Act
+        WorkflowRun run = executeAndJoin(plan, Map.of("day", "2024-01-01"));
+
+        // Assert
+        assertEquals("ok", taskRun(run, "flaky").getOutput());
+        assertTrue(taskRun(run, "flaky").isMemoized());
+        assertEquals(0, taskRun(run, "flaky").getAttempts());
+        assertEquals(3, flakyCalls.get());
+        assertEquals(1.0, meterRegistry.get(ExecutionMetrics.TASK_MEMO).tag("result", "hit").counter().count());
+    }
+
+    @Test
+    void execute_MemoizedResultCannotBePersisted_TaskStillSucceeds() {
+        // Arrange - Mongo rejects map keys with dots
+        MemoizedResultRepository repository = mock(MemoizedResultRepository.class);
+        when(repository.findById(anyString())).thenReturn(Optional.empty());
+        when(repository.save(any())).thenThrow(new IllegalArgumentException("Map key a.b contains dots"));
+        Workflow.Task echo = task("echo", "echo");
+        echo.setConfig(Map.of("deterministic", true));
+        TaskHandler handler = new TestHandler("echo", context -> Map.of("a.b", 1));
+        WorkflowExecutor executor = new WorkflowExecutor(new TaskHandlerRegistry(List.of(handler)), pool,
+                metrics, OutputSpiller.disabled(), MemoryBudget.unbounded(),
+                new TaskResultCache(10, 1 << 20, 1 << 20, repository, Duration.ofDays(1)), TaskGuards.disabled());
+
+        // Act
+        WorkflowRun run = executor.execute(compile(workflow(echo)), Map.of()).join();
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_COMPLETED, run.getStatus());
+        assertEquals(Map.of("a.b", 1), taskRun(run, "echo").getOutput());
+        assertEquals(1.0, meterRegistry.get(ExecutionMetrics.MEMO_PERSIST_FAILURES).counter().count());
+    }
+
+    @Test
+    void execute_DeterministicTaskDifferentInput_RunsHandler() {
+        // Arrange
+        Workflow.Task flaky = task("flaky", "flaky");
+        flaky.setConfig(Map.of("retries", 2, "deterministic", true));
+        ExecutionPlan plan = compile(workflow(flaky));
+        executeAndJoin(plan, Map.of("day", "2024-01-01"));
+
+        // Act
+        WorkflowRun run = executeAndJoin(plan, Map.of("day", "2024-01-02"));
+
+        // Assert
+        assertFalse(taskRun(run, "flaky").isMemoized());
+        assertEquals(4, flakyCalls.get());
+    }
+
+    @Test
+    void execute_DeterministicTaskUndeclaredInputDiffers_ReusesCachedOutput() {
+        // Arrange
+        Workflow.Task flaky = task("flaky", "flaky");
+        flaky.setConfig(Map.of("retries", 2, "deterministic", true, "inputKeys", List.of("day")));
+        ExecutionPlan plan = compile(workflow(flaky));
+        executeAndJoin(plan, Map.of("day", "2024-01-01", "requestId", "r-1"));
+
+        // Act
+        WorkflowRun run = executeAndJoin(plan, Map.of("day", "2024-01-01", "requestId", "r-2"));
+
+        // Assert
+        assertTrue(taskRun(run, "flaky").isMemoized());
+        assertEquals(3, flakyCalls.get());
+    }
+
+    @Test
+    void execute_InputKeysDeclared_TaskSeesOnlyThoseFields() {
+        // Arrange
+        Workflow.Task echo = task("echo", "echo");
+        echo.setConfig(Map.of("inputKeys", List.of("day", "missing")));
+        TaskHandler handler = new TestHandler("echo", context -> context.getInput());
+        WorkflowExecutor executor = new WorkflowExecutor(new TaskHandlerRegistry(List.of(handler)), pool,
+                new ExecutionMetrics(meterRegistry), OutputSpiller.disabled(), MemoryBudget.unbounded(),
+                TaskResultCache.disabled(), TaskGuards.disabled());
+
+        // Act
+        WorkflowRun run = executor.execute(compile(workflow(echo)), Map.of("day", "2024-01-01", "secret", "s")).join();
+
+        // Assert
+        assertEquals(Map.of("day", "2024-01-01"), taskRun(run, "echo").getOutput());
+    }
+
+    @Test
+    void execute_DeterministicTaskSpilledUpstream_KeysOnContentHashWithoutLoading() {
+        // Arrange
+        Workflow.Task length = task("length", "length");
+        length.setConfig(Map.of("deterministic", true));
+        ExecutionPlan plan = compile(workflow(task("big", "big", "length"), length));
+        executeAndJoin(plan, Map.of());
+        int loadsAfterFirstRun = outputStore.loads.get();
+
+        // Act
+        WorkflowRun run = executeAndJoin(plan, Map.of());
+
+        // Assert
+        assertNotNull(taskRun(run, "big").getOutputRef());
+        assertTrue(taskRun(run, "length").isMemoized());
+        assertEquals(4096, taskRun(run, "length").getOutput());
+        assertEquals(loadsAfterFirstRun, outputStore.loads.get());
+    }
+
+    @Test
+    void execute_NonDeterministicTask_NeverMemoized() {
+        // Arrange
+        ExecutionPlan plan = compile(workflow(task("flaky", "flaky")));
+        flakyCalls.set(2);
+        executeAndJoin(plan, Map.of());
+
+        // Act
+        WorkflowRun run = executeAndJoin(plan, Map.of());
+
+        // Assert
+        assertFalse(taskRun(run, "flaky").isMemoized());
+        assertEquals(0, resultCache.size());
+    }
+
+    @Test
+    void rerun_ReusedUpstream_RunsOnlyRemainingTasks() {
+        // Arrange
+        ExecutionPlan plan = compile(workflow(
+                task("a", "flaky", "b", "c"),
+                task("b", "concat", "d"),
+                task("c", "concat", "d"),
+                task("d", "concat")));
+
+        // Act
+        WorkflowRun run = workflowExecutor.rerun(plan, Map.of(), Map.of("a", "old-a", "b", "old-b"), "previous-run")
+                .join();
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_COMPLETED, run.getStatus());
+        assertEquals(0, flakyCalls.get());
+        assertEquals("previous-run", run.getRerunOf());
+        assertEquals("previous-run", taskRun(run, "a").getReusedFrom());
+        assertEquals("old-b", taskRun(run, "b").getOutput());
+        assertNull(taskRun(run, "c").getReusedFrom());
+        assertEquals("c<old-a", taskRun(run, "c").getOutput());
+        assertEquals("d<old-b<c<old-a", taskRun(run, "d").getOutput());
+        assertEquals(-1, run.getTrace().getTasks().get(0).getStartedAtMicros());
+    }
+
+    @Test
+    void rerun_SpilledUpstreamOutput_LoadedLazily() throws Exception {
+        // Arrange
+        OutputReference reference = outputStore.store("previous-run", "big", "x".repeat(4096), 4096);
+        ExecutionPlan plan = compile(workflow(task("big", "big", "consumer"), task("consumer", "length")));
+
+        // Act
+        WorkflowRun run = workflowExecutor.rerun(plan, Map.of(), Map.of("big", reference), "previous-run").join();
+
+        // Assert
+        assertSame(reference, taskRun(run, "big").getOutputRef());
+        assertEquals(4096, taskRun(run, "consumer").getOutput());
+    }
+
+    @Test
+    void execute_UnknownTaskType_FailsTask() {
+        // Act
+        WorkflowRun run = execute(workflow(task("mail", "carrier-pigeon")));
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_FAILED, run.getStatus());
+        assertEquals("No handler registered for task type: carrier-pigeon", taskRun(run, "mail").getError());
+    }
+
+    @Test
+    void execute_NoTasks_CompletesImmediately() {
+        // Act
+        WorkflowRun run = execute(new Workflow());
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_COMPLETED, run.getStatus());
+        assertTrue(run.getTasks().isEmpty());
+    }
+
+    @Test
+    void execute_WideFanOut_RunsEveryTask() {
+        // Arrange
+        List<Workflow.Task> tasks = new ArrayList<>();
+        List<String> middle = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            middle.add("m" + i);
+            tasks.add(task("m" + i, "noop", "sink"));
+        }
+        Workflow.Task source = task("source", "noop");
+        source.setNextTasks(middle);
+        tasks.add(source);
+        tasks.add(task("sink", "concat"));
+        Workflow workflow = new Workflow();
+        workflow.setTasks(tasks);
+
+        // Act
+        WorkflowRun run = execute(workflow);
+
+        // Assert
+        assertEquals(WorkflowRun.STATUS_COMPLETED, run.getStatus());
+        assertTrue(run.getTasks().stream().allMatch(task -> WorkflowRun.TaskRun.STATUS_COMPLETED.equals(task.getStatus())));
+    }
+
+    @Test
+    void compile_TemplateBasedTask_MergesTemplateConfig() {
+        // Arrange
+        TaskTemplate template = new TaskTemplate();
+        template.setId("template-1");
+        template.setType("noop");
+        template.setDefaultConfig(Map.of("output", "default", "timeout", 30));
+        Workflow.Task task = task("templated", null);
+        task.setTemplateId("template-1");
+        task.setConfig(Map.of("timeout", 60));
+        task.setConfigOverrides(Map.of("output", "override"));
+
+        // Act
+        ExecutionPlan plan = ExecutionPlan.compile(workflow(task), id -> Optional.of(template));
+
+        // Assert
+        ExecutionPlan.Node node = plan.getNode("templated");
+        assertEquals("noop", node.getType());
+        assertEquals(Map.of("output", "override", "timeout", 60), node.getConfig());
+    }
+
+    @Test
+    void compile_DanglingReference_ThrowsException() {
+        // Act & Assert
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> ExecutionPlan.compile(workflow(task("a", "noop", "missing")), id -> Optional.empty()));
+        assertEquals("Task 'a' references unknown task 'missing'", exception.getMessage());
+    }
+
+    @Test
+    void compile_Cycle_ThrowsException() {
+        // Act & Assert
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> ExecutionPlan.compile(workflow(task("a", "noop", "b"), task("b", "noop", "a")), id -> Optional.empty()));
+        assertEquals("Workflow contains a cycle", exception.getMessage());
+    }
+
+    private WorkflowExecutor budgetedExecutor(MemoryBudget budget, OutputSpiller spiller) {
+        return new WorkflowExecutor(handlerRegistry, pool, new ExecutionMetrics(meterRegistry), spiller, budget,
+                TaskResultCache.disabled(), TaskGuards.disabled());
+    }
+
+    private WorkflowExecutor guardedExecutor(TaskGuardProperties properties) {
+        return new WorkflowExecutor(handlerRegistry, pool, new ExecutionMetrics(meterRegistry),
+                OutputSpiller.disabled(), MemoryBudget.unbounded(), TaskResultCache.disabled(),
+                new TaskGuards(properties, meterRegistry));
+    }
+
+    private ExecutionPlan compile(Workflow workflow) {
+        return ExecutionPlan.compile(workflow, id -> Optional.empty());
+    }
+
+    private WorkflowRun executeAndJoin(ExecutionPlan plan, Map<String, Object> input) {
+        return workflowExecutor.execute(plan, input).join();
+    }
+
+    private WorkflowRun execute(Workflow workflow) {
+        ExecutionPlan plan = ExecutionPlan.compile(workflow, id -> Optional.empty());
+        return workflowExecutor.execute(plan, new HashMap<>()).join();
+    }
+
+    private WorkflowRun.TaskRun taskRun(WorkflowRun run, String name) {
+        return run.getTasks().stream().filter(task -> name.equals(task.getName())).findFirst().orElseThrow();
+    }
+
+    private Workflow workflow(Workflow.Task... tasks) {
+        return workflow("workflow-id", tasks);
+    }
+
+    private Workflow workflow(String id, Workflow.Task... tasks) {
+        Workflow workflow = new Workflow();
+        workflow.setId(id);
+        workflow.setTasks(Arrays.asList(tasks));
+        return workflow;
+    }
+
+    private void save(Workflow workflow) {
+        savedPlans.put(workflow.getId(), compile(workflow));
+    }
+
+    private Workflow.Task task(String name, String type, String... nextTasks) {
+        Workflow.Task task = new Workflow.Task();
+        task.setName(name);
+        task.setType(type);
+        task.setNextTasks(Arrays.asList(nextTasks));
+        return task;
+    }
+
+    private record TestHandler(String type, ThrowingFunction body) implements TaskHandler {
+        @Override
+        public Set<String> getTypes() {
+            return Set.of(type);
+        }
+
+        @Override
+        public Object execute(TaskContext context) throws Exception {
+            return body.apply(context);
+        }
+    }
+
+    private interface ThrowingFunction {
+        Object apply(TaskContext context) throws Exception;
+    }
+
+    private static class InMemoryOutputStore implements OutputStore {
+        private final Map<String, Object> files = new ConcurrentHashMap<>();
+        private final AtomicInteger loads = new AtomicInteger();
+
+        @Override
+        public OutputReference store(String runId, String taskName, Object output, long sizeBytes) {
+            String fileId = runId + "/" + taskName;
+            files.put(fileId, output);
+            return new OutputReference(fileId, sizeBytes, sizeBytes, String.valueOf(output.hashCode()));
+        }
+
+        @Override
+        public Object load(OutputReference reference) {
+            loads.incrementAndGet();
+            return files.get(reference.getFileId());
+        }
+
+        @Override
+        public InputStream open(OutputReference reference) {
+            return new ByteArrayInputStream(String.valueOf(load(reference)).getBytes());
+        }
+
+        @Override
+        public boolean exists(OutputReference reference) {
+            return files.containsKey(reference.getFileId());
+        }
+
+        @Override
+        public void deleteRun(String runId) {
+            files.keySet().removeIf(fileId -> fileId.startsWith(runId + "/"));
+        }
+    }
+}
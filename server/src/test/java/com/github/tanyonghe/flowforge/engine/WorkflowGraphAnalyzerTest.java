@@ -0,0 +1,169 @@
+package com.github.tanyonghe.flowforge.engine;
+
+import com.github.tanyonghe.flowforge.model.Workflow;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkflowGraphAnalyzerTest {
+
+    @Test
+    void analyze_Diamond_ComputesOrderAndShape() {
+        // Arrange
+        Workflow workflow = workflow(
+                task("start", "left", "right"),
+                task("left", "end"),
+                task("right", "end"),
+                task("end"));
+
+        // Act
+        Workflow.Graph graph = WorkflowGraphAnalyzer.analyze(workflow);
+
+        // Assert
+        assertEquals(List.of("start", "left", "right", "end"), graph.getTopologicalOrder());
+        assertEquals(List.of("start"), graph.getRoots());
+        assertEquals(List.of("end"), graph.getSinks());
+        assertEquals(List.of(List.of("start"), List.of("left", "right"), List.of("end")), graph.getLevels());
+        assertEquals(3, graph.getDepth());
+        assertEquals(2, graph.getMaxWidth());
+        assertEquals(4, graph.getEdgeCount());
+    }
+
+    @Test
+    void analyze_LevelUsesLongestChain() {
+        // Arrange
+        Workflow workflow = workflow(task("a", "b", "c"), task("b", "c"), task("c"));
+
+        // Act
+        Workflow.Graph graph = WorkflowGraphAnalyzer.analyze(workflow);
+
+        // Assert
+        assertEquals(List.of(List.of("a"), List.of("b"), List.of("c")), graph.getLevels());
+        assertEquals(1, graph.getMaxWidth());
+    }
+
+    @Test
+    void analyze_NoTasks_IsValid() {
+        // Act
+        Workflow.Graph graph = WorkflowGraphAnalyzer.analyze(new Workflow());
+
+        // Assert
+        assertTrue(graph.getTopologicalOrder().isEmpty());
+        assertEquals(0, graph.getDepth());
+        assertEquals(0, graph.getMaxWidth());
+    }
+
+    @Test
+    void analyze_CycleWithDownstreamTask_ReportsBoth() {
+        // Arrange
+        Workflow workflow = workflow(task("start", "a"), task("a", "b"), task("b", "a", "after"), task("after"));
+
+        // Act
+        WorkflowValidationException exception = assertThrows(WorkflowValidationException.class,
+                () -> WorkflowGraphAnalyzer.analyze(workflow));
+
+        // Assert
+        assertEquals(List.of(
+                "Workflow contains a cycle through tasks: a, b",
+                "Tasks unreachable because they depend on a cycle: after"), exception.getErrors());
+    }
+
+    @Test
+    void analyze_StartTasksDeclared_RejectsOtherRootsAndWhatOnlyTheyReach() {
+        // Arrange
+        Workflow workflow = workflow(
+                typed(task("begin", "work"), "start"),
+                task("work", "finish"),
+                task("orphan", "after", "finish"),
+                task("after"),
+                typed(task("finish"), "end"));
+
+        // Act
+        WorkflowValidationException exception = assertThrows(WorkflowValidationException.class,
+                () -> WorkflowGraphAnalyzer.analyze(workflow));
+
+        // Assert
+        assertEquals(List.of(
+                "Tasks without predecessors must be start tasks: orphan",
+                "Tasks unreachable from a start task: after"), exception.getErrors());
+    }
+
+    @Test
+    void analyze_StartTasksDeclared_OnlyStartTasksAreRoots() {
+        // Arrange
+        Workflow workflow = workflow(
+                typed(task("begin", "left", "right"), "start"),
+                task("left", "finish"),
+                task("right", "finish"),
+                typed(task("finish"), "end"));
+
+        // Act
+        Workflow.Graph graph = WorkflowGraphAnalyzer.analyze(workflow);
+
+        // Assert
+        assertEquals(List.of("begin"), graph.getRoots());
+    }
+
+    @Test
+    void analyze_DanglingReferences_ReportsEveryOne() {
+        // Arrange
+        Workflow workflow = workflow(task("a", "missing"), task("b", "gone"));
+
+        // Act
+        WorkflowValidationException exception = assertThrows(WorkflowValidationException.class,
+                () -> WorkflowGraphAnalyzer.analyze(workflow));
+
+        // Assert
+        assertEquals(List.of(
+                "Task 'a' references unknown task 'missing'",
+                "Task 'b' references unknown task 'gone'"), exception.getErrors());
+    }
+
+    @Test
+    void analyze_DuplicateNames_Rejected() {
+        // Arrange
+        Workflow workflow = workflow(task("a"), task("a"));
+
+        // Act & Assert
+        WorkflowValidationException exception = assertThrows(WorkflowValidationException.class,
+                () -> WorkflowGraphAnalyzer.analyze(workflow));
+        assertEquals("Duplicate task name: a", exception.getMessage());
+    }
+
+    @Test
+    void compile_AnalysedWorkflow_MatchesUnanalysedPlan() {
+        // Arrange
+        Workflow workflow = workflow(task("start", "left", "right"), task("left", "end"), task("right", "end"), task("end"));
+        ExecutionPlan unanalysed = ExecutionPlan.compile(workflow, id -> Optional.empty());
+        workflow.setGraph(WorkflowGraphAnalyzer.analyze(workflow));
+
+        // Act
+        ExecutionPlan analysed = ExecutionPlan.compile(workflow, id -> Optional.empty());
+
+        // Assert
+        assertArrayEquals(unanalysed.getRoots(), analysed.getRoots());
+        assertArrayEquals(unanalysed.getNode("end").getPredecessors(), analysed.getNode("end").getPredecessors());
+    }
+
+    private Workflow workflow(Workflow.Task... tasks) {
+        Workflow workflow = new Workflow();
+        workflow.setTasks(Arrays.asList(tasks));
+        return workflow;
+    }
+
+    private Workflow.Task typed(Workflow.Task task, String type) {
+        task.setType(type);
+        return task;
+    }
+
+    private Workflow.Task task(String name, String... nextTasks) {
+        Workflow.Task task = new Workflow.Task();
+        task.setName(name);
+        task.setNextTasks(Arrays.asList(nextTasks));
+        return task;
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.tanyonghe.flowforge.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtAuthenticationFilterTest {
+
+    private JwtUtil jwtUtil;
+    private JwtAuthenticationFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "testSecretKeyThatIsLongEnoughForHS256Algorithm");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 86400000L);
+        ReflectionTestUtils.setField(jwtUtil, "refreshExpiration", 604800000L);
+        filter = new JwtAuthenticationFilter(jwtUtil);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void doFilter_AccessToken_AuthenticatesWithRole() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + jwtUtil.generateToken("admin", "ADMIN"));
+
+        // Act
+        Authentication authentication = filter(request);
+
+        // Assert
+        assertEquals("admin", authentication.getName());
+        assertEquals("ROLE_ADMIN", authentication.getAuthorities().iterator().next().getAuthority());
+    }
+
+    @Test
+    void doFilter_RefreshToken_StaysAnonymous() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + jwtUtil.generateRefreshToken("admin", "a@example.com", "ADMIN"));
+
+        // Act
+        Authentication authentication = filter(request);
+
+        // Assert
+        assertNull(authentication);
+    }
+
+    @Test
+    void doFilter_InvalidToken_StaysAnonymous() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer not-a-token");
+
+        // Act
+        Authentication authentication = filter(request);
+
+        // Assert
+        assertNull(authentication);
+    }
+
+    private Authentication filter(MockHttpServletRequest request) throws Exception {
+        AtomicReference<Authentication> seen = new AtomicReference<>();
+        MockFilterChain chain = new MockFilterChain() {
+            @Override
+            public void doFilter(jakarta.servlet.ServletRequest req, jakarta.servlet.ServletResponse res) {
+                seen.set(SecurityContextHolder.getContext().getAuthentication());
+            }
+        };
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        return seen.get();
+    }
+}
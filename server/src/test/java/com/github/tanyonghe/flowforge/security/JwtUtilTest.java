@@ -1,5 +1,7 @@
 package com.github.tanyonghe.flowforge.security;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.test.util.ReflectionTestUtils;
@@ -34,7 +36,7 @@ class JwtUtilTest {
     @Test
     void generateRefreshToken_ValidInput_ReturnsValidToken() {
         // Act
-        String token = jwtUtil.generateRefreshToken("testuser");
+        String token = jwtUtil.generateRefreshToken("testuser", "test@example.com", "USER");
 
         // Assert
         assertNotNull(token);
@@ -42,6 +44,49 @@ class JwtUtilTest {
         assertTrue(token.split("\\.").length == 3); // JWT has 3 parts
     }
 
+    @Test
+    void extractRefreshClaims_RefreshToken_ReturnsClaimsWithTokenId() {
+        // Arrange
+        String token = jwtUtil.generateRefreshToken("testuser", "test@example.com", "USER");
+
+        // Act
+        Claims claims = jwtUtil.extractRefreshClaims(token);
+
+        // Assert
+        assertNotNull(claims.getId());
+        assertEquals("testuser", claims.getSubject());
+        assertEquals("test@example.com", claims.get("email", String.class));
+        assertEquals("USER", claims.get("role", String.class));
+    }
+
+    @Test
+    void extractRefreshClaims_AccessToken_ThrowsException() {
+        // Arrange
+        String token = jwtUtil.generateToken("testuser", "USER");
+
+        // Act & Assert
+        assertThrows(JwtException.class, () -> jwtUtil.extractRefreshClaims(token));
+    }
+
+    @Test
+    void extractAccessClaims_RefreshToken_ThrowsException() {
+        // Arrange
+        String token = jwtUtil.generateRefreshToken("testuser", "test@example.com", "ADMIN");
+
+        // Act & Assert
+        assertThrows(JwtException.class, () -> jwtUtil.extractAccessClaims(token));
+    }
+
+    @Test
+    void generateRefreshToken_SameUser_GeneratesUniqueTokenIds() {
+        // Act
+        String first = jwtUtil.generateRefreshToken("testuser", "test@example.com", "USER");
+        String second = jwtUtil.generateRefreshToken("testuser", "test@example.com", "USER");
+
+        // Assert
+        assertNotEquals(jwtUtil.extractRefreshClaims(first).getId(), jwtUtil.extractRefreshClaims(second).getId());
+    }
+
     @Test
     void extractUsername_ValidToken_ReturnsUsername() {
         // Arrange
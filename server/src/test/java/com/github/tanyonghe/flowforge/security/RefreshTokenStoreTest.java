@@ -0,0 +1,50 @@
+package com.github.tanyonghe.flowforge.security;
+
+import com.github.tanyonghe.flowforge.model.RevokedToken;
+import com.github.tanyonghe.flowforge.repository.RevokedTokenRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshTokenStoreTest {
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @InjectMocks
+    private RefreshTokenStore refreshTokenStore;
+
+    @Test
+    void revoke_NewToken_ReturnsTrue() {
+        // Act
+        boolean revoked = refreshTokenStore.revoke("token-id", "testuser", new Date());
+
+        // Assert
+        assertTrue(revoked);
+        verify(revokedTokenRepository).insert(argThat((RevokedToken token) ->
+                "token-id".equals(token.getId()) && "testuser".equals(token.getUsername())));
+    }
+
+    @Test
+    void revoke_AlreadyRevokedToken_ReturnsFalse() {
+        // Arrange
+        when(revokedTokenRepository.insert(any(RevokedToken.class)))
+                .thenThrow(new DuplicateKeyException("duplicate key"));
+
+        // Act
+        boolean revoked = refreshTokenStore.revoke("token-id", "testuser", new Date());
+
+        // Assert
+        assertFalse(revoked);
+    }
+}
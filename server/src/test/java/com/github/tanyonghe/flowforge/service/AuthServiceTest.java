@@ -5,15 +5,21 @@ import com.github.tanyonghe.flowforge.dto.AuthResponse;
 import com.github.tanyonghe.flowforge.model.User;
 import com.github.tanyonghe.flowforge.repository.UserRepository;
 import com.github.tanyonghe.flowforge.security.JwtUtil;
+import com.github.tanyonghe.flowforge.security.RefreshTokenStore;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.time.LocalDateTime;
+import java.util.Date;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -32,6 +38,12 @@ class AuthServiceTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private RefreshTokenStore refreshTokenStore;
+
     @InjectMocks
     private AuthService authService;
 
@@ -63,10 +75,8 @@ class AuthServiceTest {
                 .thenReturn(true);
         when(jwtUtil.generateToken("testuser", "USER"))
                 .thenReturn("jwt-token");
-        when(jwtUtil.generateRefreshToken("testuser"))
+        when(jwtUtil.generateRefreshToken("testuser", "test@example.com", "USER"))
                 .thenReturn("refresh-token");
-        when(userRepository.save(any(User.class)))
-                .thenReturn(testUser);
 
         // Act
         AuthResponse response = authService.login(authRequest);
@@ -80,9 +90,9 @@ class AuthServiceTest {
         assertEquals("USER", response.getRole());
         assertEquals(86400000L, response.getExpiresIn());
 
-        verify(userRepository).save(any(User.class));
+        verify(userService).updateLastLogin("testuser");
         verify(jwtUtil).generateToken("testuser", "USER");
-        verify(jwtUtil).generateRefreshToken("testuser");
+        verify(jwtUtil).generateRefreshToken("testuser", "test@example.com", "USER");
     }
 
     @Test
@@ -140,17 +150,13 @@ class AuthServiceTest {
         registerRequest.setUsername("newuser");
         registerRequest.setPassword("password123");
         
-        when(userRepository.existsByUsername("newuser"))
-                .thenReturn(false);
-        when(userRepository.existsByEmail("new@example.com"))
-                .thenReturn(false);
         when(passwordEncoder.encode("password123"))
                 .thenReturn("hashedPassword");
         when(jwtUtil.generateToken("newuser", "USER"))
                 .thenReturn("jwt-token");
-        when(jwtUtil.generateRefreshToken("newuser"))
+        when(jwtUtil.generateRefreshToken("newuser", "new@example.com", "USER"))
                 .thenReturn("refresh-token");
-        when(userRepository.save(any(User.class)))
+        when(userService.createUser(any(User.class)))
                 .thenReturn(testUser);
 
         // Act
@@ -164,50 +170,79 @@ class AuthServiceTest {
         assertEquals("new@example.com", response.getEmail());
         assertEquals("USER", response.getRole());
 
-        verify(userRepository).save(any(User.class));
+        verify(userService).createUser(any(User.class));
         verify(passwordEncoder).encode("password123");
     }
 
     @Test
     void register_UsernameExists_ThrowsException() {
         // Arrange
-        when(userRepository.existsByUsername("testuser"))
-                .thenReturn(true);
+        when(userService.createUser(any(User.class)))
+                .thenThrow(new DuplicateKeyException("E11000 duplicate key error collection: flowforge.users index: username dup key: { username: \"testuser\" }"));
 
         // Act & Assert
-        RuntimeException exception = assertThrows(RuntimeException.class,
+        RegistrationRejectedException exception = assertThrows(RegistrationRejectedException.class,
                 () -> authService.register(authRequest, "test@example.com", "John", "Doe"));
         assertEquals("Username already exists", exception.getMessage());
 
-        verify(userRepository, never()).save(any(User.class));
+        verify(jwtUtil, never()).generateToken(anyString(), anyString());
     }
 
     @Test
     void register_EmailExists_ThrowsException() {
         // Arrange
-        when(userRepository.existsByUsername("testuser"))
-                .thenReturn(false);
-        when(userRepository.existsByEmail("test@example.com"))
-                .thenReturn(true);
+        when(userService.createUser(any(User.class)))
+                .thenThrow(new DuplicateKeyException("E11000 duplicate key error collection: flowforge.users index: email dup key: { email: \"test@example.com\" }"));
 
         // Act & Assert
-        RuntimeException exception = assertThrows(RuntimeException.class,
+        RegistrationRejectedException exception = assertThrows(RegistrationRejectedException.class,
                 () -> authService.register(authRequest, "test@example.com", "John", "Doe"));
         assertEquals("Email already exists", exception.getMessage());
 
-        verify(userRepository, never()).save(any(User.class));
+        verify(jwtUtil, never()).generateToken(anyString(), anyString());
+    }
+
+    @Test
+    void register_MissingPassword_RejectedWithoutInsert() {
+        // Arrange
+        authRequest.setPassword(" ");
+
+        // Act & Assert
+        RegistrationRejectedException exception = assertThrows(RegistrationRejectedException.class,
+                () -> authService.register(authRequest, "test@example.com", "John", "Doe"));
+        assertEquals("Username, password and email are required", exception.getMessage());
+
+        verify(userService, never()).createUser(any(User.class));
+    }
+
+    @Test
+    void register_SingleRoundTrip_SkipsExistenceChecks() {
+        // Arrange
+        when(userService.createUser(any(User.class)))
+                .thenReturn(testUser);
+
+        // Act
+        authService.register(authRequest, "test@example.com", "John", "Doe");
+
+        // Assert
+        verify(userRepository, never()).existsByUsername(anyString());
+        verify(userRepository, never()).existsByEmail(anyString());
+        verify(userService).createUser(any(User.class));
     }
 
     @Test
     void refreshToken_SuccessfulRefresh_ReturnsNewTokens() {
         // Arrange
-        when(jwtUtil.extractUsername("refresh-token"))
-                .thenReturn("testuser");
-        when(userRepository.findByUsername("testuser"))
+        Claims claims = refreshClaims("token-id");
+        when(jwtUtil.extractRefreshClaims("refresh-token"))
+                .thenReturn(claims);
+        when(refreshTokenStore.revoke("token-id", "testuser", claims.getExpiration()))
+                .thenReturn(true);
+        when(userService.getUserByUsername("testuser"))
                 .thenReturn(Optional.of(testUser));
         when(jwtUtil.generateToken("testuser", "USER"))
                 .thenReturn("new-jwt-token");
-        when(jwtUtil.generateRefreshToken("testuser"))
+        when(jwtUtil.generateRefreshToken("testuser", "test@example.com", "USER"))
                 .thenReturn("new-refresh-token");
 
         // Act
@@ -222,30 +257,93 @@ class AuthServiceTest {
         assertEquals("USER", response.getRole());
     }
 
+    @Test
+    void refreshToken_UserChangedSinceIssue_UsesCurrentRecord() {
+        // Arrange - the claims still say USER and the old email
+        Claims claims = refreshClaims("token-id");
+        when(jwtUtil.extractRefreshClaims("refresh-token"))
+                .thenReturn(claims);
+        when(refreshTokenStore.revoke("token-id", "testuser", claims.getExpiration()))
+                .thenReturn(true);
+        testUser.setRole("VIEWER");
+        testUser.setEmail("moved@example.com");
+        when(userService.getUserByUsername("testuser"))
+                .thenReturn(Optional.of(testUser));
+
+        // Act
+        AuthResponse response = authService.refreshToken("refresh-token");
+
+        // Assert
+        assertEquals("VIEWER", response.getRole());
+        assertEquals("moved@example.com", response.getEmail());
+        verify(jwtUtil).generateToken("testuser", "VIEWER");
+        verify(jwtUtil).generateRefreshToken("testuser", "moved@example.com", "VIEWER");
+    }
+
+    @Test
+    void refreshToken_DisabledOrMissingUser_ThrowsException() {
+        // Arrange
+        Claims claims = refreshClaims("token-id");
+        when(jwtUtil.extractRefreshClaims("refresh-token"))
+                .thenReturn(claims);
+        when(refreshTokenStore.revoke("token-id", "testuser", claims.getExpiration()))
+                .thenReturn(true);
+        testUser.setEnabled(false);
+        when(userService.getUserByUsername("testuser"))
+                .thenReturn(Optional.of(testUser))
+                .thenReturn(Optional.empty());
+
+        // Act & Assert
+        RuntimeException disabled = assertThrows(RuntimeException.class,
+                () -> authService.refreshToken("refresh-token"));
+        RuntimeException missing = assertThrows(RuntimeException.class,
+                () -> authService.refreshToken("refresh-token"));
+        assertEquals("Invalid refresh token", disabled.getMessage());
+        assertEquals("Invalid refresh token", missing.getMessage());
+        verify(jwtUtil, never()).generateToken(anyString(), anyString());
+    }
+
     @Test
     void refreshToken_InvalidToken_ThrowsException() {
         // Arrange
-        when(jwtUtil.extractUsername("invalid-token"))
-                .thenThrow(new RuntimeException("Invalid token"));
+        when(jwtUtil.extractRefreshClaims("invalid-token"))
+                .thenThrow(new JwtException("Invalid token"));
 
         // Act & Assert
         RuntimeException exception = assertThrows(RuntimeException.class,
                 () -> authService.refreshToken("invalid-token"));
         assertEquals("Invalid refresh token", exception.getMessage());
+        verify(refreshTokenStore, never()).revoke(anyString(), anyString(), any(Date.class));
     }
 
     @Test
-    void refreshToken_UserNotFound_ThrowsException() {
-        // Arrange
-        when(jwtUtil.extractUsername("refresh-token"))
-                .thenReturn("testuser");
-        when(userRepository.findByUsername("testuser"))
-                .thenReturn(Optional.empty());
+    void refreshToken_RevokedToken_ThrowsException() {
+        // Arrange - the token was rotated or logged out before, here or on another replica
+        Claims claims = refreshClaims("token-id");
+        when(jwtUtil.extractRefreshClaims("refresh-token"))
+                .thenReturn(claims);
+        when(refreshTokenStore.revoke("token-id", "testuser", claims.getExpiration()))
+                .thenReturn(false);
 
         // Act & Assert
         RuntimeException exception = assertThrows(RuntimeException.class,
                 () -> authService.refreshToken("refresh-token"));
         assertEquals("Invalid refresh token", exception.getMessage());
+        verify(jwtUtil, never()).generateToken(anyString(), anyString());
+    }
+
+    @Test
+    void logout_ValidToken_RevokesToken() {
+        // Arrange
+        Claims claims = refreshClaims("token-id");
+        when(jwtUtil.extractRefreshClaims("refresh-token"))
+                .thenReturn(claims);
+
+        // Act
+        authService.logout("refresh-token");
+
+        // Assert
+        verify(refreshTokenStore).revoke("token-id", "testuser", claims.getExpiration());
     }
 
     @Test
@@ -253,7 +351,7 @@ class AuthServiceTest {
         // Arrange
         when(jwtUtil.extractUsername("jwt-token"))
                 .thenReturn("testuser");
-        when(userRepository.findByUsername("testuser"))
+        when(userService.getUserByUsername("testuser"))
                 .thenReturn(Optional.of(testUser));
 
         // Act
@@ -271,7 +369,7 @@ class AuthServiceTest {
         // Arrange
         when(jwtUtil.extractUsername("jwt-token"))
                 .thenReturn("testuser");
-        when(userRepository.findByUsername("testuser"))
+        when(userService.getUserByUsername("testuser"))
                 .thenReturn(Optional.empty());
 
         // Act & Assert
@@ -279,4 +377,14 @@ class AuthServiceTest {
                 () -> authService.getCurrentUser("jwt-token"));
         assertEquals("User not found", exception.getMessage());
     }
-} 
\ No newline at end of file
+
+    private Claims refreshClaims(String tokenId) {
+        Claims claims = Jwts.claims();
+        claims.setId(tokenId);
+        claims.setSubject("testuser");
+        claims.setExpiration(new Date(System.currentTimeMillis() + 604800000L));
+        claims.put("email", "test@example.com");
+        claims.put("role", "USER");
+        return claims;
+    }
+}
\ No newline at end of file
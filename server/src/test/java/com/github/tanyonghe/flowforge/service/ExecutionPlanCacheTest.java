@@ -0,0 +1,114 @@
+package com.github.tanyonghe.flowforge.service;
+
+import com.github.tanyonghe.flowforge.engine.ExecutionPlan;
+import com.github.tanyonghe.flowforge.model.Workflow;
+import com.github.tanyonghe.flowforge.repository.WorkflowRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExecutionPlanCacheTest {
+
+    @Mock
+    private WorkflowRepository workflowRepository;
+
+    @Mock
+    private TaskTemplateService taskTemplateService;
+
+    private final Object catalog = new Object();
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(taskTemplateService.getCatalogVersion()).thenReturn(catalog);
+    }
+
+    @Test
+    void getPlan_WithinTtl_SkipsRepository() {
+        // Arrange
+        ExecutionPlanCache cache = new ExecutionPlanCache(workflowRepository, taskTemplateService, Duration.ofMinutes(1), 10);
+        when(workflowRepository.findById("wf")).thenReturn(Optional.of(workflow("rev-1")));
+
+        // Act
+        ExecutionPlan first = cache.getPlan("wf").orElseThrow();
+        ExecutionPlan second = cache.getPlan("wf").orElseThrow();
+
+        // Assert
+        assertSame(first, second);
+        verify(workflowRepository, times(1)).findById("wf");
+    }
+
+    @Test
+    void getPlan_AfterTtlWithSameRevision_ReusesPlan() {
+        // Arrange
+        ExecutionPlanCache cache = new ExecutionPlanCache(workflowRepository, taskTemplateService, Duration.ZERO, 10);
+        when(workflowRepository.findById("wf")).thenReturn(Optional.of(workflow("rev-1")));
+
+        // Act
+        ExecutionPlan first = cache.getPlan("wf").orElseThrow();
+        ExecutionPlan second = cache.getPlan("wf").orElseThrow();
+
+        // Assert
+        assertSame(first, second);
+        verify(workflowRepository, times(2)).findById("wf");
+    }
+
+    @Test
+    void getPlan_NewRevisionOrCatalog_Recompiles() {
+        // Arrange
+        ExecutionPlanCache cache = new ExecutionPlanCache(workflowRepository, taskTemplateService, Duration.ofMinutes(1), 10);
+        ExecutionPlan original = cache.getPlan(workflow("rev-1"));
+
+        // Act
+        ExecutionPlan edited = cache.getPlan(workflow("rev-2"));
+        when(taskTemplateService.getCatalogVersion()).thenReturn(new Object());
+        ExecutionPlan afterTemplateChange = cache.getPlan(workflow("rev-2"));
+
+        // Assert
+        assertNotSame(original, edited);
+        assertNotSame(edited, afterTemplateChange);
+    }
+
+    @Test
+    void getPlan_WithoutRevision_IsNotCached() {
+        // Arrange
+        ExecutionPlanCache cache = new ExecutionPlanCache(workflowRepository, taskTemplateService, Duration.ofMinutes(1), 10);
+
+        // Act & Assert
+        assertNotSame(cache.getPlan(workflow(null)), cache.getPlan(workflow(null)));
+    }
+
+    @Test
+    void evict_RemovesPlan() {
+        // Arrange
+        ExecutionPlanCache cache = new ExecutionPlanCache(workflowRepository, taskTemplateService, Duration.ofMinutes(1), 10);
+        when(workflowRepository.findById("wf")).thenReturn(Optional.of(workflow("rev-1")), Optional.empty());
+        cache.getPlan("wf");
+
+        // Act
+        cache.evict("wf");
+
+        // Assert
+        assertTrue(cache.getPlan("wf").isEmpty());
+    }
+
+    private Workflow workflow(String revision) {
+        Workflow.Task task = new Workflow.Task();
+        task.setName("only");
+        task.setType("noop");
+        Workflow workflow = new Workflow();
+        workflow.setId("wf");
+        workflow.setRevision(revision);
+        workflow.setTasks(List.of(task));
+        return workflow;
+    }
+}
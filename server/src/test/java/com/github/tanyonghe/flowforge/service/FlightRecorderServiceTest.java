@@ -0,0 +1,80 @@
+package com.github.tanyonghe.flowforge.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlightRecorderServiceTest {
+
+    private FlightRecorderService flightRecorderService;
+
+    @BeforeEach
+    void setUp() {
+        flightRecorderService = new FlightRecorderService("default", Duration.ofMinutes(1), DataSize.ofMegabytes(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        flightRecorderService.close();
+    }
+
+    @Test
+    void startRecording_DurationAboveLimit_IsBounded() throws Exception {
+        // Act
+        Map<String, Object> recording = flightRecorderService.startRecording(Duration.ofHours(1));
+
+        // Assert
+        assertEquals("RUNNING", recording.get("state"));
+        assertEquals(Duration.ofMinutes(1), recording.get("duration"));
+        assertEquals(DataSize.ofMegabytes(10).toBytes(), recording.get("maxSize"));
+    }
+
+    @Test
+    void recordingSettings_DisablesEventsCarryingSecrets() throws Exception {
+        // Act
+        Map<String, String> settings = FlightRecorderService.recordingSettings("default");
+
+        // Assert
+        assertEquals("false", settings.get("jdk.InitialEnvironmentVariable#enabled"));
+        assertEquals("false", settings.get("jdk.InitialSystemProperty#enabled"));
+        assertEquals("false", settings.get("jdk.JVMInformation#enabled"));
+        assertEquals("true", settings.get("jdk.ThreadPark#enabled"));
+    }
+
+    @Test
+    void startRecording_AlreadyRunning_ThrowsException() throws Exception {
+        // Arrange
+        flightRecorderService.startRecording(null);
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> flightRecorderService.startRecording(null));
+    }
+
+    @Test
+    void dumpRecording_RunningRecording_WritesJfrFile() throws Exception {
+        // Arrange
+        long id = (long) flightRecorderService.startRecording(null).get("id");
+
+        // Act
+        Path file = flightRecorderService.dumpRecording(id);
+
+        // Assert
+        assertTrue(Files.size(file) > 0);
+        assertEquals("RUNNING", flightRecorderService.getRecording(id).get("state"));
+        Files.delete(file);
+    }
+
+    @Test
+    void stopRecording_UnknownId_ThrowsException() {
+        // Act & Assert
+        assertThrows(RuntimeException.class, () -> flightRecorderService.stopRecording(-1));
+    }
+}
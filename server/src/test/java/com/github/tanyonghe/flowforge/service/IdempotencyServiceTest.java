@@ -0,0 +1,212 @@
+package com.github.tanyonghe.flowforge.service;
+
+import com.github.tanyonghe.flowforge.model.IdempotencyRecord;
+import com.github.tanyonghe.flowforge.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceTest {
+
+    private static final Map<String, Object> INPUT = Map.of("param", "value");
+
+    @Mock
+    private IdempotencyRecordRepository repository;
+
+    private IdempotencyService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new IdempotencyService(repository, Duration.ofHours(24), Duration.ofMinutes(10),
+                Duration.ofMillis(200), 100, System::currentTimeMillis);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void execute_Retry_ReplaysResultWithoutRunningAgain() {
+        // Arrange
+        AtomicInteger runs = new AtomicInteger();
+        service.execute("user/wf", "key-1", INPUT, () -> Map.of("runId", "run-" + runs.incrementAndGet()));
+
+        // Act
+        Map<String, Object> retried = service.execute("user/wf", "key-1", INPUT,
+                () -> Map.of("runId", "run-" + runs.incrementAndGet()));
+
+        // Assert
+        assertEquals("run-1", retried.get("runId"));
+        assertEquals(1, runs.get());
+        verify(repository).insert(any(IdempotencyRecord.class));
+        verify(repository).save(argThat(record ->
+                IdempotencyRecord.STATUS_COMPLETED.equals(record.getStatus())
+                        && record.getExpiresAt().after(new Date(System.currentTimeMillis() + Duration.ofHours(23).toMillis()))));
+    }
+
+    @Test
+    void execute_DifferentBodySameKey_ThrowsMismatch() {
+        // Arrange
+        service.execute("user/wf", "key-1", INPUT, () -> Map.of("runId", "run-1"));
+
+        // Act
+        IdempotencyConflictException e = assertThrows(IdempotencyConflictException.class,
+                () -> service.execute("user/wf", "key-1", Map.of("param", "other"), () -> Map.of("runId", "run-2")));
+
+        // Assert
+        assertEquals(IdempotencyConflictException.Reason.REQUEST_MISMATCH, e.getReason());
+    }
+
+    @Test
+    void execute_ConcurrentDuplicate_JoinsInFlightCall() throws Exception {
+        // Arrange
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        CompletableFuture<Map<String, Object>> first = CompletableFuture.supplyAsync(() ->
+                service.execute("user/wf", "key-1", INPUT, () -> {
+                    started.countDown();
+                    await(release);
+                    return Map.of("runId", "run-" + runs.incrementAndGet());
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Act
+        CompletableFuture<Map<String, Object>> duplicate = CompletableFuture.supplyAsync(() ->
+                service.execute("user/wf", "key-1", INPUT, () -> Map.of("runId", "run-" + runs.incrementAndGet())));
+        Thread.sleep(50);
+        release.countDown();
+
+        // Assert
+        assertEquals("run-1", first.get(5, TimeUnit.SECONDS).get("runId"));
+        assertEquals("run-1", duplicate.get(5, TimeUnit.SECONDS).get("runId"));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void execute_CompletedOnAnotherInstance_ReturnsStoredResult() {
+        // Arrange
+        IdempotencyRecord stored = new IdempotencyRecord();
+        stored.setStatus(IdempotencyRecord.STATUS_COMPLETED);
+        stored.setResult(Map.of("runId", "remote-run"));
+        stored.setExpiresAt(new Date(System.currentTimeMillis() + 60_000));
+        when(repository.insert(any(IdempotencyRecord.class))).thenAnswer(invocation -> {
+            // The other instance stored the same request
+            stored.setRequestHash(invocation.<IdempotencyRecord>getArgument(0).getRequestHash());
+            throw new DuplicateKeyException("dup");
+        });
+        when(repository.findById(anyString())).thenReturn(Optional.of(stored));
+
+        // Act
+        Map<String, Object> result = service.execute("user/wf", "key-1", INPUT, () -> fail("must not run"));
+
+        // Assert
+        assertEquals("remote-run", result.get("runId"));
+    }
+
+    @Test
+    void execute_StillRunningOnAnotherInstance_ThrowsInProgressAfterWaiting() {
+        // Arrange
+        when(repository.insert(any(IdempotencyRecord.class))).thenThrow(new DuplicateKeyException("dup"));
+        IdempotencyRecord running = new IdempotencyRecord();
+        running.setStatus(IdempotencyRecord.STATUS_IN_PROGRESS);
+        when(repository.findById(anyString())).thenReturn(Optional.of(running));
+
+        // Act
+        IdempotencyConflictException e = assertThrows(IdempotencyConflictException.class,
+                () -> service.execute("user/wf", "key-1", INPUT, () -> fail("must not run")));
+
+        // Assert
+        assertEquals(IdempotencyConflictException.Reason.IN_PROGRESS, e.getReason());
+    }
+
+    @Test
+    void execute_ActionFails_ReleasesKeyForRetry() {
+        // Arrange
+        assertThrows(IllegalStateException.class, () -> service.execute("user/wf", "key-1", INPUT, () -> {
+            throw new IllegalStateException("capacity");
+        }));
+
+        // Act
+        Map<String, Object> retried = service.execute("user/wf", "key-1", INPUT, () -> Map.of("runId", "run-2"));
+
+        // Assert
+        assertEquals("run-2", retried.get("runId"));
+        verify(repository).deleteById(anyString());
+        verify(repository, times(2)).insert(any(IdempotencyRecord.class));
+    }
+
+    @Test
+    void execute_SavingResultFails_ReleasesKeyAndStillReturnsResult() {
+        // Arrange
+        when(repository.save(any(IdempotencyRecord.class))).thenThrow(new IllegalStateException("Mongo is down"));
+
+        // Act
+        Map<String, Object> result = service.execute("user/wf", "key-1", INPUT, () -> Map.of("runId", "run-1"));
+        Map<String, Object> retried = service.execute("user/wf", "key-1", INPUT, () -> Map.of("runId", "run-2"));
+
+        // Assert
+        assertEquals("run-1", result.get("runId"));
+        assertEquals("run-1", retried.get("runId"));
+        verify(repository).deleteById(anyString());
+    }
+
+    @Test
+    void execute_ActionOutlastsInProgressTtl_RenewsRecordUntilItCompletes() throws Exception {
+        // Arrange
+        service.shutdown();
+        service = new IdempotencyService(repository, Duration.ofHours(24), Duration.ofMillis(150),
+                Duration.ofMillis(200), 100, System::currentTimeMillis);
+
+        // Act
+        service.execute("user/wf", "key-1", INPUT, () -> {
+            sleep(400);
+            return Map.of("runId", "run-1");
+        });
+
+        // Assert
+        // Without renewals the record would have expired more than twice over
+        verify(repository, atLeast(2)).renewInProgress(anyString(), any(Date.class));
+        // A beat that started just before the renewal was cancelled may still be finishing
+        Thread.sleep(100);
+        clearInvocations(repository);
+        Thread.sleep(200);
+        verify(repository, never()).renewInProgress(anyString(), any(Date.class));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.tanyonghe.flowforge.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void execute_ConcurrentCallsForSameKey_RunLoaderOnce() throws Exception {
+        // Arrange
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+            loads.incrementAndGet();
+            loaderStarted.countDown();
+            await(release);
+            return "value";
+        }));
+        assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+
+        // Act
+        List<Future<String>> followers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            followers.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                loads.incrementAndGet();
+                return "other";
+            })));
+        }
+        Thread.sleep(100);
+        release.countDown();
+
+        // Assert
+        assertEquals("value", leader.get(5, TimeUnit.SECONDS));
+        for (Future<String> follower : followers) {
+            assertEquals("value", follower.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void execute_CopyingValues_WaitersGetTheirOwnCopy() throws Exception {
+        // Arrange
+        SingleFlight<String, List<String>> copying = new SingleFlight<>(ArrayList::new);
+        List<String> loaded = new ArrayList<>(List.of("value"));
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<List<String>> leader = executor.submit(() -> copying.execute("key", () -> {
+            loaderStarted.countDown();
+            await(release);
+            return loaded;
+        }));
+        assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+
+        // Act
+        Future<List<String>> follower = executor.submit(() -> copying.execute("key", List::of));
+        Thread.sleep(100);
+        release.countDown();
+
+        // Assert
+        assertSame(loaded, leader.get(5, TimeUnit.SECONDS));
+        List<String> copy = follower.get(5, TimeUnit.SECONDS);
+        assertEquals(loaded, copy);
+        assertNotSame(loaded, copy);
+    }
+
+    @Test
+    void execute_LoaderThrows_PropagatesToWaitingCallers() throws Exception {
+        // Arrange
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+            loaderStarted.countDown();
+            await(release);
+            throw new IllegalStateException("db down");
+        }));
+        assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+
+        // Act
+        Future<String> follower = executor.submit(() -> singleFlight.execute("key", () -> "other"));
+        Thread.sleep(100);
+        release.countDown();
+
+        // Assert
+        Exception leaderError = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, leaderError.getCause());
+        Exception followerError = assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertEquals("db down", followerError.getCause().getMessage());
+    }
+
+    @Test
+    void execute_SequentialCalls_DoNotCacheResults() {
+        // Arrange
+        AtomicInteger loads = new AtomicInteger();
+
+        // Act
+        singleFlight.execute("key", () -> "v" + loads.incrementAndGet());
+        String second = singleFlight.execute("key", () -> "v" + loads.incrementAndGet());
+
+        // Assert
+        assertEquals("v2", second);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -33,6 +33,7 @@ class TaskTemplateServiceTest {
     @BeforeEach
     void setUp() {
         testTemplate = createTestTemplate("Test Template", "HTTP", "API");
+        testTemplate.setId("test-id");
     }
 
     @Test
@@ -88,7 +89,7 @@ class TaskTemplateServiceTest {
         TaskTemplate emailTemplate = createTestTemplate("Email Template", "EMAIL", "Notification");
         List<TaskTemplate> allTemplates = Arrays.asList(httpTemplate, emailTemplate);
         
-        when(taskTemplateRepository.findByType("HTTP")).thenReturn(Arrays.asList(httpTemplate));
+        when(taskTemplateRepository.findAll()).thenReturn(allTemplates);
 
         // Act
         List<TaskTemplate> result = taskTemplateService.getTaskTemplatesByType("HTTP");
@@ -97,7 +98,7 @@ class TaskTemplateServiceTest {
         assertEquals(1, result.size());
         assertEquals("HTTP Template", result.get(0).getName());
         assertEquals("HTTP", result.get(0).getType());
-        verify(taskTemplateRepository).findByType("HTTP");
+        verify(taskTemplateRepository, never()).findByType(any());
     }
 
     @Test
@@ -106,7 +107,7 @@ class TaskTemplateServiceTest {
         TaskTemplate apiTemplate = createTestTemplate("API Template", "HTTP", "API");
         TaskTemplate notificationTemplate = createTestTemplate("Notification Template", "EMAIL", "Notification");
         
-        when(taskTemplateRepository.findByCategory("API")).thenReturn(Arrays.asList(apiTemplate));
+        when(taskTemplateRepository.findAll()).thenReturn(Arrays.asList(apiTemplate, notificationTemplate));
 
         // Act
         List<TaskTemplate> result = taskTemplateService.getTaskTemplatesByCategory("API");
@@ -115,7 +116,8 @@ class TaskTemplateServiceTest {
         assertEquals(1, result.size());
         assertEquals("API Template", result.get(0).getName());
         assertEquals("API", result.get(0).getCategory());
-        verify(taskTemplateRepository).findByCategory("API");
+        assertTrue(taskTemplateService.getTaskTemplatesByCategory("Unknown").isEmpty());
+        verify(taskTemplateRepository, never()).findByCategory(any());
     }
 
     @Test
@@ -127,7 +129,7 @@ class TaskTemplateServiceTest {
         TaskTemplate inactiveTemplate = createTestTemplate("Inactive Template", "EMAIL", "Notification");
         inactiveTemplate.setIsActive(false);
         
-        when(taskTemplateRepository.findByIsActiveTrue()).thenReturn(Arrays.asList(activeTemplate));
+        when(taskTemplateRepository.findAll()).thenReturn(Arrays.asList(activeTemplate, inactiveTemplate));
 
         // Act
         List<TaskTemplate> result = taskTemplateService.getActiveTaskTemplates();
@@ -136,7 +138,54 @@ class TaskTemplateServiceTest {
         assertEquals(1, result.size());
         assertEquals("Active Template", result.get(0).getName());
         assertTrue(result.get(0).getIsActive());
-        verify(taskTemplateRepository).findByIsActiveTrue();
+        verify(taskTemplateRepository, never()).findByIsActiveTrue();
+    }
+
+    @Test
+    void getTaskTemplatesByType_RepeatedReads_LoadCatalogOnce() {
+        // Arrange
+        when(taskTemplateRepository.findAll()).thenReturn(List.of(testTemplate));
+
+        // Act
+        taskTemplateService.getTaskTemplatesByType("HTTP");
+        taskTemplateService.getActiveTaskTemplates();
+        taskTemplateService.getTaskTemplateById("test-id");
+
+        // Assert
+        verify(taskTemplateRepository, times(1)).findAll();
+        verify(taskTemplateRepository, never()).findById(any());
+    }
+
+    @Test
+    void createTaskTemplate_CatalogLoaded_SwapsInNewTemplate() {
+        // Arrange
+        when(taskTemplateRepository.findAll()).thenReturn(List.of(testTemplate));
+        taskTemplateService.getAllTaskTemplates();
+        TaskTemplate template = createTestTemplate("Email Template", "EMAIL", "Notification");
+        template.setId("email-id");
+        when(taskTemplateRepository.save(template)).thenReturn(template);
+
+        // Act
+        taskTemplateService.createTaskTemplate(template);
+
+        // Assert
+        assertEquals(List.of(template), taskTemplateService.getTaskTemplatesByType("EMAIL"));
+        assertEquals(2, taskTemplateService.getActiveTaskTemplates().size());
+        verify(taskTemplateRepository, times(1)).findAll();
+    }
+
+    @Test
+    void deleteTaskTemplate_CatalogLoaded_RemovesTemplate() {
+        // Arrange
+        when(taskTemplateRepository.findAll()).thenReturn(List.of(testTemplate));
+        taskTemplateService.getAllTaskTemplates();
+
+        // Act
+        taskTemplateService.deleteTaskTemplate("test-id");
+
+        // Assert
+        assertTrue(taskTemplateService.getAllTaskTemplates().isEmpty());
+        assertTrue(taskTemplateService.getTaskTemplatesByCategory("API").isEmpty());
     }
 
     @Test
@@ -228,6 +277,7 @@ class TaskTemplateServiceTest {
 
     private TaskTemplate createTestTemplate(String name, String type, String category) {
         TaskTemplate template = new TaskTemplate();
+        template.setId(name.toLowerCase().replace(' ', '-'));
         template.setName(name);
         template.setDescription("Test description for " + name);
         template.setType(type);
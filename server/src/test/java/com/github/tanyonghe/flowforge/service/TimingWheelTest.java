@@ -0,0 +1,71 @@
+package com.github.tanyonghe.flowforge.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    @Test
+    void advance_ReturnsItemsOnceTheirDeadlinePasses() {
+        // Arrange
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 0);
+        wheel.add("b", 2500);
+        wheel.add("a", 1000);
+
+        // Act
+        List<String> first = wheel.advance(1999);
+        List<String> second = wheel.advance(2999);
+        List<String> third = wheel.advance(10_000);
+
+        // Assert
+        assertEquals(List.of("a"), first);
+        assertEquals(List.of(), second);
+        assertEquals(List.of("b"), third);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advance_FarDeadlinesCascadeThroughEveryLevel() {
+        // Arrange
+        TimingWheel<Long> wheel = new TimingWheel<>(1, 0);
+        long[] deadlines = {63, 64, 65, 4095, 4096, 4097, 262_143, 262_144, 300_000};
+        for (long deadline : deadlines) {
+            wheel.add(deadline, deadline);
+        }
+
+        // Act
+        List<Long> fired = new ArrayList<>();
+        List<Long> firedAt = new ArrayList<>();
+        for (long now = 1; now <= 300_000 && wheel.size() > 0; now++) {
+            for (Long item : wheel.advance(now)) {
+                fired.add(item);
+                firedAt.add(now);
+            }
+        }
+
+        // Assert
+        List<Long> expected = new ArrayList<>();
+        for (long deadline : deadlines) {
+            expected.add(deadline);
+        }
+        assertEquals(expected, fired);
+        assertEquals(expected, firedAt);
+    }
+
+    @Test
+    void add_PastDeadline_ReturnsDueWithoutStoring() {
+        // Arrange
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 5000);
+
+        // Act
+        boolean due = wheel.add("late", 4000);
+
+        // Assert
+        assertTrue(due);
+        assertEquals(0, wheel.size());
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.tanyonghe.flowforge.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tanyonghe.flowforge.dto.BulkUserProvisionResponse;
+import com.github.tanyonghe.flowforge.model.User;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserProvisioningServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    private UserProvisioningService userProvisioningService;
+
+    @BeforeEach
+    void setUp() {
+        userProvisioningService = new UserProvisioningService(mongoTemplate, passwordEncoder, new ObjectMapper(), 2, 3, 2);
+    }
+
+    @Test
+    void provisionUsers_ValidRows_InsertsInUnorderedBatches() throws Exception {
+        // Arrange
+        when(passwordEncoder.encode(anyString())).thenAnswer(invocation -> "hashed-" + invocation.getArgument(0));
+        when(mongoTemplate.bulkOps(BulkMode.UNORDERED, User.class)).thenReturn(bulkOperations);
+        when(bulkOperations.execute())
+                .thenReturn(BulkWriteResult.acknowledged(2, 0, 0, 0, Collections.emptyList(), Collections.emptyList()))
+                .thenReturn(BulkWriteResult.acknowledged(1, 0, 0, 0, Collections.emptyList(), Collections.emptyList()));
+
+        // Act
+        BulkUserProvisionResponse response = userProvisioningService.provisionUsers(ndjson(
+                "{\"username\":\"alice\",\"password\":\"pw1\",\"email\":\"alice@example.com\"}",
+                "{\"username\":\"bob\",\"password\":\"pw2\",\"email\":\"bob@example.com\"}",
+                "",
+                "{\"username\":\"carol\",\"password\":\"pw3\",\"email\":\"carol@example.com\",\"firstName\":\"Carol\"}"));
+
+        // Assert
+        assertEquals(3, response.getReceived());
+        assertEquals(3, response.getCreated());
+        assertTrue(response.getFailures().isEmpty());
+        verify(mongoTemplate, times(2)).bulkOps(BulkMode.UNORDERED, User.class);
+        verify(bulkOperations).insert(argThat((List<? extends Object> users) -> users.size() == 2
+                && "hashed-pw1".equals(((User) users.get(0)).getPassword())
+                && "USER".equals(((User) users.get(0)).getRole())));
+    }
+
+    @Test
+    void provisionUsers_DuplicateKey_ReportsRowFailure() throws Exception {
+        // Arrange
+        when(passwordEncoder.encode(anyString())).thenReturn("hashed");
+        when(mongoTemplate.bulkOps(BulkMode.UNORDERED, User.class)).thenReturn(bulkOperations);
+        BulkWriteError duplicate = new BulkWriteError(11000,
+                "E11000 duplicate key error collection: flowforge.users index: email dup key: { email: \"a@example.com\" }",
+                new BsonDocument(), 1);
+        MongoBulkWriteException source = new MongoBulkWriteException(
+                BulkWriteResult.acknowledged(1, 0, 0, 0, Collections.emptyList(), Collections.emptyList()),
+                List.of(duplicate), null, new ServerAddress(), Collections.emptySet());
+        when(bulkOperations.execute()).thenThrow(new BulkOperationException("bulk failed", source));
+
+        // Act
+        BulkUserProvisionResponse response = userProvisioningService.provisionUsers(ndjson(
+                "{\"username\":\"alice\",\"password\":\"pw\",\"email\":\"a@example.com\"}",
+                "{\"username\":\"alice2\",\"password\":\"pw\",\"email\":\"a@example.com\"}"));
+
+        // Assert
+        assertEquals(2, response.getReceived());
+        assertEquals(1, response.getCreated());
+        assertEquals(1, response.getFailures().size());
+        assertEquals(2, response.getFailures().get(0).getLine());
+        assertEquals("alice2", response.getFailures().get(0).getUsername());
+        assertEquals("Email already exists", response.getFailures().get(0).getError());
+    }
+
+    @Test
+    void provisionUsers_InvalidRows_SkippedWithoutDatabase() throws Exception {
+        // Act
+        BulkUserProvisionResponse response = userProvisioningService.provisionUsers(ndjson(
+                "not json",
+                "{\"username\":\"dave\",\"email\":\"dave@example.com\"}"));
+
+        // Assert
+        assertEquals(2, response.getReceived());
+        assertEquals(0, response.getCreated());
+        assertEquals("Malformed JSON", response.getFailures().get(0).getError());
+        assertEquals("Password is required", response.getFailures().get(1).getError());
+        verifyNoInteractions(mongoTemplate, passwordEncoder);
+    }
+
+    @Test
+    void provisionUsers_NonDuplicateWriteError_ReportsGenericReason() throws Exception {
+        // Arrange
+        when(passwordEncoder.encode(anyString())).thenReturn("hashed");
+        when(mongoTemplate.bulkOps(BulkMode.UNORDERED, User.class)).thenReturn(bulkOperations);
+        BulkWriteError validation = new BulkWriteError(121,
+                "Document failed validation: collection flowforge.users", new BsonDocument(), 0);
+        MongoBulkWriteException source = new MongoBulkWriteException(
+                BulkWriteResult.acknowledged(0, 0, 0, 0, Collections.emptyList(), Collections.emptyList()),
+                List.of(validation), null, new ServerAddress(), Collections.emptySet());
+        when(bulkOperations.execute()).thenThrow(new BulkOperationException("bulk failed", source));
+
+        // Act
+        BulkUserProvisionResponse response = userProvisioningService.provisionUsers(ndjson(
+                "{\"username\":\"erin\",\"password\":\"pw\",\"email\":\"erin@example.com\"}"));
+
+        // Assert
+        assertEquals(1, response.getFailed());
+        assertEquals("Could not create user", response.getFailures().get(0).getError());
+    }
+
+    @Test
+    void provisionUsers_TooManyRows_StopsReadingAndBoundsFailures() throws Exception {
+        // Act
+        BulkUserProvisionResponse response = userProvisioningService.provisionUsers(ndjson(
+                "not json", "not json", "not json", "not json", "not json"));
+
+        // Assert
+        assertEquals(3, response.getReceived());
+        assertTrue(response.isTruncated());
+        assertEquals(3, response.getFailed());
+        assertEquals(2, response.getFailures().size());
+        assertEquals(2, response.getFailures().get(1).getLine());
+    }
+
+    private InputStream ndjson(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,174 @@
+package com.github.tanyonghe.flowforge.service;
+
+import com.github.tanyonghe.flowforge.model.Workflow;
+import com.github.tanyonghe.flowforge.repository.WorkflowRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WorkflowSchedulerTest {
+
+    private static final Map<String, Object> COMPLETED = Map.of("status", "COMPLETED");
+
+    @Mock
+    private WorkflowRepository workflowRepository;
+
+    @Mock
+    private WorkflowService workflowService;
+
+    @Mock
+    private LeaderLease lease;
+
+    private final AtomicLong clock = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private Executor fireExecutor = Runnable::run;
+    private WorkflowScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new WorkflowScheduler(workflowRepository, workflowService, lease, meterRegistry, clock::get,
+                Duration.ofSeconds(1), Duration.ofSeconds(30), Duration.ofSeconds(60),
+                runnable -> fireExecutor.execute(runnable));
+    }
+
+    @Test
+    void tick_Leader_StartsRunsEveryInterval() {
+        // Arrange
+        when(lease.isLeader()).thenReturn(true);
+        when(workflowService.executeWorkflow(eq("wf"), any())).thenReturn(COMPLETED);
+        saveScheduled(workflow("wf", "r1", interval(10)));
+
+        // Act
+        advanceTo(35_000);
+
+        // Assert
+        verify(workflowService, times(3)).executeWorkflow("wf", Map.of("source", "schedule"));
+        assertEquals(3, meterRegistry.counter(WorkflowScheduler.FIRES, "outcome", "completed").count());
+    }
+
+    @Test
+    void tick_Follower_KeepsScheduleButStartsNothing() {
+        // Arrange
+        when(lease.isLeader()).thenReturn(false);
+        saveScheduled(workflow("wf", "r1", interval(10)));
+
+        // Act
+        advanceTo(35_000);
+
+        // Assert
+        verify(workflowService, never()).executeWorkflow(any(), any());
+        assertEquals(1, scheduler.pendingFires());
+        verify(lease, times(4)).tryAcquire();
+    }
+
+    @Test
+    void tick_PreviousRunStillGoing_SkipsFire() {
+        // Arrange
+        List<Runnable> queued = new ArrayList<>();
+        fireExecutor = queued::add;
+        when(lease.isLeader()).thenReturn(true);
+        saveScheduled(workflow("wf", "r1", interval(10)));
+
+        // Act
+        advanceTo(25_000);
+
+        // Assert
+        assertEquals(1, queued.size());
+        assertEquals(1, meterRegistry.counter(WorkflowScheduler.FIRES, "outcome", "skipped").count());
+    }
+
+    @Test
+    void workflowSaved_NewDefinition_DropsFiresOfTheOldOne() {
+        // Arrange
+        scheduler.workflowSaved(workflow("wf", "r1", interval(10)));
+        clock.set(5_000);
+        Workflow.Schedule disabled = interval(10);
+        disabled.setEnabled(false);
+        scheduler.workflowSaved(workflow("wf", "r2", disabled));
+
+        // Act
+        advanceTo(60_000);
+
+        // Assert
+        verify(workflowService, never()).executeWorkflow(any(), any());
+        assertEquals(0, scheduler.pendingFires());
+    }
+
+    @Test
+    void tick_Resync_PicksUpSchedulesSavedElsewhereAndForgetsRemovedOnes() {
+        // Arrange
+        when(lease.isLeader()).thenReturn(true);
+        when(workflowService.executeWorkflow(eq("remote"), any())).thenReturn(COMPLETED);
+        when(workflowRepository.findScheduled())
+                .thenReturn(List.of(workflow("remote", "r1", interval(20))))
+                .thenReturn(List.of());
+
+        // Act
+        advanceTo(120_000);
+
+        // Assert: registered by the resync at 1s, fired at 21s and 41s, gone after the resync at 61s
+        verify(workflowService, times(2)).executeWorkflow(eq("remote"), any());
+        verify(workflowRepository, times(2)).findScheduled();
+    }
+
+    @Test
+    void workflowSaved_Cron_FiresAtMatchingTimesInZone() {
+        // Arrange
+        when(lease.isLeader()).thenReturn(true);
+        when(workflowService.executeWorkflow(eq("wf"), any())).thenReturn(COMPLETED);
+        Workflow.Schedule cron = new Workflow.Schedule();
+        cron.setCron("0 0 * * * *");
+        cron.setZone("Asia/Kolkata");
+        saveScheduled(workflow("wf", "r1", cron));
+
+        // Act
+        advanceTo(Duration.ofMinutes(29).toMillis());
+        verify(workflowService, never()).executeWorkflow(any(), any());
+        advanceTo(Duration.ofMinutes(31).toMillis());
+
+        // Assert: the epoch is 05:30 in UTC+5:30, so the next local hour starts 30 minutes in
+        verify(workflowService, times(1)).executeWorkflow(eq("wf"), any());
+    }
+
+    private void saveScheduled(Workflow workflow) {
+        when(workflowRepository.findScheduled()).thenReturn(List.of(workflow));
+        scheduler.workflowSaved(workflow);
+    }
+
+    private void advanceTo(long millis) {
+        while (clock.get() < millis) {
+            scheduler.tick(clock.addAndGet(1000));
+        }
+    }
+
+    private Workflow.Schedule interval(long seconds) {
+        Workflow.Schedule schedule = new Workflow.Schedule();
+        schedule.setIntervalSeconds(seconds);
+        schedule.setInput(Map.of("source", "schedule"));
+        return schedule;
+    }
+
+    private Workflow workflow(String id, String revision, Workflow.Schedule... schedules) {
+        Workflow workflow = new Workflow();
+        workflow.setId(id);
+        workflow.setRevision(revision);
+        workflow.setSchedules(List.of(schedules));
+        return workflow;
+    }
+}
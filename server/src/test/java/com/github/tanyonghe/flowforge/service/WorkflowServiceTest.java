@@ -1,22 +1,36 @@
 package com.github.tanyonghe.flowforge.service;
 
+import com.github.tanyonghe.flowforge.engine.ExecutionPlan;
+import com.github.tanyonghe.flowforge.engine.OutputStore;
+import com.github.tanyonghe.flowforge.engine.WorkflowExecutor;
+import com.github.tanyonghe.flowforge.engine.WorkflowValidationException;
+import com.github.tanyonghe.flowforge.model.OutputReference;
 import com.github.tanyonghe.flowforge.model.Workflow;
+import com.github.tanyonghe.flowforge.model.WorkflowRun;
+import com.github.tanyonghe.flowforge.model.WorkflowRunTrace;
 import com.github.tanyonghe.flowforge.repository.WorkflowRepository;
+import com.github.tanyonghe.flowforge.repository.WorkflowRunRepository;
+import com.github.tanyonghe.flowforge.repository.WorkflowRunTraceRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -25,6 +39,24 @@ class WorkflowServiceTest {
     @Mock
     private WorkflowRepository workflowRepository;
 
+    @Mock
+    private WorkflowRunRepository workflowRunRepository;
+
+    @Mock
+    private WorkflowRunTraceRepository workflowRunTraceRepository;
+
+    @Mock
+    private WorkflowExecutor workflowExecutor;
+
+    @Mock
+    private ExecutionPlanCache executionPlanCache;
+
+    @Mock
+    private OutputStore outputStore;
+
+    @Mock
+    private ObjectProvider<WorkflowScheduler> workflowScheduler;
+
     @InjectMocks
     private WorkflowService workflowService;
 
@@ -42,16 +74,16 @@ class WorkflowServiceTest {
         Workflow workflow2 = createTestWorkflow("Workflow 2");
         List<Workflow> expectedWorkflows = Arrays.asList(workflow1, workflow2);
         
-        when(workflowRepository.findAll()).thenReturn(expectedWorkflows);
+        when(workflowRepository.streamAll()).thenReturn(expectedWorkflows.stream());
 
         // Act
-        List<Workflow> result = workflowService.getAllWorkflows();
+        List<Workflow> result = workflowService.getAllWorkflows().toList();
 
         // Assert
         assertEquals(2, result.size());
         assertEquals("Workflow 1", result.get(0).getName());
         assertEquals("Workflow 2", result.get(1).getName());
-        verify(workflowRepository).findAll();
+        verify(workflowRepository).streamAll();
     }
 
     @Test
@@ -68,6 +100,26 @@ class WorkflowServiceTest {
         verify(workflowRepository).findById("test-id");
     }
 
+    @Test
+    void copy_SharesNoMutableState() {
+        // Arrange
+        Workflow.Task task = new Workflow.Task();
+        task.setName("call");
+        task.setConfig(new HashMap<>(Map.of("url", "http://a", "headers", new HashMap<>(Map.of("x", "1")))));
+        testWorkflow.setTasks(List.of(task));
+
+        // Act
+        Workflow copy = WorkflowService.copy(testWorkflow);
+        ((Map<String, Object>) copy.getTasks().get(0).getConfig().get("headers")).put("x", "2");
+        copy.getTasks().get(0).getConfig().put("url", "http://b");
+
+        // Assert
+        assertNotSame(testWorkflow, copy);
+        assertEquals("Test Workflow", copy.getName());
+        assertEquals("http://a", task.getConfig().get("url"));
+        assertEquals(Map.of("x", "1"), task.getConfig().get("headers"));
+    }
+
     @Test
     void getWorkflowById_InvalidId_ReturnsEmpty() {
         // Arrange
@@ -95,6 +147,55 @@ class WorkflowServiceTest {
         verify(workflowRepository).save(testWorkflow);
     }
 
+    @Test
+    void createWorkflow_StoresGraphAnalysisAndRevision() {
+        // Arrange
+        testWorkflow.setTasks(List.of(task("a", "b"), task("b")));
+        when(workflowRepository.save(any(Workflow.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        Workflow result = workflowService.createWorkflow(testWorkflow);
+
+        // Assert
+        assertEquals(List.of("a", "b"), result.getGraph().getTopologicalOrder());
+        assertEquals(2, result.getGraph().getDepth());
+        assertNotNull(result.getRevision());
+    }
+
+    @Test
+    void updateWorkflow_Cycle_ThrowsWithoutSaving() {
+        // Arrange
+        testWorkflow.setTasks(List.of(task("a", "b"), task("b", "a")));
+
+        // Act & Assert
+        assertThrows(WorkflowValidationException.class, () -> workflowService.updateWorkflow("test-id", testWorkflow));
+        verify(workflowRepository, never()).save(any(Workflow.class));
+        verify(executionPlanCache, never()).evict(any());
+    }
+
+    @Test
+    void createWorkflow_InvalidSchedules_ThrowsWithEveryError() {
+        // Arrange
+        Workflow.Schedule both = new Workflow.Schedule();
+        both.setCron("0 * * * * *");
+        both.setIntervalSeconds(60L);
+        Workflow.Schedule badCron = new Workflow.Schedule();
+        badCron.setCron("every minute");
+        badCron.setZone("Mars/Olympus");
+        testWorkflow.setSchedules(List.of(both, badCron));
+
+        // Act
+        WorkflowValidationException e = assertThrows(WorkflowValidationException.class,
+                () -> workflowService.createWorkflow(testWorkflow));
+
+        // Assert
+        assertEquals(List.of(
+                "Schedule 0: set exactly one of cron and intervalSeconds",
+                "Schedule 1: invalid cron expression 'every minute'",
+                "Schedule 1: unknown zone 'Mars/Olympus'"), e.getErrors());
+        verify(workflowRepository, never()).save(any(Workflow.class));
+    }
+
     @Test
     void updateWorkflow_ValidId_ReturnsUpdatedWorkflow() {
         // Arrange
@@ -145,17 +246,197 @@ class WorkflowServiceTest {
     void executeWorkflow_ValidId_ReturnsExecutionResult() {
         // Arrange
         when(workflowRepository.findById("test-id")).thenReturn(Optional.of(testWorkflow));
+        when(executionPlanCache.getPlan(testWorkflow)).thenReturn(ExecutionPlan.compile(testWorkflow, id -> Optional.empty()));
         Map<String, Object> input = new HashMap<>();
         input.put("param1", "value1");
 
+        WorkflowRun.TaskRun task = new WorkflowRun.TaskRun();
+        task.setName("Start");
+        task.setStatus(WorkflowRun.TaskRun.STATUS_COMPLETED);
+        task.setOutput("started");
+        WorkflowRun run = new WorkflowRun();
+        run.setId("run-id");
+        run.setStatus(WorkflowRun.STATUS_COMPLETED);
+        run.setTasks(List.of(task));
+        WorkflowRunTrace trace = new WorkflowRunTrace();
+        run.setTrace(trace);
+        when(workflowExecutor.execute(any(ExecutionPlan.class), eq(input)))
+                .thenReturn(CompletableFuture.completedFuture(run));
+
         // Act
         Map<String, Object> result = workflowService.executeWorkflow("test-id", input);
 
         // Assert
         assertNotNull(result);
-        assertEquals("pending", result.get("status"));
-        assertEquals("Workflow execution not yet implemented", result.get("message"));
+        assertEquals("run-id", result.get("runId"));
+        assertEquals("COMPLETED", result.get("status"));
+        assertEquals(Map.of("Start", "started"), result.get("outputs"));
         verify(workflowRepository).findById("test-id");
+        verify(workflowRunRepository).save(run);
+        verify(workflowRunTraceRepository).save(trace);
+    }
+
+    @Test
+    void getCriticalPath_Diamond_FollowsLatestFinishingPredecessor() {
+        // Arrange
+        WorkflowRunTrace trace = new WorkflowRunTrace();
+        trace.setId("run-id");
+        trace.setTotalMicros(70);
+        trace.setTasks(List.of(
+                taskTrace("start", List.of(), 0, 0, 10),
+                taskTrace("fast", List.of("start"), 10, 11, 30),
+                taskTrace("slow", List.of("start"), 10, 12, 50),
+                taskTrace("end", List.of("fast", "slow"), 50, 55, 60)));
+        when(workflowRunTraceRepository.findById("run-id")).thenReturn(Optional.of(trace));
+
+        // Act
+        Map<String, Object> result = workflowService.getCriticalPath("run-id").orElseThrow();
+
+        // Assert
+        List<?> path = (List<?>) result.get("criticalPath");
+        assertEquals(List.of("start", "slow", "end"),
+                path.stream().map(step -> ((Map<?, ?>) step).get("name")).toList());
+        assertEquals(60L, result.get("criticalPathMicros"));
+        assertEquals("slow", result.get("bottleneck"));
+        assertEquals(7L, result.get("pathQueueWaitMicros"));
+        assertEquals(53L, result.get("pathExecutionMicros"));
+        assertEquals(8L, result.get("totalQueueWaitMicros"));
+        assertEquals(72L, result.get("totalExecutionMicros"));
+    }
+
+    @Test
+    void getTaskOutput_SpilledOutput_OpensStoredStream() throws Exception {
+        // Arrange
+        OutputReference reference = new OutputReference("file-id", 2048, 128);
+        WorkflowRun.TaskRun task = new WorkflowRun.TaskRun();
+        task.setName("Big");
+        task.setStatus(WorkflowRun.TaskRun.STATUS_COMPLETED);
+        task.setOutputRef(reference);
+        WorkflowRun run = new WorkflowRun();
+        run.setTasks(List.of(task));
+        InputStream stream = new ByteArrayInputStream("{}".getBytes());
+        when(workflowRunRepository.findById("run-id")).thenReturn(Optional.of(run));
+        when(outputStore.open(reference)).thenReturn(stream);
+
+        // Act
+        Optional<Object> result = workflowService.getTaskOutput("run-id", "Big");
+
+        // Assert
+        assertSame(stream, result.orElseThrow());
+        assertTrue(workflowService.getTaskOutput("run-id", "Missing").isEmpty());
+    }
+
+    @Test
+    void rerunWorkflow_FailedRun_ReusesUpstreamAndRerunsFromFailure() {
+        // Arrange
+        testWorkflow.setId("test-id");
+        testWorkflow.setRevision("rev-1");
+        testWorkflow.setTasks(List.of(task("a", "b", "side"), task("b", "c"), task("c"), task("side")));
+        WorkflowRun previous = new WorkflowRun();
+        previous.setId("run-1");
+        previous.setWorkflowId("test-id");
+        previous.setWorkflowRevision("rev-1");
+        previous.setInput(Map.of("day", "monday"));
+        previous.setTasks(List.of(
+                taskRun("a", WorkflowRun.TaskRun.STATUS_COMPLETED, "A"),
+                taskRun("b", WorkflowRun.TaskRun.STATUS_FAILED, null),
+                taskRun("c", WorkflowRun.TaskRun.STATUS_SKIPPED, null),
+                taskRun("side", WorkflowRun.TaskRun.STATUS_COMPLETED, "S")));
+        when(workflowRunRepository.findById("run-1")).thenReturn(Optional.of(previous));
+        when(workflowRepository.findById("test-id")).thenReturn(Optional.of(testWorkflow));
+        when(executionPlanCache.getPlan(testWorkflow)).thenReturn(ExecutionPlan.compile(testWorkflow, id -> Optional.empty()));
+        WorkflowRun rerun = new WorkflowRun();
+        rerun.setId("run-2");
+        rerun.setStatus(WorkflowRun.STATUS_COMPLETED);
+        rerun.setTasks(List.of());
+        when(workflowExecutor.rerun(any(ExecutionPlan.class), eq(previous.getInput()),
+                eq(Map.of("a", "A", "side", "S")), eq("run-1")))
+                .thenReturn(CompletableFuture.completedFuture(rerun));
+
+        // Act
+        Map<String, Object> result = workflowService.rerunWorkflow("run-1", null).orElseThrow();
+
+        // Assert
+        assertEquals("run-2", result.get("runId"));
+        assertEquals("rev-1", rerun.getWorkflowRevision());
+        verify(workflowRunRepository).save(rerun);
+    }
+
+    @Test
+    void rerunWorkflow_SpilledOutputExpired_RecomputesItAndItsDescendants() {
+        // Arrange
+        testWorkflow.setId("test-id");
+        testWorkflow.setTasks(List.of(task("a", "b"), task("b", "c"), task("c")));
+        OutputReference kept = new OutputReference("kept", 2048, 128);
+        OutputReference expired = new OutputReference("expired", 2048, 128);
+        WorkflowRun.TaskRun a = taskRun("a", WorkflowRun.TaskRun.STATUS_COMPLETED, null);
+        a.setOutputRef(kept);
+        WorkflowRun.TaskRun b = taskRun("b", WorkflowRun.TaskRun.STATUS_COMPLETED, null);
+        b.setOutputRef(expired);
+        WorkflowRun previous = new WorkflowRun();
+        previous.setWorkflowId("test-id");
+        previous.setTasks(List.of(a, b, taskRun("c", WorkflowRun.TaskRun.STATUS_FAILED, null)));
+        when(workflowRunRepository.findById("run-1")).thenReturn(Optional.of(previous));
+        when(workflowRepository.findById("test-id")).thenReturn(Optional.of(testWorkflow));
+        when(executionPlanCache.getPlan(testWorkflow)).thenReturn(ExecutionPlan.compile(testWorkflow, id -> Optional.empty()));
+        when(outputStore.exists(kept)).thenReturn(true);
+        when(outputStore.exists(expired)).thenReturn(false);
+        WorkflowRun rerun = new WorkflowRun();
+        rerun.setTasks(List.of());
+        when(workflowExecutor.rerun(any(ExecutionPlan.class), any(), eq(Map.of("a", kept)), eq("run-1")))
+                .thenReturn(CompletableFuture.completedFuture(rerun));
+
+        // Act & Assert
+        assertTrue(workflowService.rerunWorkflow("run-1", null).isPresent());
+    }
+
+    @Test
+    void rerunWorkflow_FromTask_RerunsItsDescendantsToo() {
+        // Arrange
+        testWorkflow.setId("test-id");
+        testWorkflow.setTasks(List.of(task("a", "b"), task("b")));
+        WorkflowRun previous = new WorkflowRun();
+        previous.setWorkflowId("test-id");
+        previous.setTasks(List.of(
+                taskRun("a", WorkflowRun.TaskRun.STATUS_COMPLETED, "A"),
+                taskRun("b", WorkflowRun.TaskRun.STATUS_COMPLETED, "B")));
+        when(workflowRunRepository.findById("run-1")).thenReturn(Optional.of(previous));
+        when(workflowRepository.findById("test-id")).thenReturn(Optional.of(testWorkflow));
+        when(executionPlanCache.getPlan(testWorkflow)).thenReturn(ExecutionPlan.compile(testWorkflow, id -> Optional.empty()));
+        WorkflowRun rerun = new WorkflowRun();
+        rerun.setTasks(List.of());
+        when(workflowExecutor.rerun(any(ExecutionPlan.class), any(), eq(Map.of()), eq("run-1")))
+                .thenReturn(CompletableFuture.completedFuture(rerun));
+
+        // Act & Assert
+        assertTrue(workflowService.rerunWorkflow("run-1", "a").isPresent());
+        assertThrows(IllegalArgumentException.class, () -> workflowService.rerunWorkflow("run-1", null));
+        assertThrows(IllegalArgumentException.class, () -> workflowService.rerunWorkflow("run-1", "missing"));
+    }
+
+    @Test
+    void rerunWorkflow_WorkflowChanged_ThrowsConflict() {
+        // Arrange
+        testWorkflow.setRevision("rev-2");
+        WorkflowRun previous = new WorkflowRun();
+        previous.setWorkflowId("test-id");
+        previous.setWorkflowRevision("rev-1");
+        when(workflowRunRepository.findById("run-1")).thenReturn(Optional.of(previous));
+        when(workflowRepository.findById("test-id")).thenReturn(Optional.of(testWorkflow));
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> workflowService.rerunWorkflow("run-1", null));
+        assertTrue(workflowService.rerunWorkflow("unknown", null).isEmpty());
+        verify(workflowExecutor, never()).rerun(any(), any(), any(), any());
+    }
+
+    @Test
+    void getCriticalPath_UnknownRun_ReturnsEmpty() {
+        // Arrange
+        when(workflowRunTraceRepository.findById("missing")).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertTrue(workflowService.getCriticalPath("missing").isEmpty());
     }
 
     @Test
@@ -173,6 +454,36 @@ class WorkflowServiceTest {
         verify(workflowRepository).findById("invalid-id");
     }
 
+    private WorkflowRunTrace.TaskTrace taskTrace(String name, List<String> dependsOn,
+                                                 long readyAt, long startedAt, long finishedAt) {
+        WorkflowRunTrace.TaskTrace task = new WorkflowRunTrace.TaskTrace();
+        task.setName(name);
+        task.setType("task");
+        task.setStatus(WorkflowRun.TaskRun.STATUS_COMPLETED);
+        task.setDependsOn(dependsOn);
+        task.setReadyAtMicros(readyAt);
+        task.setStartedAtMicros(startedAt);
+        task.setFinishedAtMicros(finishedAt);
+        task.setQueueWaitMicros(startedAt - readyAt);
+        task.setExecutionMicros(finishedAt - startedAt);
+        return task;
+    }
+
+    private WorkflowRun.TaskRun taskRun(String name, String status, Object output) {
+        WorkflowRun.TaskRun task = new WorkflowRun.TaskRun();
+        task.setName(name);
+        task.setStatus(status);
+        task.setOutput(output);
+        return task;
+    }
+
+    private Workflow.Task task(String name, String... nextTasks) {
+        Workflow.Task task = new Workflow.Task();
+        task.setName(name);
+        task.setNextTasks(List.of(nextTasks));
+        return task;
+    }
+
     private Workflow createTestWorkflow(String name) {
         Workflow workflow = new Workflow();
         workflow.setName(name);